@@ -0,0 +1,205 @@
+package com.example;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * AI请求调度器：所有窗口的模型调用都先在这里排队取得执行许可
+ * 交互对话严格优先，并始终保留一个并发名额给它；其余类别按权重做加权公平排队，批量合并不会饿死也不会挤占生成
+ * 已经发出的HTTP请求无法中断，"抢占"体现在排队顺序和保留名额上
+ */
+public class AIRequestScheduler {
+
+    // 所有窗口合计同时进行的请求数上限
+    public static final int MAX_CONCURRENT_REQUESTS = 4;
+    // 为交互请求保留的并发名额
+    private static final int RESERVED_FOR_INTERACTIVE = 1;
+
+    /**
+     * 请求类别及其权重（权重越大，排队时分到的份额越多）
+     */
+    public enum Priority {
+        INTERACTIVE("interactive", "交互对话", 8),
+        GENERATION("generation", "代码生成", 4),
+        BATCH("batch", "后台合并", 2),
+        MAINTENANCE("maintenance", "连接测试", 1);
+
+        private final String metricName;
+        private final String description;
+        private final int weight;
+
+        Priority(String metricName, String description, int weight) {
+            this.metricName = metricName;
+            this.description = description;
+            this.weight = weight;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    private static final AIRequestScheduler INSTANCE = new AIRequestScheduler(MAX_CONCURRENT_REQUESTS);
+
+    private final int capacity;
+    private final Map<Priority, Deque<Ticket>> queues = new EnumMap<>(Priority.class);
+    private final Map<Priority, Double> lastFinishTags = new EnumMap<>(Priority.class);
+    private double virtualTime;
+    private int running;
+
+    /**
+     * 排队中的请求：完成标签 = max(虚拟时间, 本类别上一个请求的完成标签) + 1/权重
+     */
+    private static class Ticket {
+        final Priority priority;
+        final double startTag;
+        final double finishTag;
+        final long enqueuedAt = System.nanoTime();
+        boolean granted;
+
+        Ticket(Priority priority, double startTag, double finishTag) {
+            this.priority = priority;
+            this.startTag = startTag;
+            this.finishTag = finishTag;
+        }
+    }
+
+    /**
+     * 执行许可，请求完成后关闭以释放名额
+     */
+    public class Permit implements AutoCloseable {
+        private final Priority priority;
+        private final long waitedMs;
+        private boolean released;
+
+        private Permit(Priority priority, long waitedMs) {
+            this.priority = priority;
+            this.waitedMs = waitedMs;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public long getWaitedMs() {
+            return waitedMs;
+        }
+
+        @Override
+        public void close() {
+            synchronized (AIRequestScheduler.this) {
+                if (released) return;
+                released = true;
+                running--;
+                dispatch();
+            }
+        }
+    }
+
+    AIRequestScheduler(int capacity) {
+        this.capacity = capacity;
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+            lastFinishTags.put(priority, 0.0);
+        }
+    }
+
+    public static AIRequestScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 排队等待执行许可，等待时间记入 PipelineMetrics
+     */
+    public Permit acquire(Priority priority) throws InterruptedException {
+        Ticket ticket;
+        synchronized (this) {
+            double startTag = Math.max(virtualTime, lastFinishTags.get(priority));
+            ticket = new Ticket(priority, startTag, startTag + 1.0 / priority.getWeight());
+            lastFinishTags.put(priority, ticket.finishTag);
+            queues.get(priority).addLast(ticket);
+            dispatch();
+            try {
+                while (!ticket.granted) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                if (ticket.granted) {
+                    running--;
+                    dispatch();
+                } else {
+                    queues.get(priority).remove(ticket);
+                }
+                throw e;
+            }
+        }
+
+        long waitedMs = (System.nanoTime() - ticket.enqueuedAt) / 1_000_000;
+        PipelineMetrics.getInstance().recordQueueWait(priority, waitedMs);
+        return new Permit(priority, waitedMs);
+    }
+
+    /**
+     * 在有空闲名额时按顺序发放许可
+     */
+    private void dispatch() {
+        boolean granted = false;
+        while (running < capacity) {
+            Ticket next = selectNext();
+            if (next == null) break;
+            queues.get(next.priority).pollFirst();
+            next.granted = true;
+            virtualTime = Math.max(virtualTime, next.startTag);
+            running++;
+            granted = true;
+        }
+        if (granted) {
+            notifyAll();
+        }
+    }
+
+    private Ticket selectNext() {
+        Ticket interactive = queues.get(Priority.INTERACTIVE).peekFirst();
+        if (interactive != null) {
+            return interactive;
+        }
+        // 保留的名额只给交互请求
+        if (running >= capacity - RESERVED_FOR_INTERACTIVE) {
+            return null;
+        }
+        Ticket best = null;
+        for (Deque<Ticket> queue : queues.values()) {
+            Ticket head = queue.peekFirst();
+            if (head != null && (best == null || head.finishTag < best.finishTag)) {
+                best = head;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 各类别排队中的请求数
+     */
+    public synchronized Map<Priority, Integer> getQueueLengths() {
+        Map<Priority, Integer> lengths = new EnumMap<>(Priority.class);
+        for (Map.Entry<Priority, Deque<Ticket>> entry : queues.entrySet()) {
+            lengths.put(entry.getKey(), entry.getValue().size());
+        }
+        return lengths;
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+}
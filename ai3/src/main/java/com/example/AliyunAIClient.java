@@ -8,7 +8,7 @@ import com.alibaba.dashscope.common.Role;
 import com.alibaba.dashscope.exception.ApiException;
 import com.alibaba.dashscope.exception.InputRequiredException;
 import com.alibaba.dashscope.exception.NoApiKeyException;
-import com.alibaba.dashscope.protocol.Protocol;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,10 +24,26 @@ public class AliyunAIClient {
     // ============================================================
 
     private static final String MODEL_NAME = "qwen-plus";
+    private static final String FAST_MODEL_FAMILY = "qwen-turbo";
+
+    // token统计的请求类别及各类别默认的 maxTokens
+    private static final String CHAT_CATEGORY = "chat";
+    private static final String GENERATE_CATEGORY = "generate";
+    private static final String REPAIR_CATEGORY = "repair";
+    private static final String MERGE_CATEGORY = "merge";
+    private static final String TEST_CATEGORY = "test";
+    private static final int CHAT_MAX_TOKENS = 512;
+    private static final int GENERATE_MAX_TOKENS = 4000;
 
     private final ObjectMapper objectMapper;
     private final Generation generation;
+    private final TokenAccounting tokenAccounting = TokenAccounting.getInstance();
+    // 小请求可以改用的快速模型，从可用模型列表中选出
+    private final String fastModel = pickFastModel();
 
+    /**
+     * 应用内请使用 ServiceRegistry.aiClient() 共享同一个实例
+     */
     public AliyunAIClient() throws IOException {
         this.objectMapper = new ObjectMapper();
         validateApiKey();
@@ -37,7 +53,7 @@ public class AliyunAIClient {
         System.out.println("   API密钥长度：" + ALIYUN_API_KEY.length());
         System.out.println("   使用模型：" + MODEL_NAME);
 
-        this.generation = new Generation(Protocol.HTTP.getValue(), "https://dashscope.aliyuncs.com/api/v1");
+        this.generation = ServiceRegistry.generation();
     }
 
     public AliyunAIClient(String apiKey, String model) {
@@ -49,7 +65,7 @@ public class AliyunAIClient {
             throw new IllegalArgumentException("API密钥未配置！");
         }
 
-        this.generation = new Generation(Protocol.HTTP.getValue(), "https://dashscope.aliyuncs.com/api/v1");
+        this.generation = ServiceRegistry.generation();
     }
 
     // 💡【关键】增强版 System Prompt —— 强制工具调用返回 JSON
@@ -78,12 +94,26 @@ public class AliyunAIClient {
 
     /**
      * 【改造】通用对话接口：支持工具调用（用于 ChatBotApp）
+     * maxTokens 由 TokenAccounting 按历史用量选择（对话不换用快速模型），降级的请求没有得到可用回复时按默认配置重试
      */
     public String chat(String userMessage) throws IOException {
         logger.info("开始通用对话（含工具调用），输入: {}", userMessage);
 
         validateApiKey();
 
+        TokenAccounting.Plan plan = tokenAccounting.plan(CHAT_CATEGORY, MODEL_NAME, CHAT_MAX_TOKENS);
+        String reply = chatOnce(userMessage, plan);
+        if (reply == null) {
+            logger.warn("对话请求（{}）没有得到完整回复，使用默认配置重试", plan);
+            reply = chatOnce(userMessage, plan.fallback());
+        }
+        return reply;
+    }
+
+    /**
+     * 按计划发送一次对话请求；降级的计划得到截断或无效的回复时返回 null
+     */
+    private String chatOnce(String userMessage, TokenAccounting.Plan plan) throws IOException {
         try {
             Message systemMsg = Message.builder()
                     .role(Role.SYSTEM.getValue())
@@ -97,16 +127,16 @@ public class AliyunAIClient {
 
             GenerationParam param = GenerationParam.builder()
                     .apiKey(ALIYUN_API_KEY)
-                    .model(MODEL_NAME)
+                    .model(plan.model)
                     .messages(Arrays.asList(systemMsg, userMsg))
                     .resultFormat(GenerationParam.ResultFormat.MESSAGE)
                     .temperature(0.3F)  // 👈 降低随机性，提高 JSON 稳定性
                     .topP(0.85)
-                    .maxTokens(512)
+                    .maxTokens(plan.maxTokens)
                     .incrementalOutput(false)
                     .build();
 
-            GenerationResult result = generation.call(param);
+            GenerationResult result = call(param, AIRequestScheduler.Priority.INTERACTIVE);
 
             if (result == null || result.getOutput() == null ||
                     result.getOutput().getChoices() == null || result.getOutput().getChoices().isEmpty()) {
@@ -115,11 +145,21 @@ public class AliyunAIClient {
 
             String content = result.getOutput().getChoices().get(0).getMessage().getContent();
             if (content == null) content = "";
+            content = content.trim();
 
             // 🔍 调试日志（可选开启）
             logger.debug("AI 原始响应: [{}]", content);
 
-            return content.trim();
+            // 按工具分别统计，普通回答记为 answer
+            String tool = content.startsWith("{") ? parseToolName(content) : "answer";
+            boolean truncated = isTruncated(result);
+            boolean success = !truncated && !content.isEmpty() && tool != null;
+            tokenAccounting.record(CHAT_CATEGORY + ":" + (tool != null ? tool : "invalid"), plan.model,
+                    inputTokens(result), outputTokens(result), truncated, success);
+            if (!success && plan.isReduced()) {
+                return null;
+            }
+            return content;
 
         } catch (ApiException e) {
             logger.error("API 调用异常", e);
@@ -133,14 +173,55 @@ public class AliyunAIClient {
         }
     }
 
+    /**
+     * 工具调用JSON中的工具名，不是合法的工具调用时返回 null
+     */
+    private String parseToolName(String json) {
+        try {
+            JsonNode tool = objectMapper.readTree(json).get("tool");
+            return tool != null && tool.isTextual() ? tool.asText() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
     /**
      * 【保留】生成 JavaFX 代码（原有功能不变）
      */
     public String generateCode(String prompt) throws IOException {
+        return generateCodeWithUsage(prompt).getCode();
+    }
+
+    /**
+     * 生成 JavaFX 代码，同时返回本次调用的token用量
+     */
+    public CodeGeneration generateCodeWithUsage(String prompt) throws IOException {
+        return generateCodeWithUsage(prompt, null);
+    }
+
+    /**
+     * 生成 JavaFX 代码；uiType 用于按界面类型统计token用量，据此选择模型和 maxTokens
+     */
+    public CodeGeneration generateCodeWithUsage(String prompt, String uiType) throws IOException {
         logger.info("开始生成JavaFX代码，提示长度: {}", prompt.length());
 
         validateApiKey();
 
+        String category = uiType == null || uiType.isBlank() ? GENERATE_CATEGORY : GENERATE_CATEGORY + ":" + uiType;
+        // 生成结果能按是否截断、能否提取出类来判断好坏，才允许换用快速模型
+        TokenAccounting.Plan plan = tokenAccounting.plan(category, MODEL_NAME, GENERATE_MAX_TOKENS, fastModel);
+        CodeGeneration generated = generateCodeOnce(prompt, category, plan);
+        if (generated == null) {
+            logger.warn("代码生成请求（{}）没有得到完整代码，使用默认配置重试", plan);
+            generated = generateCodeOnce(prompt, category, plan.fallback());
+        }
+        return generated;
+    }
+
+    /**
+     * 按计划生成一次；降级的计划得到截断或不完整的代码时返回 null
+     */
+    private CodeGeneration generateCodeOnce(String prompt, String category, TokenAccounting.Plan plan) throws IOException {
         try {
             Message systemMsg = Message.builder()
                     .role(Role.SYSTEM.getValue())
@@ -154,20 +235,34 @@ public class AliyunAIClient {
 
             GenerationParam param = GenerationParam.builder()
                     .apiKey(ALIYUN_API_KEY)
-                    .model(MODEL_NAME)
+                    .model(plan.model)
                     .messages(Arrays.asList(systemMsg, userMsg))
                     .resultFormat(GenerationParam.ResultFormat.MESSAGE)
                     .temperature(0.7F)
                     .topP(0.8)
-                    .maxTokens(4000)
+                    .maxTokens(plan.maxTokens)
                     .incrementalOutput(false)
                     .build();
 
-            GenerationResult result = generation.call(param);
-            String generatedCode = extractCodeFromResponse(result);
+            GenerationResult result = call(param, AIRequestScheduler.Priority.GENERATION);
+            int inputTokens = inputTokens(result);
+            int outputTokens = outputTokens(result);
+            boolean truncated = isTruncated(result);
+            long normalizeStart = System.nanoTime();
+            CodeNormalizer.Result normalized = normalizeResponse(result);
+            long normalizeMs = (System.nanoTime() - normalizeStart) / 1_000_000;
+            boolean success = !truncated && normalized != null && normalized.className != null;
+            tokenAccounting.record(category, plan.model, inputTokens, outputTokens, truncated, success);
+
+            if (!success && plan.isReduced()) {
+                return null;
+            }
+            if (normalized == null) {
+                throw new IOException("API返回的代码内容为空");
+            }
 
-            logger.info("代码生成成功，长度: {} 字符", generatedCode.length());
-            return generatedCode;
+            logger.info("代码生成成功（{}），长度: {} 字符，token: {}+{}", plan, normalized.code.length(), inputTokens, outputTokens);
+            return new CodeGeneration(normalized.code, inputTokens, outputTokens, normalizeMs);
 
         } catch (ApiException e) {
             logger.error("API 调用异常", e);
@@ -178,13 +273,130 @@ public class AliyunAIClient {
         } catch (InputRequiredException e) {
             logger.error("输入参数异常", e);
             throw new IOException("输入参数异常: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("生成代码时发生未知错误", e);
             throw new IOException("生成代码失败: " + e.getMessage(), e);
         }
     }
 
-    private String extractCodeFromResponse(GenerationResult result) throws IOException {
+    /**
+     * 请求最小修复补丁：只返回补丁文本，不做代码提取和import补全
+     */
+    public CodeGeneration requestPatch(String repairPrompt) throws IOException {
+        logger.info("请求修复补丁，提示长度: {}", repairPrompt.length());
+        return requestRaw(CodeRepairer.PATCH_SYSTEM_PROMPT, repairPrompt, 0.2F, 1500,
+                AIRequestScheduler.Priority.GENERATION, REPAIR_CATEGORY);
+    }
+
+    /**
+     * 请求合并编辑操作：只返回JSON编辑列表，由 CodeMerger 在本地应用
+     */
+    public CodeGeneration requestMergeEdits(String mergePrompt) throws IOException {
+        logger.info("请求合并编辑操作，提示长度: {}", mergePrompt.length());
+        return requestRaw(MergeEdits.SYSTEM_PROMPT, mergePrompt, 0.2F, 2000,
+                AIRequestScheduler.Priority.BATCH, MERGE_CATEGORY);
+    }
+
+    /**
+     * 使用指定系统提示词调用模型，原样返回回复内容
+     */
+    private CodeGeneration requestRaw(String systemPrompt, String userPrompt, float temperature, int maxTokens,
+                                      AIRequestScheduler.Priority priority, String category) throws IOException {
+        validateApiKey();
+
+        TokenAccounting.Plan plan = tokenAccounting.plan(category, MODEL_NAME, maxTokens);
+        CodeGeneration reply = requestRawOnce(systemPrompt, userPrompt, temperature, priority, category, plan);
+        if (reply == null) {
+            logger.warn("{}请求（{}）被截断，使用默认配置重试", category, plan);
+            reply = requestRawOnce(systemPrompt, userPrompt, temperature, priority, category, plan.fallback());
+        }
+        return reply;
+    }
+
+    /**
+     * 按计划请求一次；降级的计划得到截断或空的回复时返回 null
+     */
+    private CodeGeneration requestRawOnce(String systemPrompt, String userPrompt, float temperature,
+                                          AIRequestScheduler.Priority priority, String category,
+                                          TokenAccounting.Plan plan) throws IOException {
+        try {
+            Message systemMsg = Message.builder()
+                    .role(Role.SYSTEM.getValue())
+                    .content(systemPrompt)
+                    .build();
+
+            Message userMsg = Message.builder()
+                    .role(Role.USER.getValue())
+                    .content(userPrompt)
+                    .build();
+
+            GenerationParam param = GenerationParam.builder()
+                    .apiKey(ALIYUN_API_KEY)
+                    .model(plan.model)
+                    .messages(Arrays.asList(systemMsg, userMsg))
+                    .resultFormat(GenerationParam.ResultFormat.MESSAGE)
+                    .temperature(temperature)
+                    .topP(0.8)
+                    .maxTokens(plan.maxTokens)
+                    .incrementalOutput(false)
+                    .build();
+
+            GenerationResult result = call(param, priority);
+            if (result == null || result.getOutput() == null ||
+                    result.getOutput().getChoices() == null || result.getOutput().getChoices().isEmpty()) {
+                throw new IOException("API返回的响应为空或不完整");
+            }
+            String content = result.getOutput().getChoices().get(0).getMessage().getContent();
+            if (content == null) content = "";
+
+            int inputTokens = inputTokens(result);
+            int outputTokens = outputTokens(result);
+            boolean truncated = isTruncated(result);
+            boolean success = !truncated && !content.isBlank();
+            tokenAccounting.record(category, plan.model, inputTokens, outputTokens, truncated, success);
+            if (!success && plan.isReduced()) {
+                return null;
+            }
+            return new CodeGeneration(content, inputTokens, outputTokens);
+
+        } catch (ApiException e) {
+            logger.error("API 调用异常", e);
+            throw new IOException("API调用异常: " + e.getMessage(), e);
+        } catch (NoApiKeyException e) {
+            logger.error("API密钥异常", e);
+            throw new IOException("API密钥无效或缺失: " + e.getMessage(), e);
+        } catch (InputRequiredException e) {
+            logger.error("输入参数异常", e);
+            throw new IOException("输入参数异常: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 调用模型：先在调度器中按请求类别排队取得执行许可，所有窗口共用同一个并发上限
+     */
+    private GenerationResult call(GenerationParam param, AIRequestScheduler.Priority priority)
+            throws ApiException, NoApiKeyException, InputRequiredException, IOException {
+        AIRequestScheduler.Permit permit;
+        try {
+            permit = AIRequestScheduler.getInstance().acquire(priority);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待请求许可时被中断", e);
+        }
+        try (permit) {
+            if (permit.getWaitedMs() > 0) {
+                logger.debug("{}请求排队 {}ms", priority, permit.getWaitedMs());
+            }
+            return generation.call(param);
+        }
+    }
+
+    /**
+     * 规范化模型返回的代码；响应没有内容时返回 null
+     */
+    private CodeNormalizer.Result normalizeResponse(GenerationResult result) throws IOException {
         if (result == null || result.getOutput() == null ||
                 result.getOutput().getChoices() == null || result.getOutput().getChoices().isEmpty()) {
             throw new IOException("API返回的响应为空或不完整");
@@ -192,24 +404,40 @@ public class AliyunAIClient {
 
         String content = result.getOutput().getChoices().get(0).getMessage().getContent();
         if (content == null || content.trim().isEmpty()) {
-            throw new IOException("API返回的代码内容为空");
+            return null;
         }
 
-        content = content.replaceAll("(?i)```[a-z]*\\s*", "").trim();
-
-        if (!content.contains("class") && !content.contains("import")) {
+        CodeNormalizer.Result normalized = CodeNormalizer.normalize(content);
+        if (normalized.className == null) {
             logger.warn("响应可能不是Java代码: {}", content.substring(0, Math.min(100, content.length())));
         }
-
-        if (!content.startsWith("package") && !content.startsWith("import")) {
-            content = "import javafx.application.Application;\n" +
-                    "import javafx.scene.Scene;\n" +
-                    "import javafx.scene.layout.*;\n" +
-                    "import javafx.scene.control.*;\n" +
-                    "import javafx.stage.Stage;\n\n" + content;
+        if (!normalized.addedImports.isEmpty()) {
+            logger.info("补全import: {}", normalized.addedImports);
         }
+        if (!normalized.expandedWildcards.isEmpty()) {
+            logger.info("展开通配符import: {}", normalized.expandedWildcards);
+        }
+
+        return normalized;
+    }
+
+    /**
+     * 是否因达到 maxTokens 而截断
+     */
+    private static boolean isTruncated(GenerationResult result) {
+        return result != null && result.getOutput() != null && result.getOutput().getChoices() != null
+                && !result.getOutput().getChoices().isEmpty()
+                && "length".equals(result.getOutput().getChoices().get(0).getFinishReason());
+    }
+
+    private static int inputTokens(GenerationResult result) {
+        return result != null && result.getUsage() != null && result.getUsage().getInputTokens() != null
+                ? result.getUsage().getInputTokens() : 0;
+    }
 
-        return content;
+    private static int outputTokens(GenerationResult result) {
+        return result != null && result.getUsage() != null && result.getUsage().getOutputTokens() != null
+                ? result.getUsage().getOutputTokens() : 0;
     }
 
     private String getSystemPrompt() {
@@ -251,13 +479,15 @@ public class AliyunAIClient {
                     .maxTokens(500)
                     .build();
 
-            GenerationResult result = generation.call(param);
+            GenerationResult result = call(param, AIRequestScheduler.Priority.MAINTENANCE);
 
             boolean success = result != null &&
                     result.getOutput() != null &&
                     result.getOutput().getChoices() != null &&
                     !result.getOutput().getChoices().isEmpty() &&
                     result.getOutput().getChoices().get(0).getMessage().getContent() != null;
+            tokenAccounting.record(TEST_CATEGORY, MODEL_NAME, inputTokens(result), outputTokens(result),
+                    isTruncated(result), success);
 
             if (success) {
                 logger.info("✅ API连接测试成功");
@@ -304,6 +534,18 @@ public class AliyunAIClient {
         return ALIYUN_API_KEY.substring(0, 6) + "..." + ALIYUN_API_KEY.substring(ALIYUN_API_KEY.length() - 4);
     }
 
+    /**
+     * 可用模型中的 turbo 系列模型作为快速模型；列表中没有时返回 null，不切换模型
+     */
+    private String pickFastModel() {
+        for (String model : getAvailableModels()) {
+            if (model.startsWith(FAST_MODEL_FAMILY) && !model.equals(MODEL_NAME)) {
+                return model;
+            }
+        }
+        return null;
+    }
+
     public List<String> getAvailableModels() {
         return Arrays.asList(
                 "qwen-turbo",
@@ -324,4 +566,45 @@ public class AliyunAIClient {
             throw new IOException(msg);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 代码生成结果及token用量
+     * generateCodeWithUsage 返回的代码已经规范化，调用方不需要再清理
+     */
+    public static class CodeGeneration {
+        private final String code;
+        private final int inputTokens;
+        private final int outputTokens;
+        private final long normalizeMs;
+
+        public CodeGeneration(String code, int inputTokens, int outputTokens) {
+            this(code, inputTokens, outputTokens, 0);
+        }
+
+        public CodeGeneration(String code, int inputTokens, int outputTokens, long normalizeMs) {
+            this.code = code;
+            this.inputTokens = inputTokens;
+            this.outputTokens = outputTokens;
+            this.normalizeMs = normalizeMs;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public int getInputTokens() {
+            return inputTokens;
+        }
+
+        public int getOutputTokens() {
+            return outputTokens;
+        }
+
+        /**
+         * 规范化代码的耗时，没有规范化时为 0
+         */
+        public long getNormalizeMs() {
+            return normalizeMs;
+        }
+    }
+}
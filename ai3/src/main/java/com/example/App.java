@@ -1,24 +1,33 @@
 package com.example;
 
 import javafx.application.Application;
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.Scene;
+import javafx.scene.SnapshotParameters;
 import javafx.scene.control.*;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
 import javafx.scene.layout.*;
+import javafx.scene.transform.Scale;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.format.DateTimeFormatter;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class App extends Application {
 
@@ -27,9 +36,20 @@ public class App extends Application {
     private TextArea promptArea;
     private TextArea previewArea;
     private ComboBox<String> uiTypeComboBox;
+    // 界面类型：{统计和套件中使用的键, 下拉框显示的文字, 提示词中的名称}
+    static final String[][] UI_TYPES = {
+            {"login", "📱 登录界面", "登录界面"},
+            {"register", "📝 注册表单", "注册表单"},
+            {"table", "📊 数据表格", "数据表格"},
+            {"dashboard", "🖥️ 仪表板", "仪表板"},
+            {"settings", "⚙️ 设置面板", "设置面板"},
+            {"file_manager", "📁 文件管理器", "文件管理器"},
+            {"custom", "🎯 自定义界面", "自定义界面"}
+    };
     private TextField classNameField;
     private CheckBox includeCommentsCheckBox;
     private CheckBox includeMainMethodCheckBox;
+    private CheckBox autoRepairCheckBox;
     private Button generateButton;
     private Button runButton;
     private ProgressIndicator progressIndicator;
@@ -38,129 +58,162 @@ public class App extends Application {
 
     // 预览相关组件
     private StackPane previewContentPane;
-    private javafx.stage.Stage embeddedStage;
-    private javafx.scene.Scene embeddedScene;
-    private BorderPane previewContainer; // 存储预览容器
-
-    // 客户端和运行器
-    private AliyunAIClient aiClient;
+    private PreviewSession previewSession; // 当前嵌入的预览会话
+    private PreviewSession pendingPreviewSession; // 正在后台编译的预览会话
+
+    // 实时预览：代码停止编辑后延迟重新编译
+    private static final Duration LIVE_PREVIEW_DELAY = Duration.millis(800);
+    private CheckBox livePreviewCheckBox;
+
+    // 编辑时的快速检查：只做解析和语义分析，结果过期则丢弃
+    private static final Duration CODE_CHECK_DELAY = Duration.millis(500);
+    private final PauseTransition codeCheckDebounce = new PauseTransition(CODE_CHECK_DELAY);
+    private final AtomicInteger codeCheckSequence = new AtomicInteger();
+    private Label diagnosticsLabel;
+    private ListView<CodeRunner.CompileDiagnostic> diagnosticsList;
+    private final ExecutorService codeCheckExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "code-checker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final PauseTransition livePreviewDebounce = new PauseTransition(LIVE_PREVIEW_DELAY);
+    private String lastLiveSource = "";
+    private final ExecutorService previewExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "preview-runner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 客户端和运行器：AI客户端在后台创建，使用前通过 awaitAIClient 等待
+    private volatile AliyunAIClient aiClient;
+    private CompletableFuture<AliyunAIClient> aiClientReady;
     private CodeRunner codeRunner;
 
-    // JavaFX配置
-    private static String javafxHome = null;
+    // 自动修复的最大补丁请求次数
+    private static final int MAX_REPAIR_ATTEMPTS = 3;
 
-    static {
-        // 启动时检测JavaFX
-        detectJavaFX();
-    }
+    // 耗时统计：生成后的运行会延续到随后的预览
+    private final PipelineMetrics pipelineMetrics = PipelineMetrics.getInstance();
+    private volatile PipelineMetrics.Run pipelineRun;
+
+    // 启动时的后台初始化（环境检测、AI客户端、编译器预热）并行执行
+    private final StartupTimeline startupTimeline = StartupTimeline.getInstance();
+    private final AtomicInteger startupThreadCount = new AtomicInteger();
+    private final ExecutorService startupExecutor = Executors.newFixedThreadPool(3, r -> {
+        Thread thread = new Thread(r, "startup-" + startupThreadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // JavaFX配置：由后台环境检测填充，检测完成前 environmentDetected 为 false
+    private static volatile String javafxHome = null;
+    private static volatile boolean environmentDetected = false;
 
     @Override
     public void start(Stage primaryStage) {
-        // 初始化客户端和运行器
-        initializeAIClient();
+        // 先启动后台初始化，窗口显示和它们并行进行
+        CompletableFuture<Void> environmentReady = CompletableFuture.runAsync(this::initializeEnvironment, startupExecutor);
+        aiClientReady = CompletableFuture.supplyAsync(this::initializeAIClient, startupExecutor);
         initializeCodeRunner();
+        CompletableFuture<Void> compilerReady = CompletableFuture.runAsync(this::warmUpCompiler, startupExecutor);
 
         primaryStage.setTitle("JavaFX AI代码生成器");
 
-        // 创建主布局
-        BorderPane mainLayout = createMainLayout();
+        // 先显示只有标题和状态栏的窗口，三列布局在窗口显示后的下一帧创建
+        BorderPane mainLayout;
+        try (StartupTimeline.Span ignored = startupTimeline.span("创建窗口框架")) {
+            mainLayout = createMainLayout();
+            Scene scene = new Scene(mainLayout, 1400, 800);
+            primaryStage.setScene(scene);
+            primaryStage.show();
+        }
+        startupTimeline.mark("窗口显示");
 
-        // 创建场景
-        Scene scene = new Scene(mainLayout, 1400, 800);
+        Platform.runLater(() -> {
+            try (StartupTimeline.Span ignored = startupTimeline.span("创建三列布局")) {
+                mainLayout.setCenter(createThreeColumnLayout());
+            }
+            startupTimeline.mark("界面可用");
+        });
 
-        primaryStage.setScene(scene);
-        primaryStage.show();
+        environmentReady.thenRun(() -> Platform.runLater(this::updateJavaFXStatus));
+        CompletableFuture.allOf(environmentReady, aiClientReady, compilerReady)
+                .handle((ignored, error) -> {
+                    System.out.println(startupTimeline.getReport());
+                    startupExecutor.shutdown();
+                    return null;
+                });
     }
 
     /**
-     * 检测JavaFX环境
+     * 后台检测JavaFX环境
      */
-    private static void detectJavaFX() {
-        System.out.println("=== JavaFX环境检测 ===");
-
-        // 1. 检查系统属性
-        javafxHome = System.getProperty("javafx.home");
-        System.out.println("1. 系统属性 javafx.home: " + javafxHome);
-
-        // 2. 检查环境变量
-        if (javafxHome == null || javafxHome.isEmpty()) {
-            javafxHome = System.getenv("JAVAFX_HOME");
-            System.out.println("2. 环境变量 JAVAFX_HOME: " + javafxHome);
-        }
-
-        // 3. 检查常见的JavaFX安装路径
-        if (javafxHome == null || javafxHome.isEmpty()) {
-            String[] commonPaths = {
-                    System.getProperty("user.home") + "/.m2/repository/org/openjfx",
-                    System.getProperty("user.home") + "/.m2/repository/org/openjfx/javafx-sdk",
-                    "C:/Java/javafx-sdk-21.0.1",
-                    "C:/Program Files/Java/javafx-sdk-21.0.1",
-                    "C:/javafx-sdk-21.0.1",
-                    "/usr/lib/jvm/javafx-sdk-21.0.1",
-                    "/usr/local/javafx-sdk-21.0.1"
-            };
-
-            for (String path : commonPaths) {
-                Path p = Paths.get(path);
-                if (Files.exists(p)) {
-                    // 检查是否是有效的JavaFX SDK
-                    if (isValidJavaFXSDK(p)) {
-                        javafxHome = path;
-                        System.out.println("3. 找到JavaFX SDK: " + path);
-                        break;
-                    }
-                }
+    private void initializeEnvironment() {
+        try (StartupTimeline.Span ignored = startupTimeline.span("检测JavaFX环境")) {
+            detectJavaFX(false);
+            // 如果检测到JavaFX路径，设置到系统属性中
+            if (javafxHome != null && !javafxHome.equals("classpath")) {
+                System.setProperty("javafx.home", javafxHome);
             }
         }
+    }
 
-        // 4. 检查类路径中是否有JavaFX
-        try {
-            Class.forName("javafx.application.Application");
-            System.out.println("4. JavaFX在类路径中检测到");
-            if (javafxHome == null) {
-                javafxHome = "classpath";
-            }
-        } catch (ClassNotFoundException e) {
-            System.out.println("4. JavaFX未在类路径中找到");
+    /**
+     * 检测JavaFX环境（结果由 EnvironmentProbe 缓存，refresh 为 true 时忽略缓存重新查找）
+     */
+    private static void detectJavaFX(boolean refresh) {
+        System.out.println("=== JavaFX环境检测 ===");
+        EnvironmentProbe probe = EnvironmentProbe.getInstance();
+        EnvironmentProbe.Environment env = refresh ? probe.refresh(null) : probe.probe(null);
+
+        if (env.hasSdk()) {
+            javafxHome = env.sdkHome;
+            System.out.println("找到JavaFX SDK: " + env);
+        } else if (env.onClasspath) {
+            javafxHome = "classpath";
+            System.out.println("JavaFX在类路径中检测到");
+        } else {
+            javafxHome = null;
         }
 
         System.out.println("最终JavaFX路径: " + (javafxHome != null ? javafxHome : "未找到"));
         System.out.println("========================\n");
+        environmentDetected = true;
     }
 
     /**
-     * 检查是否是有效的JavaFX SDK目录
+     * 检查是否是有效的JavaFX SDK目录（SDK根目录或其lib目录）
      */
     private static boolean isValidJavaFXSDK(Path path) {
-        // 检查目录结构
-        Path libPath = path.resolve("lib");
-        if (Files.exists(libPath) && Files.isDirectory(libPath)) {
-            // 检查是否有JavaFX jar文件
-            try {
-                return Files.list(libPath)
-                        .filter(p -> p.toString().endsWith(".jar") && p.toString().contains("javafx"))
-                        .count() > 0;
-            } catch (IOException e) {
-                return false;
-            }
-        }
-        return false;
+        return EnvironmentProbe.findLibDir(path) != null;
     }
 
     /**
-     * 初始化AI客户端
+     * 初始化AI客户端（后台线程）
      */
-    private void initializeAIClient() {
-        try {
-            aiClient = new AliyunAIClient();
+    private AliyunAIClient initializeAIClient() {
+        try (StartupTimeline.Span ignored = startupTimeline.span("创建AI客户端")) {
+            aiClient = ServiceRegistry.aiClient();
             System.out.println("AI客户端初始化完成");
-
+            return aiClient;
         } catch (Exception e) {
-            showAlert("初始化错误", "初始化AI客户端失败: " + e.getMessage());
+            Platform.runLater(() -> showAlert("初始化错误", "初始化AI客户端失败: " + e.getMessage()));
             e.printStackTrace();
+            return null;
         }
     }
 
+    /**
+     * 等待后台初始化的AI客户端（不能在FX线程调用）
+     */
+    private AliyunAIClient awaitAIClient() {
+        AliyunAIClient client = aiClient != null ? aiClient : aiClientReady.join();
+        if (client == null) {
+            throw new IllegalStateException("AI客户端初始化失败，请检查API密钥配置");
+        }
+        return client;
+    }
+
     /**
      * 初始化代码运行器
      */
@@ -169,14 +222,20 @@ public class App extends Application {
         System.setProperty("prism.text", "t2k");
         System.setProperty("javafx.verbose", "false");
 
-        // 如果检测到JavaFX路径，设置到系统属性中
-        if (javafxHome != null && !javafxHome.equals("classpath")) {
-            System.setProperty("javafx.home", javafxHome);
-        }
-
         codeRunner = new CodeRunner();
     }
 
+    /**
+     * 预热编译器：提前完成javac的类加载，第一次检查和预览不再等待
+     */
+    private void warmUpCompiler() {
+        try (StartupTimeline.Span ignored = startupTimeline.span("预热编译器")) {
+            codeRunner.warmUp();
+        } catch (Exception e) {
+            System.err.println("编译器预热失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 创建主布局
      */
@@ -187,8 +246,10 @@ public class App extends Application {
         // 顶部 - 标题
         mainLayout.setTop(createHeader());
 
-        // 中心 - 三列布局
-        mainLayout.setCenter(createThreeColumnLayout());
+        // 中心 - 三列布局在窗口显示后创建，之前显示加载提示
+        Label loadingLabel = new Label("⏳ 正在加载...");
+        loadingLabel.setStyle("-fx-font-size: 16px; -fx-text-fill: #7f8c8d;");
+        mainLayout.setCenter(loadingLabel);
 
         // 底部 - 状态栏
         mainLayout.setBottom(createFooter());
@@ -220,7 +281,9 @@ public class App extends Application {
      * 获取JavaFX状态文本
      */
     private String getJavaFXStatus() {
-        if (javafxHome == null) {
+        if (!environmentDetected) {
+            return "⏳ 正在检测...";
+        } else if (javafxHome == null) {
             return "❌ 未检测到 - 请在设置中配置JavaFX路径";
         } else if (javafxHome.equals("classpath")) {
             return "✅ 已集成 (类路径)";
@@ -269,16 +332,10 @@ public class App extends Application {
         typeLabel.setStyle("-fx-font-weight: bold;");
 
         uiTypeComboBox = new ComboBox<>();
-        uiTypeComboBox.getItems().addAll(
-                "📱 登录界面",
-                "📝 注册表单",
-                "📊 数据表格",
-                "🖥️ 仪表板",
-                "⚙️ 设置面板",
-                "📁 文件管理器",
-                "🎯 自定义界面"
-        );
-        uiTypeComboBox.setValue("📱 登录界面");
+        for (String[] uiType : UI_TYPES) {
+            uiTypeComboBox.getItems().add(uiType[1]);
+        }
+        uiTypeComboBox.getSelectionModel().select(0);
         uiTypeComboBox.setPrefWidth(200);
 
         typeBox.getChildren().addAll(typeLabel, uiTypeComboBox);
@@ -309,7 +366,11 @@ public class App extends Application {
         CheckBox includeCssCheckBox = new CheckBox("包含CSS样式");
         includeCssCheckBox.setSelected(true);
 
-        optionsBox.getChildren().addAll(includeCommentsCheckBox, includeMainMethodCheckBox, includeCssCheckBox);
+        autoRepairCheckBox = new CheckBox("自动修复编译错误");
+        autoRepairCheckBox.setSelected(true);
+        autoRepairCheckBox.setTooltip(new Tooltip("生成的代码编译失败时，把错误发回AI请求最小补丁（最多" + MAX_REPAIR_ATTEMPTS + "次）"));
+
+        optionsBox.getChildren().addAll(includeCommentsCheckBox, includeMainMethodCheckBox, includeCssCheckBox, autoRepairCheckBox);
 
         // 描述输入区域
         Label promptLabel = new Label("✨ 详细描述你的UI需求:");
@@ -453,15 +514,37 @@ public class App extends Application {
             } else {
                 runButton.setDisable(true);
             }
+
+            // 编辑停止后快速检查语法和类型错误
+            codeCheckDebounce.playFromStart();
         });
 
-        codeInfoBox.getChildren().addAll(lineCountLabel, charCountLabel);
+        // 编译诊断：点击定位到编辑器中的错误位置
+        diagnosticsLabel = new Label("");
+        diagnosticsLabel.setStyle("-fx-text-fill: #95a5a6; -fx-font-size: 12px;");
+
+        diagnosticsList = new ListView<>();
+        diagnosticsList.setPrefHeight(90);
+        diagnosticsList.setStyle("-fx-font-family: 'Consolas', 'Monospaced'; -fx-font-size: 11px;");
+        diagnosticsList.setVisible(false);
+        diagnosticsList.managedProperty().bind(diagnosticsList.visibleProperty());
+        diagnosticsList.setOnMouseClicked(e -> {
+            CodeRunner.CompileDiagnostic diagnostic = diagnosticsList.getSelectionModel().getSelectedItem();
+            if (diagnostic != null) {
+                highlightDiagnostic(diagnostic);
+            }
+        });
+
+        codeCheckDebounce.setOnFinished(e -> runCodeCheck());
+
+        codeInfoBox.getChildren().addAll(lineCountLabel, charCountLabel, diagnosticsLabel);
 
         codeColumn.getChildren().addAll(
                 codeHeader,
                 outputArea,
                 codeToolbar,
-                codeInfoBox
+                codeInfoBox,
+                diagnosticsList
         );
 
         return codeColumn;
@@ -540,7 +623,20 @@ public class App extends Application {
         configButton.setStyle("-fx-background-color: #9b59b6; -fx-text-fill: white;");
         configButton.setOnAction(e -> openSettings());
 
-        runControls.getChildren().addAll(runButton, validateButton, configButton);
+        // 实时预览开关
+        livePreviewCheckBox = new CheckBox("⚡ 实时预览");
+        livePreviewCheckBox.setTooltip(new Tooltip("编辑代码后自动重新编译并替换预览"));
+        livePreviewCheckBox.selectedProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue) {
+                lastLiveSource = "";
+                scheduleLivePreview();
+            } else {
+                livePreviewDebounce.stop();
+            }
+        });
+        livePreviewDebounce.setOnFinished(e -> runLivePreview());
+
+        runControls.getChildren().addAll(runButton, validateButton, configButton, livePreviewCheckBox);
 
         // 运行日志区域
         VBox logBox = new VBox(10);
@@ -571,6 +667,7 @@ public class App extends Application {
             } else {
                 runButton.setDisable(true);
             }
+            scheduleLivePreview();
         });
 
         // 添加所有组件到预览列
@@ -594,51 +691,40 @@ public class App extends Application {
         label.setAlignment(Pos.CENTER);
         previewContentPane.getChildren().add(label);
 
-        if (embeddedStage != null) {
-            embeddedStage.close();
-            embeddedStage = null;
+        // 关闭预览会话：断开场景图并释放类加载器
+        if (previewSession != null) {
+            previewSession.close();
+            previewSession = null;
         }
-        if (embeddedScene != null) {
-            embeddedScene = null;
-        }
-        previewContainer = null;
         addLog("预览已清空");
     }
 
     /**
-     * 打开预览窗口（放大功能）- 改进版：创建场景副本
+     * 打开预览窗口（放大功能）
+     * 复用正在运行的预览，不重新编译：快照模式渲染为可缩放的图像，实时模式借用预览根节点放入缩放视图
      */
     private void openPreviewWindow() {
-        if (previewContentPane.getChildren().isEmpty() ||
-                previewContentPane.getChildren().size() == 1 &&
-                        previewContentPane.getChildren().get(0) instanceof Label) {
+        PreviewSession session = previewSession;
+        if (session == null || session.getRoot() == null) {
             showAlert("提示", "没有预览内容可放大");
             return;
         }
 
-        String code = outputArea.getText().trim();
-        if (code.isEmpty()) {
-            showAlert("错误", "没有代码可运行");
-            return;
-        }
-
         Stage previewStage = new Stage();
         previewStage.setTitle("预览效果图 - 放大模式");
 
         // 创建放大预览的容器
         StackPane zoomContentPane = new StackPane();
-        zoomContentPane.setStyle("-fx-background-color: white; -fx-border-color: #000000; -fx-border-width: 2;");
-        zoomContentPane.setPrefSize(800, 600);
-
-        // 显示加载中提示
-        Label loadingLabel = new Label("正在加载放大预览...");
-        loadingLabel.setStyle("-fx-text-fill: #7f8c8d; -fx-font-size: 14px;");
-        loadingLabel.setAlignment(Pos.CENTER);
-        zoomContentPane.getChildren().add(loadingLabel);
+        zoomContentPane.setStyle("-fx-background-color: white;");
+        ScrollPane zoomScrollPane = new ScrollPane(zoomContentPane);
+        zoomScrollPane.setPannable(true);
+        zoomScrollPane.setFitToWidth(true);
+        zoomScrollPane.setFitToHeight(true);
+        zoomScrollPane.setStyle("-fx-border-color: #000000; -fx-border-width: 2;");
 
         BorderPane previewLayout = new BorderPane();
         previewLayout.setStyle("-fx-background-color: #ffffff;");
-        previewLayout.setCenter(zoomContentPane);
+        previewLayout.setCenter(zoomScrollPane);
 
         // 添加控制按钮
         HBox controls = new HBox(10);
@@ -646,160 +732,117 @@ public class App extends Application {
         controls.setStyle("-fx-background-color: #f0f0f0;");
         controls.setAlignment(Pos.CENTER);
 
+        Label scaleLabel = new Label("缩放: 150%");
+        Slider scaleSlider = new Slider(0.5, 4.0, 1.5);
+        scaleSlider.setPrefWidth(200);
+
+        CheckBox liveCheckBox = new CheckBox("实时交互");
+        liveCheckBox.setTooltip(new Tooltip("将运行中的预览移入放大窗口，关闭后归还"));
+
+        ZoomView zoomView = new ZoomView(session, zoomContentPane);
+
         Button closeButton = new Button("关闭");
         closeButton.setOnAction(e -> previewStage.close());
 
         Button refreshButton = new Button("刷新");
-        refreshButton.setOnAction(event -> {
-            // 重新运行代码更新预览
-            runCodeForZoom(previewStage, zoomContentPane);
+        refreshButton.setOnAction(event -> zoomView.render(scaleSlider.getValue(), liveCheckBox.isSelected()));
+
+        scaleSlider.valueProperty().addListener((observable, oldValue, newValue) -> {
+            scaleLabel.setText(String.format("缩放: %.0f%%", newValue.doubleValue() * 100));
+            zoomView.render(newValue.doubleValue(), liveCheckBox.isSelected());
         });
+        liveCheckBox.selectedProperty().addListener((observable, oldValue, newValue) ->
+                zoomView.render(scaleSlider.getValue(), newValue));
 
-        controls.getChildren().addAll(closeButton, refreshButton);
+        controls.getChildren().addAll(closeButton, refreshButton, scaleLabel, scaleSlider, liveCheckBox);
         previewLayout.setBottom(controls);
 
         Scene previewScene = new Scene(previewLayout, 800, 600);
         previewStage.setScene(previewScene);
 
-        // 监听窗口关闭事件
-        previewStage.setOnCloseRequest(event -> {
+        // 监听窗口关闭事件：归还借用的预览根节点
+        previewStage.setOnHidden(event -> {
+            zoomView.restore();
             addLog("放大预览窗口已关闭");
         });
 
         previewStage.show();
         addLog("打开放大预览窗口");
 
-        // 重新运行代码来创建放大预览
-        runCodeForZoom(previewStage, zoomContentPane);
+        zoomView.render(scaleSlider.getValue(), false);
     }
+
     /**
-     * 为放大窗口运行代码
+     * 放大视图：基于已运行的预览会话渲染，不触发编译
      */
-    private void runCodeForZoom(Stage zoomStage, StackPane zoomContentPane) {
-        String code = outputArea.getText().trim();
-
-        if (code.isEmpty()) {
-            return;
+    private class ZoomView {
+        private final PreviewSession session;
+        private final StackPane zoomContentPane;
+        private Group liveGroup; // 实时模式下借用根节点的缩放容器
+
+        ZoomView(PreviewSession session, StackPane zoomContentPane) {
+            this.session = session;
+            this.zoomContentPane = zoomContentPane;
         }
 
-        // 清空之前的预览
-        zoomContentPane.getChildren().clear();
-
-        // 显示加载中
-        Label loadingLabel = new Label("正在加载预览...");
-        loadingLabel.setStyle("-fx-text-fill: #7f8c8d; -fx-font-size: 14px;");
-        loadingLabel.setAlignment(Pos.CENTER);
-        zoomContentPane.getChildren().add(loadingLabel);
-
-        // 创建一个新的CodeRunner实例用于放大预览
-        CodeRunner zoomRunner = new CodeRunner();
-
-        // 设置舞台回调
-        zoomRunner.setStageCallback(stage -> {
-            Platform.runLater(() -> {
-                try {
-                    // 获取舞台的场景
-                    javafx.scene.Scene scene = stage.getScene();
-                    if (scene != null) {
-                        // 清空预览区域
-                        zoomContentPane.getChildren().clear();
-
-                        // 创建新的根节点
-                        BorderPane container = new BorderPane();
-                        container.setStyle("-fx-background-color: white;");
-
-                        // 添加场景的根节点到容器
-                        Node rootNode = scene.getRoot();
-                        container.setCenter(rootNode);
+        /**
+         * 按指定比例渲染：快照模式生成图像，实时模式缩放借用的根节点
+         */
+        void render(double scale, boolean live) {
+            if (session.isClosed() || session.getRoot() == null) {
+                restore();
+                showMessage("预览已关闭或已更新，请重新打开放大窗口");
+                return;
+            }
 
-                        // 添加到预览区域
-                        zoomContentPane.getChildren().add(container);
+            if (live) {
+                Node root = session.getRoot();
+                if (liveGroup == null) {
+                    // 节点只能有一个父节点，借用期间从主预览中移出
+                    session.getContainer().setCenter(null);
+                    liveGroup = new Group(root);
+                    zoomContentPane.getChildren().setAll(liveGroup);
+                }
+                root.setScaleX(1);
+                root.setScaleY(1);
+                liveGroup.getTransforms().setAll(new Scale(scale, scale));
+                return;
+            }
 
-                        // 隐藏原始舞台
-                        stage.hide();
+            restore();
 
-                        addLog("✅ 放大预览加载成功");
-                    }
-                } catch (Exception e) {
-                    addLog("❌ 放大预览加载失败: " + e.getMessage());
-
-                    // 显示错误信息
-                    zoomContentPane.getChildren().clear();
-                    Label errorLabel = new Label("放大预览加载失败: " + e.getMessage());
-                    errorLabel.setStyle("-fx-text-fill: #e74c3c; -fx-font-size: 12px; -fx-wrap-text: true;");
-                    errorLabel.setAlignment(Pos.CENTER);
-                    zoomContentPane.getChildren().add(errorLabel);
-                }
-            });
-        });
+            // 快照放大渲染，保持清晰度
+            SnapshotParameters parameters = new SnapshotParameters();
+            parameters.setTransform(new Scale(scale, scale));
+            WritableImage image = session.getRoot().snapshot(parameters, null);
+            zoomContentPane.getChildren().setAll(new ImageView(image));
+        }
 
-        // 在新的线程中运行代码
-        new Thread(() -> {
-            try {
-                // 运行代码
-                zoomRunner.runJavaFXInCurrentVM(code, error -> {
-                    Platform.runLater(() -> {
-                        addLog("❌ 放大预览运行失败: " + error);
-
-                        // 显示错误信息
-                        zoomContentPane.getChildren().clear();
-                        Label errorLabel = new Label("运行失败: " + error);
-                        errorLabel.setStyle("-fx-text-fill: #e74c3c; -fx-font-size: 12px; -fx-wrap-text: true;");
-                        errorLabel.setAlignment(Pos.CENTER);
-                        zoomContentPane.getChildren().add(errorLabel);
-                    });
-                });
-            } catch (Exception e) {
-                Platform.runLater(() -> {
-                    addLog("❌ 放大预览异常: " + e.getMessage());
-
-                    // 显示错误信息
-                    zoomContentPane.getChildren().clear();
-                    Label errorLabel = new Label("运行异常: " + e.getMessage());
-                    errorLabel.setStyle("-fx-text-fill: #e74c3c; -fx-font-size: 12px; -fx-wrap-text: true;");
-                    errorLabel.setAlignment(Pos.CENTER);
-                    zoomContentPane.getChildren().add(errorLabel);
-                });
+        /**
+         * 将借用的根节点归还到主预览容器
+         */
+        void restore() {
+            if (liveGroup == null) {
+                return;
             }
-        }).start();
-    }
-    /**
-     * 创建节点的深度副本（简化版）
-     */
-    private Region createDeepCopy(Node original) {
-        try {
-            // 这是一个简化的深度复制方法
-            // 对于复杂的场景，可能需要更复杂的复制逻辑
-            if (original instanceof Region) {
-                Region region = (Region) original;
-
-                // 创建一个相同类型的新Region（简化处理）
-                Region copy = new Pane();
-                copy.setStyle(region.getStyle());
-                copy.setPrefSize(region.getPrefWidth(), region.getPrefHeight());
-                copy.setMinSize(region.getMinWidth(), region.getMinHeight());
-                copy.setMaxSize(region.getMaxWidth(), region.getMaxHeight());
-
-                // 复制布局约束
-                copy.setPadding(region.getPadding());
-
-                // 复制子节点（递归）
-                if (region instanceof Pane) {
-                    Pane pane = (Pane) region;
-                    for (Node child : pane.getChildren()) {
-                        Node childCopy = createDeepCopy(child);
-                        if (childCopy != null) {
-                            ((Pane) copy).getChildren().add(childCopy);
-                        }
-                    }
-                }
-
-                return copy;
+            Group group = liveGroup;
+            liveGroup = null;
+            group.getChildren().clear();
+            zoomContentPane.getChildren().remove(group);
+
+            Node root = session.getRoot();
+            BorderPane container = session.getContainer();
+            if (!session.isClosed() && root != null && container != null && container.getCenter() == null) {
+                container.setCenter(root);
             }
-        } catch (Exception e) {
-            addLog("创建节点副本失败: " + e.getMessage());
         }
-        return null;
+
+        private void showMessage(String message) {
+            Label label = new Label(message);
+            label.setStyle("-fx-text-fill: #7f8c8d; -fx-font-size: 14px;");
+            label.setAlignment(Pos.CENTER);
+            zoomContentPane.getChildren().setAll(label);
+        }
     }
 
     /**
@@ -822,85 +865,288 @@ public class App extends Application {
         // 清空之前的预览
         clearPreview();
 
-        // 设置舞台回调
-        codeRunner.setStageCallback(stage -> {
-            Platform.runLater(() -> {
-                try {
-                    // 获取舞台的场景
-                    javafx.scene.Scene scene = stage.getScene();
-                    if (scene != null) {
-                        // 清空预览区域
-                        previewContentPane.getChildren().clear();
+        lastLiveSource = normalizeSource(code);
+        startPreview(code, false);
+    }
+
+    /**
+     * 代码编辑后触发实时预览（防抖）
+     */
+    private void scheduleLivePreview() {
+        if (livePreviewCheckBox != null && livePreviewCheckBox.isSelected()) {
+            livePreviewDebounce.playFromStart();
+        }
+    }
+
+    /**
+     * 实时预览：源码实质未变化（仅空白或注释改动）时跳过重新编译
+     */
+    private void runLivePreview() {
+        String code = outputArea.getText().trim();
+        if (code.isEmpty() || !code.contains("Application")) {
+            return;
+        }
 
-                        // 创建新的根节点
-                        BorderPane container = new BorderPane();
-                        container.setStyle("-fx-background-color: white;");
+        String normalized = normalizeSource(code);
+        if (normalized.equals(lastLiveSource)) {
+            return;
+        }
+        lastLiveSource = normalized;
 
-                        // 添加场景的根节点到容器
-                        Node rootNode = scene.getRoot();
-                        container.setCenter(rootNode);
+        addLog("⚡ 实时预览：检测到代码变化，后台编译中...");
+        startPreview(code, true);
+    }
 
-                        // 添加控制按钮
-                        HBox controls = new HBox(10);
-                        controls.setPadding(new Insets(5));
-                        controls.setStyle("-fx-background-color: #f0f0f0;");
+    /**
+     * 在后台编译并启动预览
+     * 实时模式下保留当前预览，新预览就绪后只替换预览根节点
+     */
+    private void startPreview(String code, boolean live) {
+        // 延续生成阶段的运行记录，否则开始新的记录
+        PipelineMetrics.Run run = pipelineRun;
+        if (run == null || run.isFinished()) {
+            run = pipelineMetrics.startRun(live ? "实时预览" : "预览");
+            pipelineRun = run;
+        }
+        PipelineMetrics.Run previewRun = run;
 
-                        Button closeButton = new Button("关闭");
-                        closeButton.setOnAction(e -> clearPreview());
+        // 丢弃尚未完成的上一次预览
+        if (pendingPreviewSession != null) {
+            pendingPreviewSession.close();
+        }
+        PreviewSession session = new PreviewSession();
+        pendingPreviewSession = session;
 
-                        Button refreshButton = new Button("刷新");
-                        refreshButton.setOnAction(event -> runCode());
+        // 预览任务串行执行，保证回调与本次运行对应
+        CompletableFuture.runAsync(() -> {
+            codeRunner.setPipelineRun(previewRun);
+            codeRunner.setStageCallback(stage -> Platform.runLater(() -> embedPreview(stage, session, previewRun, live)));
 
-                        controls.getChildren().addAll(closeButton, refreshButton);
-                        container.setBottom(controls);
+            try {
+                RunHandle handle = codeRunner.runJavaFXInCurrentVM(code, error -> {
+                    previewRun.finish(false);
+                    Platform.runLater(() -> onPreviewFailed(session, error, live));
+                });
+                session.bind(handle);
+            } catch (RuntimeException e) {
+                previewRun.finish(false);
+                Platform.runLater(() -> onPreviewFailed(session, "预览启动失败: " + e.getMessage(), live));
+            }
+        }, previewExecutor);
+    }
 
-                        // 添加到预览区域
-                        previewContentPane.getChildren().add(container);
+    /**
+     * 将预览舞台的根节点嵌入到预览区域
+     */
+    private void embedPreview(Stage stage, PreviewSession session, PipelineMetrics.Run previewRun, boolean live) {
+        long callbackStart = System.nanoTime();
+
+        // 已被更新的预览取代，直接释放；运行记录若仍被新的预览沿用则由新的预览结束
+        if (session != pendingPreviewSession) {
+            session.attach(stage, null, null);
+            if (previewRun != pipelineRun) {
+                previewRun.finish(false);
+            }
+            return;
+        }
+        pendingPreviewSession = null;
+
+        try {
+            // 获取舞台的场景
+            javafx.scene.Scene scene = stage.getScene();
+            if (scene == null) {
+                session.attach(stage, null, null);
+                return;
+            }
+            Node rootNode = scene.getRoot();
+
+            PreviewSession previous = previewSession;
+            BorderPane container = previous != null ? previous.getContainer() : null;
 
-                        // 保存容器引用
-                        previewContainer = container;
+            if (live && container != null && previewContentPane.getChildren().contains(container)) {
+                // 原地替换预览根节点，容器和控制按钮保持不变
+                container.setCenter(rootNode);
+            } else {
+                // 清空预览区域
+                previewContentPane.getChildren().clear();
 
-                        // 保存引用
-                        embeddedStage = stage;
-                        embeddedScene = scene;
+                // 创建新的根节点
+                container = new BorderPane();
+                container.setStyle("-fx-background-color: white;");
 
-                        // 隐藏原始舞台
-                        stage.hide();
+                // 添加场景的根节点到容器
+                container.setCenter(rootNode);
 
-                        addLog("✅ 代码预览加载成功");
-                        runProgressIndicator.setVisible(false);
-                        runButton.setDisable(false);
-                    }
-                } catch (Exception e) {
-                    addLog("❌ 预览加载失败: " + e.getMessage());
-                    runProgressIndicator.setVisible(false);
-                    runButton.setDisable(false);
+                // 添加控制按钮
+                HBox controls = new HBox(10);
+                controls.setPadding(new Insets(5));
+                controls.setStyle("-fx-background-color: #f0f0f0;");
+
+                Button closeButton = new Button("关闭");
+                closeButton.setOnAction(e -> clearPreview());
+
+                Button refreshButton = new Button("刷新");
+                refreshButton.setOnAction(event -> runCode());
+
+                controls.getChildren().addAll(closeButton, refreshButton);
+                container.setBottom(controls);
 
-                    // 显示错误信息
-                    previewContentPane.getChildren().clear();
-                    Label errorLabel = new Label("预览加载失败: " + e.getMessage());
-                    errorLabel.setStyle("-fx-text-fill: #e74c3c; -fx-font-size: 12px; -fx-wrap-text: true;");
-                    errorLabel.setAlignment(Pos.CENTER);
-                    previewContentPane.getChildren().add(errorLabel);
+                // 添加到预览区域
+                previewContentPane.getChildren().add(container);
+            }
+
+            // 关联到预览会话，清空预览时统一释放
+            session.attach(stage, rootNode, container);
+            previewSession = session;
+            if (previous != null) {
+                previous.close();
+            }
+
+            // 隐藏原始舞台
+            stage.hide();
+
+            previewRun.recordPhase(PipelineMetrics.Phase.STAGE_CALLBACK,
+                    (System.nanoTime() - callbackStart) / 1_000_000);
+            previewRun.finish(true);
+
+            addLog("✅ " + (live ? "实时预览已更新" : "代码预览加载成功") + " (" + previewRun.getTotalMs() + "ms)");
+            runProgressIndicator.setVisible(false);
+            runButton.setDisable(false);
+        } catch (Exception e) {
+            session.close();
+            onPreviewFailed(session, "预览加载失败: " + e.getMessage(), live);
+        } finally {
+            // 没有场景或中途出错时同样结束记录；已成功结束的记录不受影响
+            previewRun.finish(false);
+        }
+    }
+
+    /**
+     * 预览失败：实时模式下保留上一次的预览，只记录日志
+     */
+    private void onPreviewFailed(PreviewSession session, String error, boolean live) {
+        if (pendingPreviewSession == session) {
+            pendingPreviewSession = null;
+        }
+
+        addLog("❌ " + error);
+        if (runProgressIndicator != null) {
+            runProgressIndicator.setVisible(false);
+        }
+        runButton.setDisable(false);
+
+        if (live && previewSession != null) {
+            addLog("⚡ 实时预览：保留上一次成功的预览");
+            return;
+        }
+
+        // 显示错误信息
+        previewContentPane.getChildren().clear();
+        Label errorLabel = new Label("运行失败: " + error);
+        errorLabel.setStyle("-fx-text-fill: #e74c3c; -fx-font-size: 12px; -fx-wrap-text: true;");
+        errorLabel.setAlignment(Pos.CENTER);
+        previewContentPane.getChildren().add(errorLabel);
+    }
+
+    /**
+     * 规范化源码：去掉注释并压缩空白，用于判断代码是否实质变化
+     */
+    static String normalizeSource(String code) {
+        StringBuilder sb = new StringBuilder(code.length());
+        int i = 0;
+        int n = code.length();
+        boolean pendingSpace = false;
+        while (i < n) {
+            char c = code.charAt(i);
+            if (c == '"' || c == '\'') {
+                // 字符串和字符字面量原样保留
+                if (pendingSpace) {
+                    sb.append(' ');
+                    pendingSpace = false;
                 }
-            });
-        });
+                int end = i + 1;
+                while (end < n && code.charAt(end) != c) {
+                    if (code.charAt(end) == '\\') end++;
+                    end++;
+                }
+                end = Math.min(end + 1, n);
+                sb.append(code, i, end);
+                i = end;
+            } else if (c == '/' && i + 1 < n && code.charAt(i + 1) == '/') {
+                while (i < n && code.charAt(i) != '\n') i++;
+                pendingSpace = true;
+            } else if (c == '/' && i + 1 < n && code.charAt(i + 1) == '*') {
+                int end = code.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+                pendingSpace = true;
+            } else if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+                i++;
+            } else {
+                if (pendingSpace) {
+                    sb.append(' ');
+                    pendingSpace = false;
+                }
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+    /**
+     * 后台快速检查当前代码，并把诊断信息显示在编辑器下方
+     */
+    private void runCodeCheck() {
+        String code = outputArea.getText();
+        int sequence = codeCheckSequence.incrementAndGet();
+        if (code.trim().isEmpty() || codeRunner == null) {
+            showDiagnostics(null);
+            return;
+        }
 
-        // 使用新的预览方法
-        codeRunner.runJavaFXInCurrentVM(code, error -> {
-            Platform.runLater(() -> {
-                addLog("❌ " + error);
-                runProgressIndicator.setVisible(false);
-                runButton.setDisable(false);
+        diagnosticsLabel.setText("检查中...");
+        CompletableFuture.supplyAsync(() -> codeRunner.checkCode(code), codeCheckExecutor)
+                .thenAccept(result -> Platform.runLater(() -> {
+                    // 检查期间代码又被修改，丢弃过期结果
+                    if (sequence == codeCheckSequence.get()) {
+                        showDiagnostics(result);
+                    }
+                }));
+    }
 
-                // 显示错误信息
-                previewContentPane.getChildren().clear();
-                Label errorLabel = new Label("运行失败: " + error);
-                errorLabel.setStyle("-fx-text-fill: #e74c3c; -fx-font-size: 12px; -fx-wrap-text: true;");
-                errorLabel.setAlignment(Pos.CENTER);
-                previewContentPane.getChildren().add(errorLabel);
-            });
-        });
+    private void showDiagnostics(CodeRunner.CheckResult result) {
+        if (result == null) {
+            diagnosticsLabel.setText("");
+            diagnosticsList.getItems().clear();
+            diagnosticsList.setVisible(false);
+            return;
+        }
+
+        diagnosticsList.getItems().setAll(result.diagnostics);
+        diagnosticsList.setVisible(!result.diagnostics.isEmpty());
+
+        if (result.success && result.diagnostics.isEmpty()) {
+            diagnosticsLabel.setText("✅ 无错误 (" + result.elapsedMs + "ms)");
+            diagnosticsLabel.setStyle("-fx-text-fill: #2ecc71; -fx-font-size: 12px;");
+        } else {
+            diagnosticsLabel.setText((result.success ? "⚠️ " : "❌ ") + "错误: " + result.getErrorCount() +
+                    ", 警告: " + result.getWarningCount() + " (" + result.elapsedMs + "ms)");
+            diagnosticsLabel.setStyle("-fx-text-fill: " + (result.success ? "#f39c12" : "#e74c3c") + "; -fx-font-size: 12px;");
+        }
+    }
+
+    /**
+     * 在编辑器中选中诊断对应的代码范围
+     */
+    private void highlightDiagnostic(CodeRunner.CompileDiagnostic diagnostic) {
+        if (!diagnostic.hasPosition()) {
+            return;
+        }
+        int length = outputArea.getLength();
+        int start = (int) Math.min(diagnostic.startPosition, length);
+        int end = (int) Math.min(Math.max(diagnostic.endPosition, diagnostic.startPosition + 1), length);
+        outputArea.requestFocus();
+        outputArea.selectRange(start, end);
     }
 
     /**
@@ -918,8 +1164,20 @@ public class App extends Application {
 
         String validationError = codeRunner.validateCode(code);
         if (validationError == null) {
-            addLog("✅ 代码验证通过");
-            showAlert("验证成功", "✅ 代码验证通过，可以运行！");
+            // 结构检查通过后再做一次编译检查（不生成类文件）
+            String source = outputArea.getText();
+            CompletableFuture.supplyAsync(() -> codeRunner.checkCode(source), codeCheckExecutor)
+                    .thenAccept(result -> Platform.runLater(() -> {
+                        codeCheckSequence.incrementAndGet();
+                        showDiagnostics(result);
+                        if (result.success) {
+                            addLog("✅ 代码验证通过");
+                            showAlert("验证成功", "✅ 代码验证通过，可以运行！");
+                        } else {
+                            addLog("❌ 编译检查发现 " + result.getErrorCount() + " 个错误");
+                            showAlert("验证失败", "❌ 编译检查发现 " + result.getErrorCount() + " 个错误，点击编辑器下方的错误可定位");
+                        }
+                    }));
         } else {
             addLog("❌ 代码验证失败: " + validationError);
             showAlert("验证失败", "❌ " + validationError);
@@ -944,6 +1202,10 @@ public class App extends Application {
         mergeButton.setStyle("-fx-background-color: #9b59b6; -fx-text-fill: white;");
         mergeButton.setOnAction(e -> openCodeMerger());
 
+        Button metricsButton = new Button("📈 耗时统计");
+        metricsButton.setStyle("-fx-background-color: #16a085; -fx-text-fill: white;");
+        metricsButton.setOnAction(e -> openMetricsWindow());
+
         Button helpButton = new Button("❓ 帮助");
         helpButton.setStyle("-fx-background-color: #7f8c8d; -fx-text-fill: white;");
         helpButton.setOnAction(e -> showHelp());
@@ -952,6 +1214,7 @@ public class App extends Application {
                 statusLabel,
                 new Separator(),
                 mergeButton,
+                metricsButton,
                 helpButton
         );
 
@@ -962,7 +1225,9 @@ public class App extends Application {
      * 获取状态文本
      */
     private String getStatusText() {
-        if (javafxHome == null) {
+        if (!environmentDetected) {
+            return "⏳ 正在检测JavaFX环境...";
+        } else if (javafxHome == null) {
             return "⚠ JavaFX未检测到 - 请在设置中配置JavaFX SDK路径";
         } else if (javafxHome.equals("classpath")) {
             return "📊 就绪 - JavaFX已集成，可直接生成和运行代码";
@@ -976,7 +1241,8 @@ public class App extends Application {
      */
     private void generateCode() {
         String prompt = promptArea.getText().trim();
-        String uiType = uiTypeComboBox.getValue().replaceAll("[^\\p{ASCII}]", "").trim();
+        int uiTypeIndex = uiTypeComboBox.getSelectionModel().getSelectedIndex();
+        String uiType = UI_TYPES[uiTypeIndex >= 0 ? uiTypeIndex : UI_TYPES.length - 1][0];
         String className = classNameField.getText().trim();
 
         // 验证输入
@@ -998,23 +1264,37 @@ public class App extends Application {
 
         // 异步生成代码
         String finalClassName = className;
+        PipelineMetrics.Run run = pipelineMetrics.startRun("生成+预览");
+        pipelineRun = run;
         CompletableFuture.runAsync(() -> {
             try {
                 // 构建完整的prompt
                 String fullPrompt = buildFullPrompt(prompt, uiType, finalClassName);
                 addLog("构建提示完成，长度: " + fullPrompt.length());
 
-                // 生成代码
-                String generatedCode = aiClient.generateCode(fullPrompt);
-                addLog("AI响应接收完成，代码长度: " + generatedCode.length());
-
-                // 清理代码
-                String cleanCode = cleanGeneratedCode(generatedCode);
-                addLog("代码清理完成，行数: " + cleanCode.split("\n").length);
+                // 生成代码，客户端返回时已经完成清理
+                AliyunAIClient.CodeGeneration generation;
+                try (PipelineMetrics.Span ignored = run.span(PipelineMetrics.Phase.AI_GENERATE)) {
+                    generation = awaitAIClient().generateCodeWithUsage(fullPrompt, uiType);
+                }
+                run.recordPhase(PipelineMetrics.Phase.CLEAN_CODE, generation.getNormalizeMs());
+                String cleanCode = generation.getCode();
+                addLog("AI响应接收完成，代码长度: " + cleanCode.length() + "，行数: " + cleanCode.split("\n").length);
+
+                // 编译失败时请求最小补丁，而不是重新生成整个文件
+                if (autoRepairCheckBox.isSelected()) {
+                    CodeRepairer.RepairResult repair = new CodeRepairer(awaitAIClient(), codeRunner)
+                            .repair(cleanCode, MAX_REPAIR_ATTEMPTS, run);
+                    if (repair.attempts > 0) {
+                        addLog("🔧 自动修复: " + repair);
+                        cleanCode = repair.code;
+                    }
+                }
+                String finalCode = cleanCode;
 
                 // 更新UI
                 Platform.runLater(() -> {
-                    outputArea.setText(cleanCode);
+                    outputArea.setText(finalCode);
                     statusLabel.setText("✅ AI代码生成完成！");
                     generateButton.setDisable(false);
                     progressIndicator.setVisible(false);
@@ -1028,11 +1308,12 @@ public class App extends Application {
                     showAlert("生成成功",
                             "✨ JavaFX代码生成完成！\n\n" +
                                     "• 生成的类: " + finalClassName + "\n" +
-                                    "• 代码行数: " + cleanCode.lines().count() + "\n" +
+                                    "• 代码行数: " + finalCode.lines().count() + "\n" +
                                     "• 已复制到代码编辑区域，可编辑后运行");
                 });
 
             } catch (Exception e) {
+                run.finish(false);
                 Platform.runLater(() -> {
                     String errorMessage = "❌ 生成代码时出错:\n" + e.getMessage();
                     outputArea.setText(errorMessage);
@@ -1109,15 +1390,33 @@ public class App extends Application {
         });
     }
 
+    /**
+     * 界面类型键对应的名称；不在 UI_TYPES 中的键原样返回
+     */
+    static String uiTypeName(String uiType) {
+        for (String[] type : UI_TYPES) {
+            if (type[0].equals(uiType)) {
+                return type[2];
+            }
+        }
+        return uiType;
+    }
+
     /**
      * 构建完整的prompt
      */
     private String buildFullPrompt(String description, String uiType, String className) {
+        return buildFullPrompt(description, uiType, className,
+                includeCommentsCheckBox.isSelected(), includeMainMethodCheckBox.isSelected());
+    }
+
+    static String buildFullPrompt(String description, String uiType, String className,
+                                  boolean includeComments, boolean includeMainMethod) {
         StringBuilder prompt = new StringBuilder();
 
         prompt.append("你是一个专业的JavaFX UI代码生成专家。请生成一个完整的JavaFX UI类。\n\n");
         prompt.append("## 需求规格\n");
-        prompt.append("1. UI类型: ").append(uiType).append("\n");
+        prompt.append("1. UI类型: ").append(uiTypeName(uiType)).append("\n");
         prompt.append("2. 类名: ").append(className).append("\n");
         prompt.append("3. 使用Java 17和JavaFX 21\n\n");
 
@@ -1131,11 +1430,11 @@ public class App extends Application {
         prompt.append("- 代码结构清晰，有良好的缩进\n");
         prompt.append("- 遵循Java命名规范\n");
 
-        if (includeCommentsCheckBox.isSelected()) {
+        if (includeComments) {
             prompt.append("- 添加必要的注释说明重要部分\n");
         }
 
-        if (includeMainMethodCheckBox.isSelected()) {
+        if (includeMainMethod) {
             prompt.append("- 包含main方法，使程序可以独立运行\n");
             prompt.append("- main方法中应启动JavaFX应用程序\n");
         }
@@ -1161,31 +1460,30 @@ public class App extends Application {
     }
 
     /**
-     * 清理生成的代码
+     * 清理原始文本或粘贴的代码；generateCodeWithUsage 的结果已经清理过，不需要再调用
      */
-    private String cleanGeneratedCode(String code) {
-        // 移除markdown代码块标记
-        code = code.replaceAll("(?i)```java\\s*", "")
-                .replaceAll("(?i)```\\s*", "")
-                .replaceAll("(?i)```[a-z]*", "")
-                .trim();
-
-        // 如果代码不以package或import开头，添加默认导入
-        if (!code.startsWith("package") && !code.startsWith("import")) {
-            code = "import javafx.application.Application;\n" +
-                    "import javafx.scene.Scene;\n" +
-                    "import javafx.scene.layout.*;\n" +
-                    "import javafx.scene.control.*;\n" +
-                    "import javafx.stage.Stage;\n\n" + code;
-        }
-
-        return code;
+    static String cleanGeneratedCode(String code) {
+        // 一次扫描完成：去掉代码块标记和说明文字、取最大的代码块、补全缺少的import
+        return CodeNormalizer.normalize(code).code;
     }
 
     /**
      * 加载示例描述
      */
     private void loadExample(String exampleType) {
+        String[] example = getExample(exampleType);
+        promptArea.setText(example[0]);
+        classNameField.setText(example[1]);
+
+        statusLabel.setText("📚 已加载" + exampleType + "示例");
+        addLog("已加载示例: " + exampleType);
+    }
+
+    /**
+     * 内置示例
+     * @return {描述, 类名}
+     */
+    static String[] getExample(String exampleType) {
         String exampleText = "";
         String className = "";
 
@@ -1246,11 +1544,7 @@ public class App extends Application {
                 break;
         }
 
-        promptArea.setText(exampleText);
-        classNameField.setText(className);
-
-        statusLabel.setText("📚 已加载" + exampleType + "示例");
-        addLog("已加载示例: " + exampleType);
+        return new String[]{exampleText, className};
     }
 
     /**
@@ -1340,6 +1634,14 @@ public class App extends Application {
         }
     }
 
+    /**
+     * 打开耗时统计面板
+     */
+    private void openMetricsWindow() {
+        new MetricsWindow().show();
+        addLog("打开耗时统计面板");
+    }
+
     /**
      * 打开设置
      */
@@ -1469,8 +1771,8 @@ public class App extends Application {
      * 自动检测JavaFX
      */
     private String autoDetectJavaFX() {
-        // 重新检测
-        detectJavaFX();
+        // 忽略缓存重新检测
+        detectJavaFX(true);
         if (javafxHome != null && !javafxHome.equals("classpath")) {
             return javafxHome;
         }
@@ -1485,6 +1787,11 @@ public class App extends Application {
         info.append("Java版本: ").append(System.getProperty("java.version")).append("\n");
         info.append("Java Home: ").append(System.getProperty("java.home")).append("\n");
         info.append("当前用户: ").append(System.getProperty("user.name")).append("\n");
+        EnvironmentProbe.Environment env = EnvironmentProbe.getInstance().probe(null);
+        info.append("JavaFX: ").append(env.hasSdk() ? env.javafxVersion + " (" + env.source + ")" : "未找到SDK").append("\n");
+        if (!env.modules.isEmpty()) {
+            info.append("JavaFX模块: ").append(String.join(", ", env.modules)).append("\n");
+        }
         info.append("操作系统: ").append(System.getProperty("os.name")).append(" ").append(System.getProperty("os.version")).append("\n");
         info.append("类路径: ").append(System.getProperty("java.class.path").length() > 100 ?
                 System.getProperty("java.class.path").substring(0, 100) + "..." :
@@ -1548,10 +1855,11 @@ public class App extends Application {
             • 优点：启动速度快，代码执行效率高
             • 注意：如果代码有问题可能会影响主程序
             
-            🔍 放大预览功能改进：
-            • 放大预览现在创建场景副本，不会影响原始预览
-            • 关闭放大窗口后，主预览区域保持不变
-            • 支持刷新功能，可以重新运行代码
+            🔍 放大预览：
+            • 基于当前已运行的预览显示，不会重新编译或运行代码
+            • 默认显示预览的清晰快照，可用滑块调整缩放比例，"刷新"按当前界面状态重新截取
+            • 勾选"实时交互"后，运行中的预览会移入放大窗口，可直接操作；此时主预览区域暂时为空
+            • 关闭放大窗口或取消"实时交互"后，预览归还到主预览区域
             
             💡 使用技巧：
             • 可以直接粘贴已有的JavaFX代码运行
@@ -1559,7 +1867,7 @@ public class App extends Application {
             • 运行日志帮助调试问题
             • 可以配置JavaFX SDK路径
             • 点击"清空预览"按钮可以清空预览区域
-            • 点击"放大"按钮可以全屏查看预览效果（不会影响原始预览）
+            • 点击"放大"按钮可以放大查看预览效果
             
             ===============================================
             """;
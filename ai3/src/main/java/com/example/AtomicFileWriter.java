@@ -0,0 +1,262 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 崩溃安全的文件写入：先写同目录下的临时文件并刷盘，再原子替换目标文件
+ * 多个文件可以放进一个带日志的事务中，日志落盘后即使中途崩溃，下次恢复时也能全部完成
+ */
+public class AtomicFileWriter {
+
+    private static final String JOURNAL_NAME = "merge.journal";
+    private static final String COMMIT_MARK = "COMMIT";
+
+    /**
+     * 原子写入单个文件
+     */
+    public static void write(Path target, String content) throws IOException {
+        Path temp = writeTemp(target, content);
+        try {
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 在目标文件所在目录写入临时文件并刷盘
+     * 不用 Files.createTempFile：它固定创建 0600 的文件，替换后目标文件会丢失原来的权限
+     */
+    private static Path writeTemp(Path target, String content) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = dir.resolve("." + target.getFileName() + "."
+                + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+            copyPermissions(target, temp);
+            ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    /**
+     * 目标文件已存在时，把它的POSIX权限复制到临时文件上（不支持POSIX的平台忽略）
+     */
+    private static void copyPermissions(Path target, Path temp) throws IOException {
+        if (!Files.exists(target)) {
+            return;
+        }
+        PosixFileAttributeView view = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+        if (view != null) {
+            Files.setPosixFilePermissions(temp, view.readAttributes().permissions());
+        }
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // 同目录下一般都支持原子移动，个别文件系统不支持时退化为普通替换
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(target.toAbsolutePath().getParent());
+    }
+
+    /**
+     * 刷新目录项，保证重命名本身也已落盘（Windows 不支持打开目录，忽略）
+     */
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException ignored) {
+            // 平台不支持目录刷盘
+        }
+    }
+
+    /**
+     * 开始一个写入事务，日志放在 journalDir 中
+     */
+    public static Transaction begin(Path journalDir) throws IOException {
+        recover(journalDir);
+        return new Transaction(journalDir);
+    }
+
+    /**
+     * 恢复上次未完成的事务：日志已提交则继续完成剩余的替换，否则清理临时文件
+     * @return 恢复（完成）的文件数
+     */
+    public static int recover(Path journalDir) throws IOException {
+        Path journal = journalDir.resolve(JOURNAL_NAME);
+        if (!Files.exists(journal)) {
+            return 0;
+        }
+
+        List<String> lines = Files.readAllLines(journal, StandardCharsets.UTF_8);
+        boolean committed = !lines.isEmpty() && lines.get(lines.size() - 1).equals(COMMIT_MARK);
+        int recovered = 0;
+        for (String line : lines) {
+            String[] parts = line.split("\t");
+            if (parts.length != 2) continue;
+            Path temp = Paths.get(parts[0]);
+            Path target = Paths.get(parts[1]);
+            if (!Files.exists(temp)) continue;
+            if (committed) {
+                moveIntoPlace(temp, target);
+                recovered++;
+            } else {
+                Files.deleteIfExists(temp);
+            }
+        }
+        Files.deleteIfExists(journal);
+        if (recovered > 0) {
+            System.out.println("♻️ 已恢复未完成的写入事务: " + recovered + " 个文件");
+        }
+        return recovered;
+    }
+
+    /**
+     * 写入事务：先把所有文件写成临时文件，提交时写入日志，再逐个原子替换
+     */
+    public static class Transaction implements AutoCloseable {
+        private final Path journalDir;
+        private final Map<Path, Path> staged = new LinkedHashMap<>();
+        private boolean finished;
+        private boolean journaled;
+
+        private Transaction(Path journalDir) {
+            this.journalDir = journalDir;
+        }
+
+        /**
+         * 暂存一个文件的新内容（写入并刷盘临时文件，不影响目标文件）
+         */
+        public void stage(Path target, String content) throws IOException {
+            if (finished) {
+                throw new IllegalStateException("事务已结束");
+            }
+            Path absolute = target.toAbsolutePath();
+            Path previous = staged.remove(absolute);
+            if (previous != null) {
+                Files.deleteIfExists(previous);
+            }
+            staged.put(absolute, writeTemp(absolute, content));
+        }
+
+        public int size() {
+            return staged.size();
+        }
+
+        /**
+         * 提交：日志落盘后替换所有目标文件，完成后删除日志
+         * 替换中途失败时立即按日志重试一次；仍失败则抛出异常并保留日志，下次 begin 时完成剩余的替换
+         */
+        public void commit() throws IOException {
+            if (finished) {
+                throw new IllegalStateException("事务已结束");
+            }
+            if (staged.isEmpty()) {
+                finished = true;
+                return;
+            }
+
+            StringBuilder journal = new StringBuilder();
+            for (Map.Entry<Path, Path> entry : staged.entrySet()) {
+                journal.append(entry.getValue()).append('\t').append(entry.getKey()).append('\n');
+            }
+            journal.append(COMMIT_MARK);
+            Path journalFile = journalDir.resolve(JOURNAL_NAME);
+            try {
+                write(journalFile, journal.toString());
+            } catch (IOException e) {
+                // 日志没有写成，目标文件都未改动，清理临时文件
+                rollback();
+                throw e;
+            }
+            finished = true;
+            journaled = true;
+
+            // 日志已落盘：从这里开始中途崩溃，下次 recover 会完成剩余的替换
+            try {
+                for (Map.Entry<Path, Path> entry : staged.entrySet()) {
+                    moveIntoPlace(entry.getValue(), entry.getKey());
+                }
+            } catch (IOException e) {
+                System.err.println("替换文件中途失败，按日志重试: " + e.getMessage());
+                recover(journalDir);
+                return;
+            }
+            Files.deleteIfExists(journalFile);
+        }
+
+        /**
+         * 日志是否已落盘；落盘后未完成的替换会在下次恢复时完成
+         */
+        public boolean isJournaled() {
+            return journaled;
+        }
+
+        /**
+         * 提交过程中已经替换的目标文件（对应的临时文件已被移走）
+         */
+        public List<Path> getApplied() {
+            List<Path> applied = new ArrayList<>();
+            if (!journaled) {
+                return applied;
+            }
+            for (Map.Entry<Path, Path> entry : staged.entrySet()) {
+                if (!Files.exists(entry.getValue())) {
+                    applied.add(entry.getKey());
+                }
+            }
+            return applied;
+        }
+
+        /**
+         * 放弃事务，删除所有临时文件
+         */
+        public void rollback() {
+            finished = true;
+            List<Path> temps = new ArrayList<>(staged.values());
+            staged.clear();
+            for (Path temp : temps) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    System.err.println("删除临时文件失败: " + temp + " - " + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * 未提交就关闭时自动回滚
+         */
+        @Override
+        public void close() {
+            if (!finished) {
+                rollback();
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 按内容寻址的备份仓库（位于源文件旁的 backups/ 目录）
+ * objects/ 下按SHA-256存放gzip压缩的对象，内容相同只存一份；新版本尽量存为相对上一版本的行级增量
+ * index/ 下每个源文件一个索引，每行一个版本：时间戳 哈希 字节数
+ */
+public class BackupStore {
+
+    // 每个文件保留的版本数
+    public static final int DEFAULT_KEEP_VERSIONS = 20;
+    // 保留天数，超过的版本在清理时删除（至少保留最新的一个）
+    public static final int DEFAULT_KEEP_DAYS = 30;
+    // 增量链的最大长度，超过时存完整内容，保证恢复时最多读取这么多个对象
+    private static final int MAX_DELTA_CHAIN = 8;
+
+    private static final String FULL = "FULL";
+    private static final String DELTA = "DELTA";
+
+    private final Path root;
+    private final Path objectsDir;
+    private final Path indexDir;
+    private int keepVersions = DEFAULT_KEEP_VERSIONS;
+    private int keepDays = DEFAULT_KEEP_DAYS;
+
+    /**
+     * 备份版本
+     */
+    public static class Version {
+        public final long timestamp;
+        public final String hash;
+        public final long size;
+
+        public Version(long timestamp, String hash, long size) {
+            this.timestamp = timestamp;
+            this.hash = hash;
+            this.size = size;
+        }
+
+        @Override
+        public String toString() {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(timestamp))
+                    + "  " + hash.substring(0, 12) + "  " + size + " 字节";
+        }
+    }
+
+    public BackupStore(Path root) {
+        this.root = root;
+        this.objectsDir = root.resolve("objects");
+        this.indexDir = root.resolve("index");
+    }
+
+    /**
+     * 源文件对应的备份仓库：与源文件同目录下的 backups/
+     */
+    public static BackupStore forFile(Path file) {
+        return new BackupStore(file.toAbsolutePath().getParent().resolve("backups"));
+    }
+
+    public void setRetention(int keepVersions, int keepDays) {
+        this.keepVersions = keepVersions;
+        this.keepDays = keepDays;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * 备份文件当前内容；内容与最新版本相同时不产生新版本
+     */
+    public synchronized Version backup(Path file) throws IOException {
+        String content = Files.readString(file);
+        String hash = sha256(content);
+        List<Version> versions = list(file);
+        Version latest = versions.isEmpty() ? null : versions.get(versions.size() - 1);
+        if (latest != null && latest.hash.equals(hash)) {
+            return latest;
+        }
+
+        if (!Files.exists(objectPath(hash))) {
+            writeObject(hash, content, latest);
+        }
+
+        Version version = new Version(System.currentTimeMillis(), hash, content.getBytes(StandardCharsets.UTF_8).length);
+        versions.add(version);
+        writeIndex(file, versions);
+        prune(file);
+        return version;
+    }
+
+    /**
+     * 文件的所有版本，按时间从旧到新
+     */
+    public synchronized List<Version> list(Path file) throws IOException {
+        List<Version> versions = new ArrayList<>();
+        Path index = indexPath(file);
+        if (!Files.exists(index)) {
+            return versions;
+        }
+        for (String line : Files.readAllLines(index)) {
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length < 3) continue;
+            versions.add(new Version(Long.parseLong(parts[0]), parts[1], Long.parseLong(parts[2])));
+        }
+        return versions;
+    }
+
+    /**
+     * 最新版本的内容，没有备份时返回 null
+     */
+    public synchronized String latest(Path file) throws IOException {
+        List<Version> versions = list(file);
+        return versions.isEmpty() ? null : read(versions.get(versions.size() - 1).hash);
+    }
+
+    /**
+     * 读取指定哈希（可以是前缀）的内容
+     */
+    public synchronized String read(String hash) throws IOException {
+        String fullHash = resolveHash(hash);
+        String[] header = new String[1];
+        String body = readObject(fullHash, header);
+        String[] fields = header[0].split(" ");
+        if (fields[0].equals(FULL)) {
+            return body;
+        }
+        // DELTA 基础哈希 公共前缀行数 公共后缀行数 链长度
+        String base = read(fields[1]);
+        int prefix = Integer.parseInt(fields[2]);
+        int suffix = Integer.parseInt(fields[3]);
+        String[] baseLines = base.split("\n", -1);
+        StringBuilder sb = new StringBuilder(base.length() + body.length());
+        for (int i = 0; i < prefix; i++) {
+            sb.append(baseLines[i]).append('\n');
+        }
+        sb.append(body);
+        for (int i = baseLines.length - suffix; i < baseLines.length; i++) {
+            sb.append('\n').append(baseLines[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 把文件恢复到指定版本；恢复前先备份当前内容，恢复本身也可以撤销
+     */
+    public synchronized void restore(Path file, String hash) throws IOException {
+        String content = read(hash);
+        if (Files.exists(file)) {
+            backup(file);
+        }
+        AtomicFileWriter.write(file, content);
+    }
+
+    /**
+     * 按保留策略清理文件的旧版本，并删除不再被引用的对象
+     */
+    public synchronized void prune(Path file) throws IOException {
+        List<Version> versions = list(file);
+        long cutoff = System.currentTimeMillis() - keepDays * 24L * 3600 * 1000;
+        List<Version> kept = new ArrayList<>();
+        for (int i = 0; i < versions.size(); i++) {
+            Version version = versions.get(i);
+            boolean newest = i == versions.size() - 1;
+            boolean withinCount = i >= versions.size() - keepVersions;
+            if (newest || (withinCount && version.timestamp >= cutoff)) {
+                kept.add(version);
+            }
+        }
+        if (kept.size() != versions.size()) {
+            writeIndex(file, kept);
+            collectGarbage();
+        }
+    }
+
+    /**
+     * 删除所有索引都不再引用的对象（增量的基础对象视为被引用）
+     */
+    public synchronized int collectGarbage() throws IOException {
+        Set<String> live = new HashSet<>();
+        if (Files.isDirectory(indexDir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(indexDir, "*.idx")) {
+                for (Path index : stream) {
+                    for (String line : Files.readAllLines(index)) {
+                        String[] parts = line.trim().split("\\s+");
+                        if (parts.length >= 2) {
+                            markLive(parts[1], live);
+                        }
+                    }
+                }
+            }
+        }
+
+        int removed = 0;
+        if (Files.isDirectory(objectsDir)) {
+            try (DirectoryStream<Path> dirs = Files.newDirectoryStream(objectsDir)) {
+                for (Path dir : dirs) {
+                    try (DirectoryStream<Path> objects = Files.newDirectoryStream(dir)) {
+                        for (Path object : objects) {
+                            String hash = dir.getFileName().toString() + object.getFileName().toString();
+                            if (!live.contains(hash)) {
+                                Files.deleteIfExists(object);
+                                removed++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    private void markLive(String hash, Set<String> live) throws IOException {
+        while (hash != null && live.add(hash) && Files.exists(objectPath(hash))) {
+            String[] header = new String[1];
+            readObject(hash, header);
+            String[] fields = header[0].split(" ");
+            hash = fields[0].equals(DELTA) ? fields[1] : null;
+        }
+    }
+
+    // ============== 对象读写 ==============
+
+    /**
+     * 写入对象：能和上一版本做行级增量且增量明显更小时存增量，否则存完整内容
+     */
+    private void writeObject(String hash, String content, Version previous) throws IOException {
+        String header = FULL;
+        String body = content;
+
+        if (previous != null && Files.exists(objectPath(previous.hash))) {
+            int depth = chainDepth(previous.hash);
+            if (depth < MAX_DELTA_CHAIN) {
+                String base = read(previous.hash);
+                String[] baseLines = base.split("\n", -1);
+                String[] lines = content.split("\n", -1);
+                int prefix = 0;
+                int max = Math.min(baseLines.length, lines.length);
+                while (prefix < max - 1 && baseLines[prefix].equals(lines[prefix])) {
+                    prefix++;
+                }
+                int suffix = 0;
+                while (suffix < max - prefix - 1
+                        && baseLines[baseLines.length - 1 - suffix].equals(lines[lines.length - 1 - suffix])) {
+                    suffix++;
+                }
+                String middle = String.join("\n", Arrays.asList(lines).subList(prefix, lines.length - suffix));
+                if (middle.length() < content.length() / 2) {
+                    header = DELTA + " " + previous.hash + " " + prefix + " " + suffix + " " + (depth + 1);
+                    body = middle;
+                }
+            }
+        }
+
+        Path path = objectPath(hash);
+        Files.createDirectories(path.getParent());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+            out.write((header + "\n").getBytes(StandardCharsets.UTF_8));
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private int chainDepth(String hash) throws IOException {
+        String[] header = new String[1];
+        readObject(hash, header);
+        String[] fields = header[0].split(" ");
+        return fields[0].equals(DELTA) ? Integer.parseInt(fields[4]) : 0;
+    }
+
+    /**
+     * 读取对象，header[0] 返回首行头信息，返回值为正文
+     */
+    private String readObject(String hash, String[] header) throws IOException {
+        Path path = objectPath(hash);
+        if (!Files.exists(path)) {
+            throw new IOException("备份对象不存在: " + hash);
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+            in.transferTo(buffer);
+        }
+        String text = buffer.toString(StandardCharsets.UTF_8);
+        int newline = text.indexOf('\n');
+        header[0] = text.substring(0, newline);
+        return text.substring(newline + 1);
+    }
+
+    private String resolveHash(String hash) throws IOException {
+        if (hash.length() == 64) {
+            return hash;
+        }
+        if (hash.length() < 4) {
+            throw new IOException("哈希前缀太短: " + hash);
+        }
+        Path dir = objectsDir.resolve(hash.substring(0, 2));
+        String rest = hash.substring(2);
+        String found = null;
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, rest + "*")) {
+                for (Path object : stream) {
+                    if (found != null) {
+                        throw new IOException("哈希前缀不唯一: " + hash);
+                    }
+                    found = hash.substring(0, 2) + object.getFileName();
+                }
+            }
+        }
+        if (found == null) {
+            throw new IOException("备份对象不存在: " + hash);
+        }
+        return found;
+    }
+
+    private Path objectPath(String hash) {
+        return objectsDir.resolve(hash.substring(0, 2)).resolve(hash.substring(2));
+    }
+
+    private Path indexPath(Path file) {
+        return indexDir.resolve(file.getFileName() + ".idx");
+    }
+
+    private void writeIndex(Path file, List<Version> versions) throws IOException {
+        Files.createDirectories(indexDir);
+        StringBuilder sb = new StringBuilder();
+        for (Version version : versions) {
+            sb.append(version.timestamp).append(' ').append(version.hash).append(' ').append(version.size).append('\n');
+        }
+        AtomicFileWriter.write(indexPath(file), sb.toString());
+    }
+
+    private static String sha256(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : bytes) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
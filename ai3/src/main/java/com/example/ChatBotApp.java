@@ -20,9 +20,10 @@ import java.time.format.DateTimeFormatter;
 
 public class ChatBotApp extends Application {
 
-    private final AliyunAIClient aiClient = new AliyunAIClient();
+    private final AliyunAIClient aiClient = ServiceRegistry.aiClient();
     private final WeatherService weatherService = new WeatherService();
     private final NewsService newsService = new NewsService();
+    private final IntentRouter intentRouter = new IntentRouter();
 
     private final VBox chatBox = new VBox(12);
     private final ScrollPane scrollPane = new ScrollPane();
@@ -151,6 +152,15 @@ public class ChatBotApp extends Application {
             return;
         }
 
+        // 明确的工具请求在本地识别后直接执行，不经过模型
+        IntentRouter.Route route = intentRouter.route(userText);
+        if (route != null) {
+            System.out.println("⚡ 本地意图路由: " + route);
+            String toolCall = intentRouter.toJson(route);
+            new Thread(() -> handleToolCall(toolCall)).start();
+            return;
+        }
+
         Label thinking = new Label("🤖 正在思考...");
         thinking.setTextFill(Color.LIGHTGRAY);
         thinking.setStyle("-fx-font-style: italic; -fx-font-size: 13px; -fx-padding: 8;");
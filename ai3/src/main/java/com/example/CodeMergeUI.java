@@ -1,5 +1,6 @@
 package com.example;
 
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -81,6 +82,7 @@ public class CodeMergeUI {
         mergeStrategyCombo.getItems().addAll(
                 "智能合并（AI辅助）",
                 "智能合并（传统）",
+                "结构化合并（三方）",
                 "替换整个类",
                 "插入方法",
                 "添加UI组件"
@@ -368,7 +370,8 @@ public class CodeMergeUI {
             );
 
             // 执行合并（在内存中）
-            String mergedContent = mergeInMemory(sourceContent, generatedContent, strategy);
+            String mergedContent = mergeInMemory(Paths.get(sourceFileField.getText()),
+                    sourceContent, generatedContent, strategy);
 
             // 显示预览
             showPreviewWindow(mergedContent);
@@ -384,7 +387,7 @@ public class CodeMergeUI {
         }
     }
 
-    private String mergeInMemory(String sourceContent, String generatedContent,
+    private String mergeInMemory(Path sourcePath, String sourceContent, String generatedContent,
                                  CodeMerger.MergeStrategy strategy) throws Exception {
         CodeMerger.CodeAnalysis generatedAnalysis = codeMerger.analyzeCode(generatedContent);
         CodeMerger.CodeAnalysis sourceAnalysis = codeMerger.analyzeCode(sourceContent);
@@ -396,6 +399,9 @@ public class CodeMergeUI {
                 return codeMerger.insertMethods(sourceContent, generatedAnalysis, sourceAnalysis);
             case ADD_COMPONENT:
                 return codeMerger.addComponents(sourceContent, generatedAnalysis, sourceAnalysis);
+            case STRUCTURAL:
+                // 有冲突时预览中冲突成员保留源文件的版本
+                return codeMerger.structuralMerge(sourcePath, sourceContent, generatedContent).code;
             case SMART_MERGE:
             default:
                 return codeMerger.smartMerge(sourceContent, generatedAnalysis, sourceAnalysis);
@@ -465,6 +471,8 @@ public class CodeMergeUI {
             return CodeMerger.MergeStrategy.AI_ASSISTED;
         } else if (strategyText.contains("智能合并（传统）")) {
             return CodeMerger.MergeStrategy.SMART_MERGE;
+        } else if (strategyText.contains("结构化合并")) {
+            return CodeMerger.MergeStrategy.STRUCTURAL;
         } else if (strategyText.contains("替换整个类")) {
             return CodeMerger.MergeStrategy.REPLACE_CLASS;
         } else if (strategyText.contains("插入方法")) {
@@ -588,6 +596,8 @@ class ProjectMergeUI {
     private TextField projectPathField;
     private TextArea generatedCodeArea;
     private ComboBox<String> mergeStrategyCombo;
+    private CheckBox batchCheckBox;
+    private CheckBox dryRunCheckBox;
     private Label statusLabel;
     private CodeMerger codeMerger;
 
@@ -639,7 +649,11 @@ class ProjectMergeUI {
         );
         mergeStrategyCombo.setValue("智能合并（自动查找合适文件）");
 
-        strategyBox.getChildren().addAll(strategyLabel, mergeStrategyCombo);
+        batchCheckBox = new CheckBox("合并到所有JavaFX文件");
+        dryRunCheckBox = new CheckBox("仅预览（不写入）");
+        dryRunCheckBox.disableProperty().bind(batchCheckBox.selectedProperty().not());
+
+        strategyBox.getChildren().addAll(strategyLabel, mergeStrategyCombo, batchCheckBox, dryRunCheckBox);
 
         // 按钮
         Button findFilesButton = new Button("查找JavaFX文件");
@@ -744,6 +758,11 @@ class ProjectMergeUI {
 
         statusLabel.setText("正在执行项目合并...");
 
+        if (batchCheckBox.isSelected()) {
+            executeBatchMerge(projectPath, generatedCode);
+            return;
+        }
+
         try {
             CodeMerger.MergeStrategy strategy = parseMergeStrategy(
                     mergeStrategyCombo.getValue()
@@ -769,6 +788,30 @@ class ProjectMergeUI {
         }
     }
 
+    /**
+     * 批量合并到项目中的所有JavaFX文件（后台执行）
+     */
+    private void executeBatchMerge(String projectPath, String generatedCode) {
+        CodeMerger.MergeStrategy strategy = parseMergeStrategy(mergeStrategyCombo.getValue());
+        boolean dryRun = dryRunCheckBox.isSelected();
+
+        new Thread(() -> {
+            try {
+                CodeMerger.BatchMergeReport report = codeMerger.mergeProjectBatch(
+                        projectPath, generatedCode, strategy, dryRun);
+                Platform.runLater(() -> {
+                    showAlert(dryRun ? "批量合并预览" : "批量合并结果", report.getReport());
+                    statusLabel.setText((report.error == null ? "✅ " : "❌ ") + report.getSummary().split("\n")[0]);
+                });
+            } catch (IOException e) {
+                Platform.runLater(() -> {
+                    showAlert("合并错误", "查找项目文件失败：" + e.getMessage());
+                    statusLabel.setText("合并出错");
+                });
+            }
+        }).start();
+    }
+
     private CodeMerger.MergeStrategy parseMergeStrategy(String strategyText) {
         if (strategyText.contains("智能合并")) {
             return CodeMerger.MergeStrategy.SMART_MERGE;
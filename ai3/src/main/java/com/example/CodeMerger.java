@@ -1,20 +1,32 @@
 package com.example;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 public class CodeMerger {
 
+    // 同时进行的AI辅助合并请求数上限
+    private static final int MAX_CONCURRENT_AI_MERGES = 2;
+    // 所有合并窗口共用，多个窗口同时批量合并时也不超过上限
+    private static final Semaphore AI_MERGE_PERMITS = new Semaphore(MAX_CONCURRENT_AI_MERGES);
+
     private AliyunAIClient aiClient;
 
     public CodeMerger() {
         try {
-            this.aiClient = new AliyunAIClient();
+            this.aiClient = ServiceRegistry.aiClient();
         } catch (Exception e) {
             System.err.println("AI客户端初始化失败: " + e.getMessage());
         }
@@ -24,7 +36,7 @@ public class CodeMerger {
      * 代码合并方法：将生成的UI代码合并到指定的目标文件
      * @param targetFilePath 目标文件路径（要合并到的Java文件）
      * @param generatedCode AI生成的完整JavaFX代码
-     * @param mergeStrategy 合并策略：REPLACE_CLASS, INSERT_METHOD, ADD_COMPONENT, SMART_MERGE, AI_ASSISTED
+     * @param mergeStrategy 合并策略：REPLACE_CLASS, INSERT_METHOD, ADD_COMPONENT, SMART_MERGE, STRUCTURAL, AI_ASSISTED
      * @return 合并结果信息
      */
     public MergeResult mergeToFile(String targetFilePath, String generatedCode, MergeStrategy mergeStrategy) {
@@ -38,43 +50,23 @@ public class CodeMerger {
             // 解析生成的代码
             CodeAnalysis generatedAnalysis = analyzeCode(generatedCode);
 
-            // 读取目标文件内容
+            // 读取目标文件内容并根据策略执行合并
             String targetContent = Files.readString(targetPath);
-            CodeAnalysis targetAnalysis = analyzeCode(targetContent);
-
-            // 根据策略执行合并
-            String mergedContent;
-
-            switch (mergeStrategy) {
-                case REPLACE_CLASS:
-                    mergedContent = replaceClass(targetContent, generatedCode, generatedAnalysis, targetAnalysis);
-                    break;
-                case INSERT_METHOD:
-                    mergedContent = insertMethods(targetContent, generatedAnalysis, targetAnalysis);
-                    break;
-                case ADD_COMPONENT:
-                    mergedContent = addComponents(targetContent, generatedAnalysis, targetAnalysis);
-                    break;
-                case AI_ASSISTED:
-                    mergedContent = aiAssistedMerge(targetContent, generatedCode, generatedAnalysis, targetAnalysis);
-                    break;
-                case SMART_MERGE:
-                default:
-                    mergedContent = smartMerge(targetContent, generatedAnalysis, targetAnalysis);
-                    break;
-            }
+            String mergedContent = computeMerge(targetPath, targetContent, generatedCode, generatedAnalysis, mergeStrategy);
 
             // 备份原文件
             backupOriginalFile(targetFilePath);
 
-            // 写入合并后的内容
-            Files.writeString(targetPath, mergedContent);
+            // 写入合并后的内容（临时文件刷盘后原子替换，中途崩溃不会留下半截文件）
+            AtomicFileWriter.write(targetPath, mergedContent);
 
             return new MergeResult(true,
                     String.format("合并成功！\n文件：%s\n策略：%s",
                             targetPath.getFileName(),
                             mergeStrategy.toString()));
 
+        } catch (MergeConflictException e) {
+            return new MergeResult(false, e.getMessage());
         } catch (IOException e) {
             return new MergeResult(false, "文件操作失败：" + e.getMessage());
         } catch (Exception e) {
@@ -82,6 +74,191 @@ public class CodeMerger {
         }
     }
 
+    /**
+     * 按策略计算合并结果（不写文件）
+     */
+    private String computeMerge(Path targetPath, String targetContent, String generatedCode,
+                                CodeAnalysis generatedAnalysis, MergeStrategy mergeStrategy) throws IOException, MergeConflictException {
+        CodeAnalysis targetAnalysis = analyzeCode(targetContent);
+
+        switch (mergeStrategy) {
+            case STRUCTURAL: {
+                StructuralMerger.Result structural = structuralMerge(targetPath, targetContent, generatedCode);
+                if (structural.hasConflicts()) {
+                    throw new MergeConflictException("结构化合并存在冲突，未写入文件：\n" + structural.getSummary());
+                }
+                return structural.code;
+            }
+            case REPLACE_CLASS:
+                return replaceClass(targetContent, generatedCode, generatedAnalysis, targetAnalysis);
+            case INSERT_METHOD:
+                return insertMethods(targetContent, generatedAnalysis, targetAnalysis);
+            case ADD_COMPONENT:
+                return addComponents(targetContent, generatedAnalysis, targetAnalysis);
+            case AI_ASSISTED:
+                return aiAssistedMerge(targetContent, generatedCode, generatedAnalysis, targetAnalysis);
+            case SMART_MERGE:
+            default:
+                // 先尝试结构化三方合并，没有冲突时不需要走AI
+                StructuralMerger.Result structural = structuralMerge(targetPath, targetContent, generatedCode);
+                return !structural.hasConflicts()
+                        ? structural.code
+                        : smartMerge(targetContent, generatedAnalysis, targetAnalysis);
+        }
+    }
+
+    /**
+     * 批量合并：把同一段生成代码合并到多个目标文件
+     * 各文件并行分析和合并（AI辅助部分受 MAX_CONCURRENT_AI_MERGES 限制），
+     * 非预览模式下所有改动在同一个写入事务中提交，要么全部写入，要么都不写入
+     * @param dryRun 为 true 时只计算合并结果，不备份也不写文件
+     */
+    public BatchMergeReport mergeBatch(List<String> targetFiles, String generatedCode,
+                                       MergeStrategy mergeStrategy, boolean dryRun) {
+        long start = System.currentTimeMillis();
+        BatchMergeReport report = new BatchMergeReport(dryRun);
+        if (targetFiles.isEmpty()) {
+            return report;
+        }
+
+        CodeAnalysis generatedAnalysis = analyzeCode(generatedCode);
+        int threads = Math.max(1, Math.min(targetFiles.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "batch-merge");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<FileMergeResult>> futures = new ArrayList<>();
+            for (String targetFile : targetFiles) {
+                futures.add(executor.submit(() -> mergeInMemory(Paths.get(targetFile), generatedCode, generatedAnalysis, mergeStrategy)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    report.files.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    FileMergeResult failed = new FileMergeResult(Paths.get(targetFiles.get(i)));
+                    failed.result = new MergeResult(false, "合并过程出错：" + e.getCause().getMessage());
+                    report.files.add(failed);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report.error = "批量合并被中断";
+            return report;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (!dryRun) {
+            commitBatch(report, targetFiles);
+        }
+
+        report.elapsedMs = System.currentTimeMillis() - start;
+        System.out.println("📦 批量合并完成: " + report.getSummary());
+        return report;
+    }
+
+    /**
+     * 合并到项目目录中的所有JavaFX文件
+     */
+    public BatchMergeReport mergeProjectBatch(String projectPath, String generatedCode,
+                                              MergeStrategy mergeStrategy, boolean dryRun) throws IOException {
+        List<String> targets = findJavaFXFilesInProject(projectPath);
+        if (targets.isEmpty()) {
+            BatchMergeReport report = new BatchMergeReport(dryRun);
+            report.error = "在项目目录中未找到合适的JavaFX文件";
+            return report;
+        }
+        return mergeBatch(targets, generatedCode, mergeStrategy, dryRun);
+    }
+
+    private FileMergeResult mergeInMemory(Path targetPath, String generatedCode,
+                                          CodeAnalysis generatedAnalysis, MergeStrategy mergeStrategy) {
+        FileMergeResult file = new FileMergeResult(targetPath);
+        long start = System.currentTimeMillis();
+        try {
+            if (!Files.exists(targetPath)) {
+                file.result = new MergeResult(false, "目标文件不存在: " + targetPath);
+                return file;
+            }
+            String targetContent = Files.readString(targetPath);
+            file.mergedContent = computeMerge(targetPath, targetContent, generatedCode, generatedAnalysis, mergeStrategy);
+            file.changed = !file.mergedContent.equals(targetContent);
+            file.result = new MergeResult(true, file.changed ? "可合并" : "无变化");
+        } catch (MergeConflictException e) {
+            file.result = new MergeResult(false, e.getMessage());
+        } catch (IOException e) {
+            file.result = new MergeResult(false, "文件操作失败：" + e.getMessage());
+        } catch (Exception e) {
+            file.result = new MergeResult(false, "合并过程出错：" + e.getMessage());
+        } finally {
+            file.elapsedMs = System.currentTimeMillis() - start;
+        }
+        return file;
+    }
+
+    /**
+     * 备份所有有变化的文件，并在一个带日志的事务中写入
+     */
+    private void commitBatch(BatchMergeReport report, List<String> targetFiles) {
+        Path journalDir = commonDirectory(targetFiles).resolve("backups");
+        AtomicFileWriter.Transaction transaction = null;
+        try {
+            transaction = AtomicFileWriter.begin(journalDir);
+            for (FileMergeResult file : report.files) {
+                if (file.result.success && file.changed) {
+                    backupOriginalFile(file.path.toString());
+                    transaction.stage(file.path, file.mergedContent);
+                }
+            }
+            transaction.commit();
+            for (FileMergeResult file : report.files) {
+                if (file.result.success && file.changed) {
+                    file.result = new MergeResult(true, "合并成功");
+                }
+            }
+        } catch (IOException e) {
+            if (transaction == null || !transaction.isJournaled()) {
+                report.error = "写入失败，所有文件保持不变：" + e.getMessage();
+                for (FileMergeResult file : report.files) {
+                    if (file.result.success && file.changed) {
+                        file.result = new MergeResult(false, report.error);
+                    }
+                }
+                return;
+            }
+
+            // 日志已落盘但替换中途失败：部分文件已写入，其余的在下次合并开始时按日志完成
+            List<Path> applied = transaction.getApplied();
+            report.error = "写入中断，批次只完成了一部分（已写入 " + applied.size() + " 个文件，"
+                    + "其余文件将在下次合并时按日志完成）：" + e.getMessage();
+            for (FileMergeResult file : report.files) {
+                if (file.result.success && file.changed) {
+                    file.result = applied.contains(file.path.toAbsolutePath())
+                            ? new MergeResult(true, "合并成功（批次部分完成）")
+                            : new MergeResult(false, "尚未写入，将在下次合并时按日志完成：" + e.getMessage());
+                }
+            }
+        } finally {
+            if (transaction != null) {
+                transaction.close();
+            }
+        }
+    }
+
+    private static Path commonDirectory(List<String> files) {
+        Path common = Paths.get(files.get(0)).toAbsolutePath().getParent();
+        for (String file : files) {
+            Path dir = Paths.get(file).toAbsolutePath().getParent();
+            while (!dir.startsWith(common)) {
+                common = common.getParent();
+            }
+        }
+        return common;
+    }
+
     /**
      * 合并到项目目录中的合适文件（自动查找）
      */
@@ -102,6 +279,7 @@ public class CodeMerger {
 
     /**
      * AI辅助智能合并
+     * 只发送目标类骨架和生成的代码，AI返回编辑操作后在本地应用（见 MergeEdits）
      */
     public String aiAssistedMerge(String targetContent, String generatedCode,
                                   CodeAnalysis generated, CodeAnalysis target) {
@@ -110,113 +288,81 @@ public class CodeMerger {
                 throw new Exception("AI客户端未初始化");
             }
 
-            // 构建AI提示词
-            String prompt = buildAIMergePrompt(targetContent, generatedCode, target, generated);
+            String prompt = MergeEdits.buildPrompt(targetContent, generatedCode);
+            AliyunAIClient.CodeGeneration response;
+            // 批量合并时限制同时进行的AI请求数
+            AI_MERGE_PERMITS.acquire();
+            try {
+                response = aiClient.requestMergeEdits(prompt);
+            } finally {
+                AI_MERGE_PERMITS.release();
+            }
 
-            // 调用AI进行分析和合并
-            String aiResponse = aiClient.generateCode(prompt);
+            List<MergeEdits.Edit> edits = MergeEdits.parse(response.getCode());
+            MergeEdits.ApplyResult result = MergeEdits.apply(targetContent, generatedCode, edits);
 
-            // 清理AI返回的代码
-            return cleanAIGeneratedCode(aiResponse, targetContent, generatedCode);
+            System.out.println("🧩 AI合并: 应用 " + result.applied + " 个编辑操作 " + result.log
+                    + "，提示 " + prompt.length() + " 字符（目标文件 " + targetContent.length() + " 字符），"
+                    + "tokens " + response.getInputTokens() + "/" + response.getOutputTokens());
+            return result.code;
 
         } catch (Exception e) {
             System.err.println("AI辅助合并失败，降级为智能合并: " + e.getMessage());
-            // 如果AI合并失败，降级为智能合并
-            return smartMerge(targetContent, generated, target);
+            // 降级时不再走AI，避免和 smartMerge 互相递归
+            return traditionalMerge(targetContent, generated, target);
         }
     }
 
     /**
-     * 构建AI合并提示词
-     */
-    private String buildAIMergePrompt(String targetContent, String generatedCode,
-                                      CodeAnalysis target, CodeAnalysis generated) {
-        StringBuilder prompt = new StringBuilder();
-
-        prompt.append("你是一个专业的Java代码合并专家。请帮我合并两个JavaFX代码文件。\n\n");
-
-        prompt.append("## 任务要求\n");
-        prompt.append("1. 将第二个代码文件（AI生成的UI代码）合并到第一个代码文件（现有项目代码）中\n");
-        prompt.append("2. 保持现有代码的结构和逻辑完整\n");
-        prompt.append("3. 智能识别重复的代码和方法\n");
-        prompt.append("4. 确保合并后的代码可以编译和运行\n\n");
-
-        prompt.append("## 代码分析\n");
-        prompt.append("第一个文件（目标文件）：\n");
-        prompt.append("- 包名: ").append(target.packageName != null ? target.packageName : "无").append("\n");
-        prompt.append("- 类名: ").append(target.className != null ? target.className : "无").append("\n");
-        prompt.append("- 方法数: ").append(target.methods.size()).append("\n");
-        prompt.append("- 是否有main方法: ").append(hasMethod(target, "main") ? "是" : "否").append("\n");
-        prompt.append("- 是否有start方法: ").append(hasMethod(target, "start") ? "是" : "否").append("\n\n");
-
-        prompt.append("第二个文件（生成的UI代码）：\n");
-        prompt.append("- 包名: ").append(generated.packageName != null ? generated.packageName : "无").append("\n");
-        prompt.append("- 类名: ").append(generated.className != null ? generated.className : "无").append("\n");
-        prompt.append("- 方法数: ").append(generated.methods.size()).append("\n");
-        prompt.append("- 是否有main方法: ").append(hasMethod(generated, "main") ? "是" : "否").append("\n");
-        prompt.append("- 是否有start方法: ").append(hasMethod(generated, "start") ? "是" : "否").append("\n\n");
-
-        prompt.append("## 具体合并要求\n");
-        prompt.append("1. 合并import语句，去除重复\n");
-        prompt.append("2. 如果两个文件都有start方法，将生成的UI代码合并到现有的start方法中\n");
-        prompt.append("3. 如果目标文件没有start方法但生成的代码有，添加start方法\n");
-        prompt.append("4. 保留目标文件的其他方法（如initialize、event handlers等）\n");
-        prompt.append("5. 如果两个文件都有main方法，保留目标文件的main方法\n");
-        prompt.append("6. 保持代码格式规范和良好注释\n\n");
-
-        prompt.append("## 第一个文件的完整代码\n```java\n").append(targetContent).append("\n```\n\n");
-        prompt.append("## 第二个文件的完整代码\n```java\n").append(generatedCode).append("\n```\n\n");
-
-        prompt.append("## 输出要求\n");
-        prompt.append("1. 只返回合并后的Java代码，不要任何解释\n");
-        prompt.append("2. 不要使用markdown代码块标记（不要```java或```）\n");
-        prompt.append("3. 代码必须是完整、可编译、可运行的\n");
-        prompt.append("4. 使用目标文件的包名和类名\n");
-
-        return prompt.toString();
-    }
-
-    /**
-     * 清理AI生成的代码
+     * 结构化三方合并，祖先版本取目标文件最近一次备份
+     * 无法解析类结构时返回一个包含冲突的结果，由调用方降级
      */
-    private String cleanAIGeneratedCode(String aiResponse, String targetContent, String generatedCode) {
-        // 移除markdown代码块标记
-        String code = aiResponse.replaceAll("(?i)```java\\s*", "")
-                .replaceAll("(?i)```\\s*", "")
-                .replaceAll("(?i)```[a-z]*", "")
-                .trim();
-
-        // 检查代码是否包含关键部分
-        if (!isValidMergedCode(code, targetContent, generatedCode)) {
-            // 如果AI生成的代码无效，降级为智能合并
-            CodeAnalysis targetAnalysis = analyzeCode(targetContent);
-            CodeAnalysis generatedAnalysis = analyzeCode(generatedCode);
-            return smartMerge(targetContent, generatedAnalysis, targetAnalysis);
+    public StructuralMerger.Result structuralMerge(Path targetPath, String targetContent, String generatedCode) throws IOException {
+        String ancestor = findAncestor(targetPath);
+        try {
+            StructuralMerger.Result result = new StructuralMerger().merge(ancestor, targetContent, generatedCode);
+            System.out.println("🧬 结构化合并: " + result.getSummary());
+            return result;
+        } catch (IllegalArgumentException e) {
+            System.err.println("结构化合并失败: " + e.getMessage());
+            StructuralMerger.Result failed = new StructuralMerger.Result();
+            failed.code = targetContent;
+            failed.conflicts.add(new StructuralMerger.Conflict("*", e.getMessage(), null, null));
+            return failed;
         }
-
-        return code;
     }
 
     /**
-     * 验证合并后的代码是否有效
+     * 取目标文件最近的一个备份作为祖先版本
+     * 备份仓库中没有时，兼容旧版的 backups/<文件名>.backup_<时间戳> 备份
      */
-    private boolean isValidMergedCode(String mergedCode, String targetContent, String generatedCode) {
-        // 检查基本有效性
-        if (mergedCode == null || mergedCode.trim().isEmpty()) {
-            return false;
+    private String findAncestor(Path targetPath) throws IOException {
+        String latest = BackupStore.forFile(targetPath).latest(targetPath);
+        if (latest != null) {
+            return latest;
         }
 
-        // 应该包含目标文件的一些关键元素
-        if (targetContent.contains("class ") && !mergedCode.contains("class ")) {
-            return false;
+        Path backupDir = targetPath.toAbsolutePath().getParent().resolve("backups");
+        if (!Files.isDirectory(backupDir)) {
+            return null;
         }
-
-        // 应该包含生成的UI代码的一些关键元素
-        if (generatedCode.contains("new ") && !mergedCode.contains("new ")) {
-            // 但这不是绝对必要的，可能UI代码被整合了
+        String prefix = targetPath.getFileName() + ".backup_";
+        Path legacy = null;
+        long legacyTime = -1;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(backupDir, prefix + "*")) {
+            for (Path backup : stream) {
+                try {
+                    long time = Long.parseLong(backup.getFileName().toString().substring(prefix.length()));
+                    if (time > legacyTime) {
+                        legacyTime = time;
+                        legacy = backup;
+                    }
+                } catch (NumberFormatException ignored) {
+                    // 不是本工具生成的备份
+                }
+            }
         }
-
-        return true;
+        return legacy != null ? Files.readString(legacy) : null;
     }
 
     /**
@@ -233,7 +379,13 @@ public class CodeMerger {
             System.err.println("AI合并失败，使用传统方法: " + e.getMessage());
         }
 
-        // 传统智能合并逻辑
+        return traditionalMerge(targetContent, generated, target);
+    }
+
+    /**
+     * 传统智能合并逻辑（不使用AI）
+     */
+    private String traditionalMerge(String targetContent, CodeAnalysis generated, CodeAnalysis target) {
         // 如果目标文件没有UI类，直接替换
         if (!isJavaFXClass(target)) {
             return replaceClass(targetContent, generated.fullCode, generated, target);
@@ -396,22 +548,19 @@ public class CodeMerger {
         analysis.fullCode = code;
 
         // 提取包名
-        Pattern packagePattern = Pattern.compile("package\\s+([\\w.]+)\\s*;");
-        Matcher packageMatcher = packagePattern.matcher(code);
+        Matcher packageMatcher = RegexPatterns.PACKAGE.matcher(code);
         if (packageMatcher.find()) {
             analysis.packageName = packageMatcher.group(1).trim();
         }
 
         // 提取import语句
-        Pattern importPattern = Pattern.compile("import\\s+([\\w.*]+)\\s*;");
-        Matcher importMatcher = importPattern.matcher(code);
+        Matcher importMatcher = RegexPatterns.IMPORT.matcher(code);
         while (importMatcher.find()) {
             analysis.imports.add(importMatcher.group(1).trim());
         }
 
         // 提取类名
-        Pattern classPattern = Pattern.compile("class\\s+(\\w+)\\s+");
-        Matcher classMatcher = classPattern.matcher(code);
+        Matcher classMatcher = RegexPatterns.CLASS_NAME.matcher(code);
         if (classMatcher.find()) {
             analysis.className = classMatcher.group(1);
         }
@@ -422,6 +571,35 @@ public class CodeMerger {
         return analysis;
     }
 
+    /**
+     * 查找项目中所有JavaFX应用类文件（排除测试文件）
+     */
+    public List<String> findJavaFXFilesInProject(String projectPath) throws IOException {
+        Path projectDir = Paths.get(projectPath);
+        if (!Files.exists(projectDir) || !Files.isDirectory(projectDir)) {
+            throw new IOException("项目目录不存在或不是目录: " + projectPath);
+        }
+
+        List<String> result = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(projectDir)) {
+            for (Path file : (Iterable<Path>) paths::iterator) {
+                String filename = file.getFileName().toString();
+                if (!filename.endsWith(".java") || filename.contains("Test") || filename.contains("test")
+                        || !Files.isRegularFile(file)) {
+                    continue;
+                }
+                try {
+                    if (isJavaFXClass(Files.readString(file))) {
+                        result.add(file.toAbsolutePath().toString());
+                    }
+                } catch (IOException e) {
+                    System.err.println("读取文件失败: " + file + " - " + e.getMessage());
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * 查找项目中的JavaFX文件
      */
@@ -471,35 +649,16 @@ public class CodeMerger {
      */
     private void backupOriginalFile(String filePath) throws IOException {
         Path original = Paths.get(filePath);
-        Path backupDir = original.getParent().resolve("backups");
-
-        // 创建备份目录
-        if (!Files.exists(backupDir)) {
-            Files.createDirectories(backupDir);
-        }
-
-        String timestamp = String.valueOf(System.currentTimeMillis());
-        String backupName = original.getFileName() + ".backup_" + timestamp;
-        Path backup = backupDir.resolve(backupName);
-
-        Files.copy(original, backup);
-        System.out.println("已创建备份: " + backup);
+        BackupStore store = BackupStore.forFile(original);
+        BackupStore.Version version = store.backup(original);
+        System.out.println("已创建备份: " + original.getFileName() + " @ " + version);
     }
 
     // ============== 辅助方法 ==============
 
     private void extractMethods(String code, CodeAnalysis analysis) {
         // 简化方法提取：查找public/protected/private方法
-        Pattern methodPattern = Pattern.compile(
-                "(public|private|protected|\\s)?\\s+" + // 访问修饰符
-                        "(static\\s+)?" +                       // static
-                        "(\\w+\\s+)?" +                         // 返回类型（可能有多部分，如List<String>）
-                        "(\\w+)\\s*\\(" +                       // 方法名
-                        "([^)]*)\\)\\s*\\{",                    // 参数
-                Pattern.DOTALL
-        );
-
-        Matcher methodMatcher = methodPattern.matcher(code);
+        Matcher methodMatcher = RegexPatterns.METHOD_DECLARATION.matcher(code);
         while (methodMatcher.find()) {
             MethodInfo method = new MethodInfo();
             method.name = methodMatcher.group(4);
@@ -539,27 +698,24 @@ public class CodeMerger {
             return -1;
         }
 
-        Pattern classPattern = Pattern.compile("class\\s+" + Pattern.quote(className) + "\\s+.*\\{");
-        Matcher matcher = classPattern.matcher(text);
-
-        if (matcher.find()) {
-            return findMatchingBrace(text, matcher.end() - 1);
+        // 按类名逐个比较，不再为每个类名编译 .*\{ 这样的贪婪表达式
+        Matcher matcher = RegexPatterns.CLASS_NAME.matcher(text);
+        while (matcher.find()) {
+            if (matcher.group(1).equals(className)) {
+                int open = text.indexOf('{', matcher.end());
+                return open >= 0 ? findMatchingBrace(text, open) : -1;
+            }
         }
 
         return -1;
     }
 
     private int findMethodStart(String text, String methodName) {
-        Pattern methodPattern = Pattern.compile(
-                "\\b" + Pattern.quote(methodName) + "\\s*\\([^)]*\\)\\s*\\{"
-        );
-        Matcher matcher = methodPattern.matcher(text);
-        return matcher.find() ? matcher.start() : -1;
+        return RegexPatterns.findMethodHeader(text, methodName);
     }
 
     private int findLastImportPosition(String text) {
-        Pattern importPattern = Pattern.compile("import\\s+[\\w.*]+\\s*;");
-        Matcher matcher = importPattern.matcher(text);
+        Matcher matcher = RegexPatterns.IMPORT.matcher(text);
         int lastPos = -1;
 
         while (matcher.find()) {
@@ -571,8 +727,7 @@ public class CodeMerger {
 
     private String extractClassContent(String code) {
         // 找到类定义开始
-        Pattern classPattern = Pattern.compile("class\\s+\\w+");
-        Matcher matcher = classPattern.matcher(code);
+        Matcher matcher = RegexPatterns.CLASS_NAME.matcher(code);
 
         if (matcher.find()) {
             return code.substring(matcher.start()).trim();
@@ -594,9 +749,7 @@ public class CodeMerger {
 
     private String extractUICreationFromMethod(String methodContent) {
         // 简单的提取：从第一个组件创建到设置场景前
-        Pattern uiPattern = Pattern.compile(
-                "(new\\s+(Label|Button|TextField|TextArea|VBox|HBox|GridPane|BorderPane|TableView))"
-        );
+        Pattern uiPattern = RegexPatterns.UI_COMPONENT_CREATION;
 
         String[] lines = methodContent.split("\n");
         StringBuilder uiCode = new StringBuilder();
@@ -645,17 +798,68 @@ public class CodeMerger {
                 .anyMatch(m -> methodName != null && methodName.equals(m.name));
     }
 
+    /**
+     * 目标文件缺少的import：按类判断而不是按import字符串判断
+     * 目标已有同名类的import或该包的通配符import时不再添加；生成代码的通配符import按实际用到的类展开为确切的import
+     */
     private String findMissingImports(CodeAnalysis target, CodeAnalysis generated) {
-        StringBuilder missing = new StringBuilder();
+        ImportIndex index = ImportIndex.current();
+        Set<String> targetNames = new HashSet<>();
+        Set<String> targetPackages = new HashSet<>();
+        for (String imp : target.imports) {
+            int dot = imp.lastIndexOf('.');
+            if (imp.endsWith(".*")) {
+                targetPackages.add(imp.substring(0, dot));
+            } else {
+                targetNames.add(imp.substring(dot + 1));
+            }
+        }
 
+        Set<String> missing = new TreeSet<>();
+        Set<String> usedTypes = null;
         for (String imp : generated.imports) {
-            if (!target.imports.contains(imp) &&
-                    !imp.startsWith("java.lang.")) {
-                missing.append("import ").append(imp).append(";\n");
+            if (target.imports.contains(imp) || imp.startsWith("java.lang.")) {
+                continue;
+            }
+            int dot = imp.lastIndexOf('.');
+            String packageName = imp.substring(0, dot);
+            if (targetPackages.contains(packageName)) {
+                continue;
+            }
+            if (!imp.endsWith(".*")) {
+                if (!targetNames.contains(imp.substring(dot + 1))) {
+                    missing.add(imp);
+                }
+                continue;
+            }
+            if (index == null || !index.knowsPackage(packageName)) {
+                missing.add(imp);
+                continue;
+            }
+            if (usedTypes == null) {
+                usedTypes = findUsedTypeNames(generated.fullCode);
+            }
+            for (String type : usedTypes) {
+                if (!targetNames.contains(type) && index.isInPackage(type, packageName)) {
+                    missing.add(packageName + "." + type);
+                }
             }
         }
 
-        return missing.toString().trim();
+        StringBuilder sb = new StringBuilder();
+        for (String imp : missing) {
+            sb.append("import ").append(imp).append(";\n");
+        }
+        return sb.toString().trim();
+    }
+
+    private Set<String> findUsedTypeNames(String code) {
+        Set<String> names = new HashSet<>();
+        Matcher matcher = RegexPatterns.TYPE_NAME.matcher(code == null ? "" : code);
+        while (matcher.find()) {
+            names.add(matcher.group());
+        }
+        return names;
     }
 
     // ============== 内部类 ==============
@@ -691,6 +895,88 @@ public class CodeMerger {
         }
     }
 
+    /**
+     * 结构化合并有冲突（不写入文件）
+     */
+    private static class MergeConflictException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        MergeConflictException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 批量合并中单个文件的结果
+     */
+    public static class FileMergeResult {
+        public final Path path;
+        public MergeResult result;
+        public boolean changed;
+        public String mergedContent;
+        public long elapsedMs;
+
+        public FileMergeResult(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public String toString() {
+            return (result.success ? "✅ " : "❌ ") + path.getFileName() + " - "
+                    + result.message.split("\n")[0] + " (" + elapsedMs + "ms)";
+        }
+    }
+
+    /**
+     * 批量合并报告
+     */
+    public static class BatchMergeReport {
+        public final boolean dryRun;
+        public final List<FileMergeResult> files = new ArrayList<>();
+        public String error;
+        public long elapsedMs;
+
+        public BatchMergeReport(boolean dryRun) {
+            this.dryRun = dryRun;
+        }
+
+        public int getSuccessCount() {
+            int count = 0;
+            for (FileMergeResult file : files) {
+                if (file.result.success) count++;
+            }
+            return count;
+        }
+
+        public int getChangedCount() {
+            int count = 0;
+            for (FileMergeResult file : files) {
+                if (file.result.success && file.changed) count++;
+            }
+            return count;
+        }
+
+        public String getSummary() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(dryRun ? "[预览] " : "").append("共 ").append(files.size()).append(" 个文件，成功 ")
+                    .append(getSuccessCount()).append("，有改动 ").append(getChangedCount())
+                    .append("，失败 ").append(files.size() - getSuccessCount())
+                    .append("，耗时 ").append(elapsedMs).append("ms");
+            if (error != null) {
+                sb.append("\n").append(error);
+            }
+            return sb.toString();
+        }
+
+        public String getReport() {
+            StringBuilder sb = new StringBuilder(getSummary());
+            for (FileMergeResult file : files) {
+                sb.append("\n").append(file);
+            }
+            return sb.toString();
+        }
+    }
+
     /**
      * 合并结果
      */
@@ -712,6 +998,7 @@ public class CodeMerger {
         INSERT_METHOD("插入方法"),
         ADD_COMPONENT("添加组件"),
         SMART_MERGE("智能合并（传统）"),
+        STRUCTURAL("结构化合并（三方）"),
         AI_ASSISTED("智能合并（AI辅助）");
 
         private final String description;
@@ -0,0 +1,406 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * AI响应的单遍规范化：去掉代码块标记和前后的说明文字，取最大的Java代码块，并补全缺少的import
+ * 按行增量处理，既可以一次传入完整响应，也可以在流式输出时逐段 append，最后调用 finish
+ */
+public class CodeNormalizer {
+
+    // 常用类型的简单类名到完整类名；import索引还没有加载完成时用它补全import
+    private static final Map<String, String> COMMON_TYPES = new HashMap<>();
+
+    static {
+        register("javafx.application", "Application", "Platform");
+        register("javafx.stage", "Stage", "Modality", "FileChooser", "DirectoryChooser", "StageStyle");
+        register("javafx.scene", "Scene", "Node", "Parent", "Group", "Cursor");
+        register("javafx.scene.layout", "VBox", "HBox", "BorderPane", "GridPane", "StackPane", "FlowPane",
+                "AnchorPane", "Pane", "TilePane", "Priority", "Region", "ColumnConstraints", "RowConstraints",
+                "Background", "BackgroundFill", "CornerRadii");
+        register("javafx.scene.control", "Button", "Label", "TextField", "TextArea", "PasswordField",
+                "ListView", "TableView", "TableColumn", "ComboBox", "CheckBox", "RadioButton", "ToggleGroup",
+                "ToggleButton", "Alert", "ButtonType", "MenuBar", "Menu", "MenuItem", "ContextMenu",
+                "ProgressBar", "ProgressIndicator", "Slider", "ScrollPane", "TabPane", "Tab", "ChoiceBox",
+                "DatePicker", "Spinner", "Separator", "ToolBar", "Tooltip", "Hyperlink", "SplitPane",
+                "TreeView", "TreeItem", "TitledPane", "Accordion", "ListCell", "TableCell", "SelectionMode",
+                "ColorPicker", "Control", "Dialog", "TextInputDialog");
+        register("javafx.scene.control.cell", "PropertyValueFactory");
+        register("javafx.geometry", "Insets", "Pos", "Orientation", "HPos", "VPos", "Side");
+        register("javafx.scene.text", "Font", "FontWeight", "Text", "TextAlignment", "FontPosture");
+        register("javafx.scene.paint", "Color", "LinearGradient", "Paint");
+        register("javafx.scene.image", "Image", "ImageView");
+        register("javafx.scene.shape", "Rectangle", "Circle", "Line", "Polygon", "Arc");
+        register("javafx.scene.effect", "DropShadow");
+        register("javafx.collections", "FXCollections", "ObservableList");
+        register("javafx.beans.property", "SimpleStringProperty", "SimpleIntegerProperty",
+                "SimpleDoubleProperty", "SimpleBooleanProperty", "StringProperty", "IntegerProperty");
+        register("javafx.event", "ActionEvent", "EventHandler");
+        register("javafx.animation", "Timeline", "KeyFrame", "KeyValue", "FadeTransition",
+                "TranslateTransition", "ScaleTransition", "PauseTransition", "AnimationTimer");
+        register("javafx.util", "Duration");
+        register("java.util", "List", "ArrayList", "Map", "HashMap", "Set", "HashSet", "Random",
+                "Arrays", "Collections", "Optional", "Scanner", "LinkedList");
+        register("java.time", "LocalDate", "LocalDateTime", "LocalTime");
+        register("java.time.format", "DateTimeFormatter");
+    }
+
+    private static void register(String packageName, String... simpleNames) {
+        for (String simpleName : simpleNames) {
+            COMMON_TYPES.put(simpleName, packageName + "." + simpleName);
+        }
+    }
+
+    /**
+     * 一个代码块（代码块标记之间的内容，或没有标记时的全部文本）及扫描过程中收集的信息
+     */
+    private static class Block {
+        final StringBuilder text = new StringBuilder();
+        final Set<String> imports = new LinkedHashSet<>();
+        final Set<String> usedTypes = new LinkedHashSet<>();
+        final Set<String> declaredTypes = new LinkedHashSet<>();
+        boolean hasPackage;
+        boolean hasClass;
+        boolean inBlockComment;
+        int codeStart = -1; // 去掉前置说明后代码开始的位置（只用于没有代码块标记的文本）
+
+        int score() {
+            // 含类声明的块优先，其次按长度
+            return (hasClass ? Integer.MAX_VALUE / 2 : 0) + Math.min(text.length(), Integer.MAX_VALUE / 2 - 1);
+        }
+    }
+
+    /**
+     * 规范化结果
+     */
+    public static class Result {
+        public String code;
+        public String className;
+        public List<String> addedImports = new ArrayList<>();
+        public List<String> expandedWildcards = new ArrayList<>();
+        public int blockCount;
+    }
+
+    private final StringBuilder pending = new StringBuilder();
+    private final Block outside = new Block();
+    private final List<Block> blocks = new ArrayList<>();
+    private Block current;
+    private boolean finished;
+
+    /**
+     * 一次性规范化完整响应
+     */
+    public static Result normalize(String response) {
+        CodeNormalizer normalizer = new CodeNormalizer();
+        normalizer.append(response);
+        return normalizer.finish();
+    }
+
+    /**
+     * 追加一段响应（可以在任意位置截断，不完整的行留到下次处理）
+     */
+    public CodeNormalizer append(CharSequence chunk) {
+        if (finished) {
+            throw new IllegalStateException("已经调用过 finish");
+        }
+        int lineStart = 0;
+        for (int i = 0; i < chunk.length(); i++) {
+            if (chunk.charAt(i) == '\n') {
+                if (pending.length() > 0) {
+                    pending.append(chunk, lineStart, i);
+                    processLine(pending.toString());
+                    pending.setLength(0);
+                } else {
+                    processLine(chunk.subSequence(lineStart, i).toString());
+                }
+                lineStart = i + 1;
+            }
+        }
+        pending.append(chunk, lineStart, chunk.length());
+        return this;
+    }
+
+    /**
+     * 当前已处理部分的代码（用于流式显示）
+     */
+    public String snapshot() {
+        Block block = selectBlock();
+        return block == null ? "" : block.text.toString();
+    }
+
+    /**
+     * 结束输入，返回规范化后的代码
+     */
+    public Result finish() {
+        if (!finished) {
+            if (pending.length() > 0) {
+                processLine(pending.toString());
+                pending.setLength(0);
+            }
+            // 未闭合的代码块（响应被截断）同样有效
+            current = null;
+            finished = true;
+        }
+
+        Result result = new Result();
+        result.blockCount = blocks.size();
+        Block block = selectBlock();
+        if (block == null) {
+            result.code = "";
+            return result;
+        }
+
+        String code = block.text.toString();
+        if (block == outside && block.codeStart > 0) {
+            code = code.substring(block.codeStart);
+        }
+        code = code.strip();
+
+        ImportIndex index = ImportIndex.current();
+        if (index != null) {
+            code = expandWildcards(code, block, index, result.expandedWildcards);
+        }
+        Set<String> missing = missingImports(block, index);
+        if (!missing.isEmpty()) {
+            code = insertImports(code, missing, block.hasPackage);
+            result.addedImports.addAll(missing);
+        }
+        result.code = code;
+        result.className = block.declaredTypes.isEmpty() ? null : block.declaredTypes.iterator().next();
+        return result;
+    }
+
+    // ============== 逐行处理 ==============
+
+    private void processLine(String line) {
+        String trimmed = line.trim();
+        if (trimmed.startsWith("```")) {
+            if (current == null) {
+                current = new Block();
+                blocks.add(current);
+            } else {
+                current = null;
+            }
+            return;
+        }
+
+        Block block = current != null ? current : outside;
+        if (block == outside && block.codeStart < 0 && looksLikeCodeStart(trimmed)) {
+            block.codeStart = block.text.length();
+        }
+        block.text.append(line).append('\n');
+        if (block == outside && block.codeStart < 0) {
+            // 代码开始之前的说明文字不参与类型扫描
+            return;
+        }
+        scanLine(block, trimmed);
+    }
+
+    private static boolean looksLikeCodeStart(String trimmed) {
+        return trimmed.startsWith("package ") || trimmed.startsWith("import ")
+                || trimmed.startsWith("public ") || trimmed.startsWith("class ")
+                || trimmed.startsWith("@") || trimmed.startsWith("/*") || trimmed.startsWith("//")
+                || trimmed.startsWith("final ") || trimmed.startsWith("abstract ");
+    }
+
+    /**
+     * 扫描一行代码：记录import、package、声明的类型和用到的大写开头的标识符（跳过字符串和注释）
+     */
+    private static void scanLine(Block block, String line) {
+        if (!block.inBlockComment) {
+            if (line.startsWith("import ")) {
+                int end = line.indexOf(';');
+                if (end > 0) {
+                    String imp = line.substring(7, end).trim();
+                    block.imports.add(imp.startsWith("static ") ? imp.substring(7).trim() : imp);
+                }
+                return;
+            }
+            if (line.startsWith("package ")) {
+                block.hasPackage = true;
+                return;
+            }
+        }
+
+        int n = line.length();
+        int i = 0;
+        String previousWord = null;
+        while (i < n) {
+            char c = line.charAt(i);
+            if (block.inBlockComment) {
+                int end = line.indexOf("*/", i);
+                if (end < 0) return;
+                block.inBlockComment = false;
+                i = end + 2;
+                continue;
+            }
+            if (c == '/' && i + 1 < n && line.charAt(i + 1) == '/') {
+                return;
+            }
+            if (c == '/' && i + 1 < n && line.charAt(i + 1) == '*') {
+                block.inBlockComment = true;
+                i += 2;
+                continue;
+            }
+            if (c == '"' || c == '\'') {
+                i = skipLiteral(line, i, c);
+                continue;
+            }
+            if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < n && Character.isJavaIdentifierPart(line.charAt(i))) i++;
+                String word = line.substring(start, i);
+                boolean qualified = start > 0 && line.charAt(start - 1) == '.';
+                if (previousWord != null && isTypeKeyword(previousWord)) {
+                    block.declaredTypes.add(word);
+                    block.hasClass = true;
+                } else if (!qualified && Character.isUpperCase(word.charAt(0))) {
+                    block.usedTypes.add(word);
+                }
+                previousWord = word;
+                continue;
+            }
+            if (!Character.isWhitespace(c)) {
+                previousWord = null;
+            }
+            i++;
+        }
+    }
+
+    private static boolean isTypeKeyword(String word) {
+        return word.equals("class") || word.equals("interface") || word.equals("enum") || word.equals("record");
+    }
+
+    private static int skipLiteral(String line, int start, char quote) {
+        int i = start + 1;
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                return i + 1;
+            }
+            i++;
+        }
+        return line.length();
+    }
+
+    // ============== 结果 ==============
+
+    private Block selectBlock() {
+        Block best = null;
+        for (Block block : blocks) {
+            if (block.text.length() > 0 && (best == null || block.score() > best.score())) {
+                best = block;
+            }
+        }
+        // 没有代码块标记时使用全部文本
+        if (best == null && outside.text.length() > 0) {
+            best = outside;
+        }
+        return best;
+    }
+
+    /**
+     * 用到但没有导入（也没有在代码中声明）的类型
+     * 有import索引时按索引解析，否则只认常用类型
+     */
+    private static Set<String> missingImports(Block block, ImportIndex index) {
+        Set<String> importedPackages = new LinkedHashSet<>();
+        Set<String> importedNames = new LinkedHashSet<>();
+        for (String imp : block.imports) {
+            int dot = imp.lastIndexOf('.');
+            if (imp.endsWith(".*")) {
+                importedPackages.add(imp.substring(0, dot));
+            } else {
+                importedNames.add(imp.substring(dot + 1));
+            }
+        }
+
+        Set<String> missing = new TreeSet<>();
+        for (String type : block.usedTypes) {
+            if (importedNames.contains(type) || block.declaredTypes.contains(type)) {
+                continue;
+            }
+            String fullName = index != null ? index.resolve(type) : null;
+            if (fullName == null && (index == null || !index.isImplicit(type))) {
+                fullName = COMMON_TYPES.get(type);
+            }
+            if (fullName == null || isCoveredByWildcard(type, fullName, importedPackages, index)) {
+                continue;
+            }
+            missing.add(fullName);
+        }
+        return missing;
+    }
+
+    private static boolean isCoveredByWildcard(String type, String fullName, Set<String> packages, ImportIndex index) {
+        for (String packageName : packages) {
+            if (index != null ? index.isInPackage(type, packageName)
+                    : fullName.equals(packageName + "." + type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 把索引覆盖的包的通配符import替换为实际用到的类的确切import，减少javac需要解析的类
+     */
+    private static String expandWildcards(String code, Block block, ImportIndex index, List<String> expanded) {
+        for (String imp : block.imports) {
+            if (!imp.endsWith(".*")) {
+                continue;
+            }
+            String packageName = imp.substring(0, imp.length() - 2);
+            String line = "import " + imp + ";";
+            int pos = code.indexOf(line);
+            if (pos < 0 || !index.knowsPackage(packageName)) {
+                continue;
+            }
+            Set<String> used = new TreeSet<>();
+            for (String type : block.usedTypes) {
+                if (!block.declaredTypes.contains(type) && index.isInPackage(type, packageName)) {
+                    used.add(packageName + "." + type);
+                }
+            }
+            StringBuilder replacement = new StringBuilder();
+            for (String fullName : used) {
+                if (replacement.length() > 0) replacement.append('\n');
+                replacement.append("import ").append(fullName).append(';');
+            }
+            int end = pos + line.length();
+            if (replacement.length() == 0 && end < code.length() && code.charAt(end) == '\n') {
+                end++; // 没有用到的通配符import整行删除
+            }
+            code = code.substring(0, pos) + replacement + code.substring(end);
+            expanded.add(imp);
+        }
+        return code;
+    }
+
+    private static String insertImports(String code, Set<String> imports, boolean hasPackage) {
+        StringBuilder importBlock = new StringBuilder();
+        for (String imp : imports) {
+            importBlock.append("import ").append(imp).append(";\n");
+        }
+        // 有import时放在第一条import之前，否则放在package之后或文件开头
+        int firstImport = code.startsWith("import ") ? 0 : code.indexOf("\nimport ") + 1;
+        if (firstImport > 0 || code.startsWith("import ")) {
+            return code.substring(0, firstImport) + importBlock + code.substring(firstImport);
+        }
+        if (hasPackage) {
+            int packageEnd = code.indexOf(';', code.indexOf("package ")) + 1;
+            return code.substring(0, packageEnd) + "\n\n" + importBlock.toString().strip() + code.substring(packageEnd);
+        }
+        return importBlock + "\n" + code;
+    }
+}
@@ -0,0 +1,291 @@
+package com.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 自动修复：把编译错误和出错行发回给AI，请求最小补丁并在本地应用，然后重新检查
+ * 在有限的重试次数内循环，直到代码通过编译检查
+ */
+public class CodeRepairer {
+
+    /**
+     * 补丁格式说明（作为系统提示词）
+     */
+    static final String PATCH_SYSTEM_PROMPT =
+            "你是一个Java编译错误修复助手。你只输出补丁，不输出完整代码，也不做任何解释。\n" +
+                    "补丁由一个或多个操作组成，行号以用户给出的原始代码为准：\n" +
+                    "@@ REPLACE 起始行-结束行\n" +
+                    "替换后的代码行\n" +
+                    "@@ END\n" +
+                    "@@ INSERT 行号（在该行之后插入，0表示文件开头）\n" +
+                    "插入的代码行\n" +
+                    "@@ END\n" +
+                    "@@ DELETE 起始行-结束行\n" +
+                    "规则：\n" +
+                    "1. 只修改修复错误所必需的行，改动越少越好\n" +
+                    "2. 缺少import时用 INSERT 在import区域插入\n" +
+                    "3. 不要使用markdown代码块标记\n" +
+                    "4. 操作的行号范围不能重叠";
+
+    private static final Pattern OPERATION_PATTERN =
+            Pattern.compile("^@@\\s*(REPLACE|INSERT|DELETE)\\s+(\\d+)(?:\\s*-\\s*(\\d+))?\\s*$");
+
+    // 每个错误附带的上下文行数
+    private static final int CONTEXT_LINES = 2;
+    // 单次修复最多发送的错误数
+    private static final int MAX_ERRORS_PER_ATTEMPT = 8;
+
+    private final AliyunAIClient aiClient;
+    private final CodeRunner codeRunner;
+
+    public CodeRepairer(AliyunAIClient aiClient, CodeRunner codeRunner) {
+        this.aiClient = aiClient;
+        this.codeRunner = codeRunner;
+    }
+
+    /**
+     * 检查并修复代码
+     * @param maxAttempts 最多请求补丁的次数
+     */
+    public RepairResult repair(String code, int maxAttempts, PipelineMetrics.Run run) {
+        RepairResult result = new RepairResult(code);
+        long start = System.nanoTime();
+
+        CodeRunner.CheckResult check = codeRunner.checkCode(code);
+        result.initialErrors = check.getErrorCount();
+
+        while (!check.success && result.attempts < maxAttempts) {
+            result.attempts++;
+            String prompt = buildRepairPrompt(result.code, check);
+
+            AliyunAIClient.CodeGeneration patch;
+            try {
+                if (run != null) {
+                    try (PipelineMetrics.Span ignored = run.span(PipelineMetrics.Phase.AI_REPAIR)) {
+                        patch = aiClient.requestPatch(prompt);
+                    }
+                } else {
+                    patch = aiClient.requestPatch(prompt);
+                }
+            } catch (IOException e) {
+                result.message = "请求补丁失败: " + e.getMessage();
+                break;
+            }
+            result.inputTokens += patch.getInputTokens();
+            result.outputTokens += patch.getOutputTokens();
+
+            String patched;
+            try {
+                patched = applyPatch(result.code, patch.getCode());
+            } catch (IllegalArgumentException e) {
+                System.out.println("补丁无法应用: " + e.getMessage());
+                continue;
+            }
+            if (patched.equals(result.code)) {
+                result.message = "补丁没有改动代码";
+                break;
+            }
+
+            CodeRunner.CheckResult patchedCheck = codeRunner.checkCode(patched);
+            System.out.println("🔧 第 " + result.attempts + " 次修复: 错误 " + check.getErrorCount() +
+                    " → " + patchedCheck.getErrorCount());
+
+            // 补丁让错误变多时丢弃，保留上一版代码重试
+            if (!patchedCheck.success && patchedCheck.getErrorCount() > check.getErrorCount()) {
+                continue;
+            }
+            result.code = patched;
+            check = patchedCheck;
+        }
+
+        result.success = check.success;
+        result.remainingErrors = check.getErrorCount();
+        result.elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        if (result.message == null) {
+            result.message = check.success ? "修复成功" : "超过最大修复次数";
+        }
+        return result;
+    }
+
+    /**
+     * 构建修复提示：只包含错误信息和出错行附近的代码，不发送整个文件
+     */
+    static String buildRepairPrompt(String code, CodeRunner.CheckResult check) {
+        String[] lines = code.split("\n", -1);
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("以下Java代码共 ").append(lines.length).append(" 行，编译出现错误，请给出最小补丁。\n\n");
+
+        // import区域帮助模型判断缺少的import
+        prompt.append("## import 区域\n");
+        for (int i = 0; i < lines.length; i++) {
+            String trimmed = lines[i].trim();
+            if (trimmed.startsWith("import ") || trimmed.startsWith("package ")) {
+                appendLine(prompt, lines, i);
+            }
+        }
+
+        prompt.append("\n## 编译错误\n");
+        boolean[] included = new boolean[lines.length];
+        int count = 0;
+        for (CodeRunner.CompileDiagnostic diagnostic : check.diagnostics) {
+            if (!diagnostic.error) continue;
+            if (++count > MAX_ERRORS_PER_ATTEMPT) break;
+            prompt.append(count).append(". ").append(diagnostic).append("\n");
+            if (diagnostic.line > 0) {
+                int center = (int) diagnostic.line - 1;
+                for (int i = Math.max(0, center - CONTEXT_LINES); i <= Math.min(lines.length - 1, center + CONTEXT_LINES); i++) {
+                    included[i] = true;
+                }
+            }
+        }
+
+        prompt.append("\n## 出错位置附近的代码（行号: 内容）\n");
+        int previous = -2;
+        for (int i = 0; i < lines.length; i++) {
+            if (!included[i]) continue;
+            if (previous >= 0 && i > previous + 1) {
+                prompt.append("...\n");
+            }
+            appendLine(prompt, lines, i);
+            previous = i;
+        }
+        return prompt.toString();
+    }
+
+    private static void appendLine(StringBuilder sb, String[] lines, int index) {
+        sb.append(index + 1).append(": ").append(lines[index]).append("\n");
+    }
+
+    /**
+     * 应用补丁：行号以原始代码为准，从后往前应用以免行号偏移
+     */
+    static String applyPatch(String code, String patch) {
+        List<String> lines = new ArrayList<>(Arrays.asList(code.split("\n", -1)));
+        List<PatchOperation> operations = parsePatch(patch);
+        if (operations.isEmpty()) {
+            throw new IllegalArgumentException("补丁中没有有效操作");
+        }
+
+        operations.sort((a, b) -> Integer.compare(b.start, a.start));
+        int lowerBound = Integer.MAX_VALUE;
+        for (PatchOperation op : operations) {
+            if (op.end > lines.size() || op.start < 0) {
+                throw new IllegalArgumentException("行号超出范围: " + op);
+            }
+            if (op.end >= lowerBound && !"INSERT".equals(op.type)) {
+                throw new IllegalArgumentException("补丁操作重叠: " + op);
+            }
+
+            switch (op.type) {
+                case "REPLACE":
+                    lines.subList(op.start - 1, op.end).clear();
+                    lines.addAll(op.start - 1, op.body);
+                    break;
+                case "DELETE":
+                    lines.subList(op.start - 1, op.end).clear();
+                    break;
+                case "INSERT":
+                    lines.addAll(op.start, op.body);
+                    break;
+                default:
+                    break;
+            }
+            lowerBound = op.start;
+        }
+        return String.join("\n", lines);
+    }
+
+    static List<PatchOperation> parsePatch(String patch) {
+        List<PatchOperation> operations = new ArrayList<>();
+        String[] lines = patch.replace("\r\n", "\n").split("\n");
+        PatchOperation current = null;
+
+        for (String line : lines) {
+            if (line.trim().startsWith("```")) {
+                continue;
+            }
+            Matcher matcher = OPERATION_PATTERN.matcher(line.trim());
+            if (matcher.matches()) {
+                if (current != null) {
+                    throw new IllegalArgumentException("缺少 @@ END: " + current);
+                }
+                String type = matcher.group(1);
+                int start = Integer.parseInt(matcher.group(2));
+                int end = matcher.group(3) != null ? Integer.parseInt(matcher.group(3)) : start;
+                if ("INSERT".equals(type)) {
+                    end = start;
+                } else if (start < 1 || end < start) {
+                    throw new IllegalArgumentException("无效的行号范围: " + line);
+                }
+                PatchOperation op = new PatchOperation(type, start, end);
+                if ("DELETE".equals(type)) {
+                    operations.add(op);
+                } else {
+                    current = op;
+                }
+            } else if (line.trim().equals("@@ END")) {
+                if (current != null) {
+                    operations.add(current);
+                    current = null;
+                }
+            } else if (current != null) {
+                current.body.add(line);
+            }
+        }
+        if (current != null) {
+            throw new IllegalArgumentException("缺少 @@ END: " + current);
+        }
+        return operations;
+    }
+
+    // ============== 内部类 ==============
+
+    static class PatchOperation {
+        final String type;
+        final int start;
+        final int end;
+        final List<String> body = new ArrayList<>();
+
+        PatchOperation(String type, int start, int end) {
+            this.type = type;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + start + (end != start ? "-" + end : "");
+        }
+    }
+
+    /**
+     * 修复结果
+     */
+    public static class RepairResult {
+        public String code;
+        public boolean success;
+        public int attempts;
+        public int initialErrors;
+        public int remainingErrors;
+        public int inputTokens;
+        public int outputTokens;
+        public long elapsedMs;
+        public String message;
+
+        RepairResult(String code) {
+            this.code = code;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s 修复%d次, 错误 %d → %d, token %d+%d, 耗时 %dms (%s)",
+                    success ? "✅" : "❌", attempts, initialErrors, remainingErrors,
+                    inputTokens, outputTokens, elapsedMs, message);
+        }
+    }
+}
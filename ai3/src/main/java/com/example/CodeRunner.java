@@ -8,13 +8,28 @@ import java.net.URLClassLoader;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class CodeRunner {
 
     private static final String TEMP_DIR = System.getProperty("java.io.tmpdir") + "/javafx_code_runner/";
 
+    // 子进程运行超时时间
+    private static final long PROCESS_TIMEOUT_SECONDS = 60;
+
+    // 所有运行共享的后台线程池（守护线程，不阻止程序退出）
+    private static final ExecutorService RUN_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2),
+            new ThreadFactory() {
+                private int count;
+
+                @Override
+                public synchronized Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "code-runner-" + (++count));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
     // 固定的JavaFX路径 - 指向本地SDK的lib目录
     private String javafxModulePath = "C:\\javafx-sdk-21.0.3\\lib";
     private String additionalModules = "javafx.controls,javafx.fxml,javafx.graphics,javafx.base,javafx.media,javafx.swing,javafx.web";
@@ -27,16 +42,28 @@ public class CodeRunner {
 
     private StageCallback stageCallback;
 
+    // 当前流水线运行（用于耗时统计，可为空）
+    private PipelineMetrics.Run pipelineRun;
+
+    // 子进程输出的实时监听器（可为空）
+    private Consumer<String> outputListener;
+
     // 编译结果封装类
     private static class CompilationResult {
         final boolean success;
         final String output;
         final String errorOutput;
+        final List<CompileDiagnostic> diagnostics;
 
         CompilationResult(boolean success, String output, String errorOutput) {
+            this(success, output, errorOutput, Collections.emptyList());
+        }
+
+        CompilationResult(boolean success, String output, String errorOutput, List<CompileDiagnostic> diagnostics) {
             this.success = success;
             this.output = output;
             this.errorOutput = errorOutput;
+            this.diagnostics = diagnostics;
         }
     }
 
@@ -62,6 +89,20 @@ public class CodeRunner {
         this.stageCallback = callback;
     }
 
+    /**
+     * 设置当前流水线运行，后续编译/加载/启动阶段的耗时记录到该运行中
+     */
+    public void setPipelineRun(PipelineMetrics.Run run) {
+        this.pipelineRun = run;
+    }
+
+    /**
+     * 设置子进程输出监听器，每读取一行调用一次（在后台线程中回调）
+     */
+    public void setOutputListener(Consumer<String> listener) {
+        this.outputListener = listener;
+    }
+
     /**
      * 设置JavaFX配置 - 强制使用本地路径
      */
@@ -81,6 +122,7 @@ public class CodeRunner {
                     if ("MODULE_PATH".equals(key)) {
                         javafxModulePath = value;
                         System.out.println("JavaFX模块路径已强制更新为: " + javafxModulePath);
+                        ImportIndex.preload(javafxModulePath);
                     }
                 }
             }
@@ -88,114 +130,64 @@ public class CodeRunner {
     }
 
     /**
-     * 运行JavaFX代码 - 返回运行是否成功
+     * 运行JavaFX代码 - 在独立进程中运行，返回可取消的运行句柄
      */
-    public void runJavaFXCode(String code, Runnable onSuccess, Consumer<String> onError) {
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+    public RunHandle runJavaFXCode(String code, Runnable onSuccess, Consumer<String> onError) {
+        RunHandle handle = new RunHandle();
 
-        executor.submit(() -> {
+        Future<?> task = RUN_EXECUTOR.submit(() -> {
             try {
                 // 先检查并设置正确的JavaFX路径
                 ensureJavaFXPath();
-                runInIsolatedProcess(code, onSuccess, onError);
+                ImportIndex.preload(javafxModulePath);
+                runInIsolatedProcess(code, onSuccess, onError, handle);
             } catch (Exception e) {
-                Platform.runLater(() -> onError.accept("运行失败: " + e.getMessage()));
+                handle.setStatus(RunHandle.Status.FAILED);
+                if (!handle.isCancelled()) {
+                    Platform.runLater(() -> onError.accept("运行失败: " + e.getMessage()));
+                }
                 e.printStackTrace();
             }
         });
+        handle.attachTask(task);
 
-        executor.shutdown();
+        return handle;
     }
 
     /**
-     * 确保使用正确的JavaFX路径
+     * 确保使用正确的JavaFX路径：配置的路径不存在时使用环境探测（带缓存）的结果
      */
     private void ensureJavaFXPath() {
-        System.out.println("检查JavaFX路径配置...");
-        System.out.println("配置的JavaFX路径: " + javafxModulePath);
-
-        // 检查配置的路径是否存在
-        File configuredPath = new File(javafxModulePath);
-        if (configuredPath.exists()) {
-            System.out.println("✓ 配置的路径存在: " + javafxModulePath);
+        if (new File(javafxModulePath).exists()) {
+            System.out.println("✓ 配置的JavaFX路径存在: " + javafxModulePath);
             return;
         }
 
-        // 如果配置的路径不存在，尝试其他可能的路径
-        System.out.println("⚠ 配置的路径不存在，尝试其他路径...");
-
-        // 1. 检查是否有Maven路径
-        String mavenPath = System.getProperty("user.home") + "\\.m2\\repository\\org\\openjfx";
-        File mavenDir = new File(mavenPath);
-        if (mavenDir.exists()) {
-            System.out.println("发现Maven仓库路径: " + mavenPath);
-            // 找到最新版本的javafx-controls
-            findLatestJavaFXInMaven(mavenDir);
-        }
-
-        // 2. 检查其他可能的位置
-        String[] possiblePaths = {
-                "C:\\Program Files\\Java\\javafx-sdk-21.0.3\\lib",
-                "C:\\javafx-sdk-21.0.3\\lib",
-                "D:\\javafx-sdk-21.0.3\\lib",
-                System.getProperty("user.home") + "\\Downloads\\javafx-sdk-21.0.3\\lib"
-        };
-
-        for (String path : possiblePaths) {
-            File testPath = new File(path);
-            if (testPath.exists()) {
-                javafxModulePath = path;
-                System.out.println("✓ 找到JavaFX路径: " + javafxModulePath);
-                return;
-            }
-        }
-
-        System.out.println("✗ 未找到有效的JavaFX路径，请确保已安装JavaFX SDK");
-    }
-
-    /**
-     * 在Maven仓库中查找最新的JavaFX
-     */
-    private void findLatestJavaFXInMaven(File mavenDir) {
-        try {
-            // 查找javafx-controls模块
-            File[] modules = mavenDir.listFiles();
-            if (modules != null) {
-                for (File module : modules) {
-                    if (module.isDirectory() && module.getName().startsWith("javafx-")) {
-                        File[] versions = module.listFiles();
-                        if (versions != null && versions.length > 0) {
-                            // 按版本号排序，取最新的
-                            Arrays.sort(versions, (a, b) -> b.getName().compareTo(a.getName()));
-                            File latestVersion = versions[0];
-
-                            // 构建lib路径
-                            File libDir = new File(latestVersion, "lib");
-                            if (libDir.exists()) {
-                                javafxModulePath = libDir.getAbsolutePath();
-                                System.out.println("使用Maven中的JavaFX: " + javafxModulePath);
-                            }
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("查找Maven JavaFX时出错: " + e.getMessage());
+        System.out.println("⚠ 配置的路径不存在: " + javafxModulePath + "，使用环境探测结果...");
+        EnvironmentProbe.Environment env = EnvironmentProbe.getInstance().probe(javafxModulePath);
+        if (env.hasSdk()) {
+            javafxModulePath = env.modulePath;
+            System.out.println("✓ 找到JavaFX路径: " + javafxModulePath);
+        } else {
+            System.out.println("✗ 未找到有效的JavaFX路径，请确保已安装JavaFX SDK");
         }
     }
 
     /**
      * 在独立的进程中运行代码
      */
-    private void runInIsolatedProcess(String code, Runnable onSuccess, Consumer<String> onError) {
+    private void runInIsolatedProcess(String code, Runnable onSuccess, Consumer<String> onError,
+                                      RunHandle handle) {
         Path tempDir = null;
         try {
+            handle.setStatus(RunHandle.Status.COMPILING);
             tempDir = createTempDirectory();
             System.out.println("临时目录: " + tempDir);
             System.out.println("最终使用的JavaFX路径: " + javafxModulePath);
 
             String className = extractClassName(code);
             if (className == null) {
+                handle.setStatus(RunHandle.Status.FAILED);
                 Platform.runLater(() -> onError.accept("无法从代码中提取类名"));
                 return;
             }
@@ -204,18 +196,28 @@ public class CodeRunner {
             Path javaFile = saveJavaFile(tempDir, className, code);
             System.out.println("保存Java文件: " + javaFile);
 
-            CompilationResult compilationResult = compileJavaFile(javaFile, className, tempDir);
+            CompilationResult compilationResult = compileJavaFile(javaFile, className, tempDir, pipelineRun);
+            if (handle.isCancelled()) {
+                return;
+            }
             if (!compilationResult.success) {
+                handle.setStatus(RunHandle.Status.FAILED);
                 Platform.runLater(() -> onError.accept("编译失败:\n" + compilationResult.errorOutput));
                 return;
             }
             System.out.println("编译成功");
 
-            ExecutionResult executionResult = executeJavaClass(tempDir, className);
+            handle.setStatus(RunHandle.Status.RUNNING);
+            ExecutionResult executionResult = executeJavaClass(tempDir, className, handle);
 
+            if (handle.isCancelled()) {
+                return;
+            }
             if (executionResult.success) {
+                handle.setStatus(RunHandle.Status.SUCCEEDED);
                 Platform.runLater(onSuccess);
             } else {
+                handle.setStatus(RunHandle.Status.FAILED);
                 Platform.runLater(() -> {
                     String errorMsg = "运行失败 (退出码: " + executionResult.exitCode + ")";
                     if (executionResult.output != null && !executionResult.output.isEmpty()) {
@@ -229,7 +231,10 @@ public class CodeRunner {
             }
 
         } catch (Exception e) {
-            Platform.runLater(() -> onError.accept("执行过程出错: " + e.getMessage()));
+            handle.setStatus(RunHandle.Status.FAILED);
+            if (!handle.isCancelled()) {
+                Platform.runLater(() -> onError.accept("执行过程出错: " + e.getMessage()));
+            }
             e.printStackTrace();
         } finally {
             if (tempDir != null) {
@@ -239,27 +244,14 @@ public class CodeRunner {
     }
 
     private Path createTempDirectory() throws IOException {
-        Path tempDir = Paths.get(TEMP_DIR + System.currentTimeMillis());
-        Files.createDirectories(tempDir);
-        return tempDir;
+        // 并发运行时时间戳可能相同，由系统生成唯一目录名
+        Path baseDir = Paths.get(TEMP_DIR);
+        Files.createDirectories(baseDir);
+        return Files.createTempDirectory(baseDir, System.currentTimeMillis() + "_");
     }
 
     private String extractClassName(String code) {
-        Pattern pattern = Pattern.compile("public\\s+class\\s+(\\w+)");
-        Matcher matcher = pattern.matcher(code);
-
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-
-        pattern = Pattern.compile("class\\s+(\\w+)");
-        matcher = pattern.matcher(code);
-
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-
-        return null;
+        return RegexPatterns.findClassName(code);
     }
 
     private Path saveJavaFile(Path tempDir, String className, String code) throws IOException {
@@ -268,6 +260,19 @@ public class CodeRunner {
         return javaFile;
     }
 
+    /**
+     * 编译并把耗时记入流水线的编译阶段（run 为 null 时不记录）
+     */
+    private CompilationResult compileJavaFile(Path javaFile, String className, Path outputDir,
+                                              PipelineMetrics.Run run) {
+        if (run == null) {
+            return compileJavaFile(javaFile, className, outputDir);
+        }
+        try (PipelineMetrics.Span ignored = run.span(PipelineMetrics.Phase.COMPILE)) {
+            return compileJavaFile(javaFile, className, outputDir);
+        }
+    }
+
     /**
      * 编译Java文件 - 强制使用我们配置的路径
      */
@@ -281,96 +286,205 @@ public class CodeRunner {
                 return new CompilationResult(false, "", "找不到Java编译器，请确保使用JDK而不是JRE");
             }
 
+            List<String> options = buildCompileOptions(outputDir);
+            if (options == null) {
+                return new CompilationResult(false, "",
+                        "JavaFX路径不存在: " + javafxModulePath +
+                                "\n请检查路径或重新设置JavaFX配置");
+            }
+
             StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
             Iterable<? extends JavaFileObject> compilationUnits =
                     fileManager.getJavaFileObjectsFromFiles(Arrays.asList(javaFile.toFile()));
 
-            List<String> options = new ArrayList<>();
+            System.out.println("编译选项: " + options);
+
+            // 收集结构化诊断信息（行号、列号、位置）
+            DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+            JavaCompiler.CompilationTask task = compiler.getTask(
+                    errorWriter, fileManager, collector, options, null, compilationUnits
+            );
+
+            boolean success = task.call();
+            fileManager.close();
+
+            List<CompileDiagnostic> diagnostics = toCompileDiagnostics(collector);
+            String output = outputWriter.toString();
+            String errorOutput = errorWriter.toString() + formatDiagnostics(diagnostics, !success);
+
+            if (!success) {
+                System.err.println("编译错误: " + errorOutput);
+            }
+
+            return new CompilationResult(success, output, errorOutput, diagnostics);
+
+        } catch (Exception e) {
+            return new CompilationResult(false, "", "编译过程出错: " + e.getMessage() + "\n" + errorWriter.toString());
+        }
+    }
+
+    /**
+     * 构建javac选项 - 强制使用我们配置的JavaFX路径
+     * @param outputDir 类文件输出目录，为空时不生成类文件（仅检查）
+     * @return JavaFX路径不存在时返回null
+     */
+    private List<String> buildCompileOptions(Path outputDir) {
+        List<String> options = new ArrayList<>();
+        if (outputDir != null) {
             options.add("-d");
             options.add(outputDir.toString());
+        }
 
-            String javaVersion = System.getProperty("java.version");
-            int targetVersion = getJavaMajorVersion(javaVersion);
-            targetVersion = Math.min(targetVersion, 21);
-            options.add("-source");
-            options.add(String.valueOf(targetVersion));
-            options.add("-target");
-            options.add(String.valueOf(targetVersion));
-
-            // 构建类路径 - 只使用我们配置的路径
-            StringBuilder classpath = new StringBuilder();
+        String javaVersion = System.getProperty("java.version");
+        int targetVersion = getJavaMajorVersion(javaVersion);
+        targetVersion = Math.min(targetVersion, 21);
+        options.add("-source");
+        options.add(String.valueOf(targetVersion));
+        options.add("-target");
+        options.add(String.valueOf(targetVersion));
+
+        // 构建类路径 - 只使用我们配置的路径
+        StringBuilder classpath = new StringBuilder();
+        if (outputDir != null) {
             classpath.append(outputDir.toString());
             classpath.append(File.pathSeparator);
-            classpath.append(System.getProperty("java.class.path"));
+        }
+        classpath.append(System.getProperty("java.class.path"));
 
-            // 添加我们配置的JavaFX路径
-            File javafxDir = new File(javafxModulePath);
-            if (javafxDir.exists()) {
-                if (javafxDir.isDirectory()) {
-                    // 如果是目录，添加所有jar文件
-                    classpath.append(File.pathSeparator);
-                    classpath.append(javafxModulePath).append(File.separator).append("*");
-                } else if (javafxDir.getName().endsWith(".jar")) {
-                    // 如果是单个jar文件
-                    classpath.append(File.pathSeparator);
-                    classpath.append(javafxModulePath);
-                }
-            } else {
-                return new CompilationResult(false, "",
-                        "JavaFX路径不存在: " + javafxModulePath +
-                                "\n请检查路径或重新设置JavaFX配置");
+        // 添加我们配置的JavaFX路径
+        File javafxDir = new File(javafxModulePath);
+        if (javafxDir.exists()) {
+            if (javafxDir.isDirectory()) {
+                // 如果是目录，添加所有jar文件
+                classpath.append(File.pathSeparator);
+                classpath.append(javafxModulePath).append(File.separator).append("*");
+            } else if (javafxDir.getName().endsWith(".jar")) {
+                // 如果是单个jar文件
+                classpath.append(File.pathSeparator);
+                classpath.append(javafxModulePath);
             }
+        } else {
+            return null;
+        }
 
-            options.add("-cp");
-            options.add(classpath.toString());
+        options.add("-cp");
+        options.add(classpath.toString());
+
+        // 对于Java 9+，添加模块选项
+        if (targetVersion >= 9) {
+            // 构建模块路径
+            String modulePath = javafxModulePath;
+            if (new File(javafxModulePath).isDirectory()) {
+                // 如果是目录，直接使用
+                modulePath = javafxModulePath;
+            } else if (javafxModulePath.endsWith(".jar")) {
+                // 如果是jar文件，使用其父目录
+                modulePath = new File(javafxModulePath).getParent();
+            }
 
-            // 对于Java 9+，添加模块选项
-            if (targetVersion >= 9) {
-                // 构建模块路径
-                String modulePath = javafxModulePath;
-                if (new File(javafxModulePath).isDirectory()) {
-                    // 如果是目录，直接使用
-                    modulePath = javafxModulePath;
-                } else if (javafxModulePath.endsWith(".jar")) {
-                    // 如果是jar文件，使用其父目录
-                    modulePath = new File(javafxModulePath).getParent();
-                }
+            options.add("--module-path");
+            options.add(modulePath);
+            options.add("--add-modules");
+            options.add(additionalModules);
+        }
 
-                options.add("--module-path");
-                options.add(modulePath);
-                options.add("--add-modules");
-                options.add(additionalModules);
+        options.add("-Xlint:unchecked");
+        options.add("-parameters");
+        options.add("-encoding");
+        options.add("UTF-8");
+        return options;
+    }
 
-                System.out.println("编译时模块路径: " + modulePath);
-            }
+    /**
+     * 预热编译器：确定JavaFX路径并做一次最小的检查，让javac的类加载和初始化提前完成
+     */
+    public void warmUp() {
+        ensureJavaFXPath();
+        ImportIndex.preload(javafxModulePath);
+        CheckResult result = checkCode("public class WarmUp {\n}\n");
+        System.out.println("🔥 编译器预热完成: " + result.elapsedMs + "ms");
+    }
 
-            options.add("-Xlint:unchecked");
-            options.add("-parameters");
-            options.add("-encoding");
-            options.add("UTF-8");
+    /**
+     * 快速检查代码：只执行javac的解析和语义分析阶段，不生成类文件
+     * 源码保存在内存中，不写临时目录，适合编辑时频繁调用
+     */
+    public CheckResult checkCode(String code) {
+        long start = System.nanoTime();
+        if (code == null || code.trim().isEmpty()) {
+            return new CheckResult(true, Collections.emptyList(), 0);
+        }
 
-            System.out.println("编译选项: " + options);
-            System.out.println("最终类路径: " + classpath.toString());
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            return CheckResult.failed("找不到Java编译器，请确保使用JDK而不是JRE");
+        }
 
-            JavaCompiler.CompilationTask task = compiler.getTask(
-                    errorWriter, fileManager, null, options, null, compilationUnits
-            );
+        List<String> options = buildCompileOptions(null);
+        if (options == null) {
+            return CheckResult.failed("JavaFX路径不存在: " + javafxModulePath);
+        }
+        options.add("-proc:none");
 
-            boolean success = task.call();
-            fileManager.close();
+        String className = extractClassName(code);
+        JavaFileObject source = new SimpleJavaFileObject(
+                java.net.URI.create("string:///" + (className != null ? className : "Main") + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
 
-            String output = outputWriter.toString();
-            String errorOutput = errorWriter.toString();
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+            com.sun.source.util.JavacTask task = (com.sun.source.util.JavacTask) compiler.getTask(
+                    new StringWriter(), fileManager, collector, options, null, Collections.singletonList(source));
+            // 解析 + 属性分析，跳过字节码生成
+            task.parse();
+            task.analyze();
+        } catch (Exception e) {
+            // 解析阶段的严重错误也通过诊断信息报告
+            System.err.println("代码检查异常: " + e.getMessage());
+        }
 
-            if (!success) {
-                System.err.println("编译错误: " + errorOutput);
+        List<CompileDiagnostic> diagnostics = toCompileDiagnostics(collector);
+        boolean success = true;
+        for (CompileDiagnostic diagnostic : diagnostics) {
+            if (diagnostic.error) {
+                success = false;
+                break;
             }
+        }
+        return new CheckResult(success, diagnostics, (System.nanoTime() - start) / 1_000_000);
+    }
 
-            return new CompilationResult(success, output, errorOutput);
+    private static List<CompileDiagnostic> toCompileDiagnostics(DiagnosticCollector<JavaFileObject> collector) {
+        List<CompileDiagnostic> diagnostics = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : collector.getDiagnostics()) {
+            Diagnostic.Kind kind = diagnostic.getKind();
+            if (kind == Diagnostic.Kind.NOTE || kind == Diagnostic.Kind.OTHER) {
+                continue;
+            }
+            diagnostics.add(new CompileDiagnostic(
+                    kind == Diagnostic.Kind.ERROR,
+                    diagnostic.getLineNumber(),
+                    diagnostic.getColumnNumber(),
+                    diagnostic.getStartPosition(),
+                    diagnostic.getEndPosition(),
+                    diagnostic.getMessage(Locale.getDefault())));
+        }
+        return diagnostics;
+    }
 
-        } catch (Exception e) {
-            return new CompilationResult(false, "", "编译过程出错: " + e.getMessage() + "\n" + errorWriter.toString());
+    private static String formatDiagnostics(List<CompileDiagnostic> diagnostics, boolean errorsOnly) {
+        StringBuilder sb = new StringBuilder();
+        for (CompileDiagnostic diagnostic : diagnostics) {
+            if (!errorsOnly || diagnostic.error) {
+                sb.append(diagnostic).append("\n");
+            }
         }
+        return sb.toString();
     }
 
     private int getJavaMajorVersion(String version) {
@@ -395,7 +509,7 @@ public class CodeRunner {
     /**
      * 执行Java类 - 强制使用我们配置的路径
      */
-    private ExecutionResult executeJavaClass(Path classDir, String className) {
+    private ExecutionResult executeJavaClass(Path classDir, String className, RunHandle handle) {
         Process process = null;
         try {
             List<String> command = new ArrayList<>();
@@ -490,30 +604,22 @@ public class CodeRunner {
             env.remove("JAVAFX_HOME");
 
             process = processBuilder.start();
+            handle.attachProcess(process);
 
-            // 读取输出
-            StringBuilder outputBuilder = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    outputBuilder.append(line).append("\n");
-                    System.out.println("[Process Output] " + line);
-                }
-            }
+            // 在后台线程读取输出，超时控制不依赖输出流是否结束
+            ProcessOutputPump pump = new ProcessOutputPump(process.getInputStream(), outputListener).start();
 
-            boolean finished = process.waitFor(60, TimeUnit.SECONDS);
+            boolean finished = process.waitFor(PROCESS_TIMEOUT_SECONDS, TimeUnit.SECONDS);
             if (!finished) {
-                process.destroy();
-                if (process.waitFor(5, TimeUnit.SECONDS)) {
-                    if (process.isAlive()) {
-                        process.destroyForcibly();
-                    }
-                }
-                return new ExecutionResult(false, "进程执行超时", -1, null);
+                destroyProcessTree(process);
+                pump.awaitCompletion(1000);
+                return new ExecutionResult(false,
+                        "进程执行超时（" + PROCESS_TIMEOUT_SECONDS + "秒）\n" + pump.getOutput(), -1, null);
             }
 
+            pump.awaitCompletion(2000);
             int exitCode = process.exitValue();
-            String output = outputBuilder.toString();
+            String output = pump.getOutput();
 
             return new ExecutionResult(exitCode == 0, output, exitCode, null);
 
@@ -522,8 +628,34 @@ public class CodeRunner {
             e.printStackTrace();
             return new ExecutionResult(false, "执行异常: " + e.getMessage(), -1, e);
         } finally {
-            if (process != null) {
-                process.destroy();
+            if (process != null && process.isAlive()) {
+                destroyProcessTree(process);
+            }
+        }
+    }
+
+    /**
+     * 结束进程及其所有子进程：先正常结束，等待片刻后强制结束
+     */
+    static void destroyProcessTree(Process process) {
+        List<ProcessHandle> descendants = new ArrayList<>();
+        process.descendants().forEach(descendants::add);
+
+        descendants.forEach(ProcessHandle::destroy);
+        process.destroy();
+
+        try {
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+
+        for (ProcessHandle handle : descendants) {
+            if (handle.isAlive()) {
+                handle.destroyForcibly();
             }
         }
     }
@@ -531,14 +663,23 @@ public class CodeRunner {
     /**
      * 直接运行JavaFX代码在当前JVM中 - 用于预览功能
      * 这个方法会尝试在当前JVM中加载并运行代码
+     * 预览在被取消前保持运行状态，取消时关闭舞台和类加载器
      */
-    public void runJavaFXInCurrentVM(String code, Consumer<String> onError) {
+    public RunHandle runJavaFXInCurrentVM(String code, Consumer<String> onError) {
+        // 回调和耗时记录在调用时确定，避免被之后的运行覆盖
+        PipelineMetrics.Run run = pipelineRun;
+        StageCallback callback = stageCallback;
+        RunHandle handle = new RunHandle();
         try {
+            handle.setStatus(RunHandle.Status.COMPILING);
+            ensureJavaFXPath();
+
             // 提取类名
             String className = extractClassName(code);
             if (className == null) {
+                handle.setStatus(RunHandle.Status.FAILED);
                 Platform.runLater(() -> onError.accept("无法从代码中提取类名"));
-                return;
+                return handle;
             }
 
             // 创建临时目录
@@ -549,11 +690,12 @@ public class CodeRunner {
             Path javaFile = saveJavaFile(tempDir, className, code);
 
             // 编译Java文件
-            CompilationResult compilationResult = compileJavaFile(javaFile, className, tempDir);
+            CompilationResult compilationResult = compileJavaFile(javaFile, className, tempDir, run);
             if (!compilationResult.success) {
+                handle.setStatus(RunHandle.Status.FAILED);
                 Platform.runLater(() -> onError.accept("编译失败:\n" + compilationResult.errorOutput));
                 cleanupTempDirectory(tempDir);
-                return;
+                return handle;
             }
 
             // 创建自定义类加载器
@@ -561,11 +703,18 @@ public class CodeRunner {
                     new java.net.URL[]{tempDir.toUri().toURL()},
                     Thread.currentThread().getContextClassLoader()
             );
+            handle.attachClassLoader(classLoader, tempDir);
+            PreviewLeakDetector.getInstance().track(classLoader, className + "@" + tempDir.getFileName());
+            handle.setStatus(RunHandle.Status.RUNNING);
 
             // 加载并运行类
             Platform.runLater(() -> {
                 try {
+                    long loadStart = System.nanoTime();
                     Class<?> clazz = classLoader.loadClass(className);
+                    if (run != null) {
+                        run.recordPhase(PipelineMetrics.Phase.CLASS_LOAD, (System.nanoTime() - loadStart) / 1_000_000);
+                    }
 
                     // 检查是否是Application的子类
                     if (javafx.application.Application.class.isAssignableFrom(clazz)) {
@@ -581,43 +730,59 @@ public class CodeRunner {
 
                                         // 创建自定义Stage来嵌入到我们的界面中
                                         javafx.stage.Stage embeddedStage = new javafx.stage.Stage();
+                                        handle.attachStage(embeddedStage);
+                                        if (handle.isCancelled()) {
+                                            return;
+                                        }
 
                                         // 如果有回调，调用回调
-                                        if (stageCallback != null) {
-                                            stageCallback.onStageCreated(embeddedStage);
+                                        if (callback != null) {
+                                            callback.onStageCreated(embeddedStage);
                                         }
 
                                         // 启动应用（但隐藏主Stage）
+                                        long startNanos = System.nanoTime();
                                         app.start(embeddedStage);
+                                        if (run != null) {
+                                            run.recordPhase(PipelineMetrics.Phase.APP_START,
+                                                    (System.nanoTime() - startNanos) / 1_000_000);
+                                        }
 
                                     } catch (Exception e) {
+                                        handle.setStatus(RunHandle.Status.FAILED);
+                                        handle.release();
                                         onError.accept("启动应用失败: " + e.getMessage());
                                         e.printStackTrace();
                                     }
                                 });
                             } catch (Exception e) {
+                                handle.setStatus(RunHandle.Status.FAILED);
                                 Platform.runLater(() -> onError.accept("运行失败: " + e.getMessage()));
                             }
                         }).start();
                     } else {
+                        handle.setStatus(RunHandle.Status.FAILED);
+                        handle.release();
                         onError.accept("代码不是有效的JavaFX Application类");
                     }
                 } catch (Exception e) {
+                    handle.setStatus(RunHandle.Status.FAILED);
+                    handle.release();
                     onError.accept("加载类失败: " + e.getMessage());
                     e.printStackTrace();
-                } finally {
-                    // 清理临时目录
-                    cleanupTempDirectory(tempDir);
                 }
+                // 临时目录随运行句柄释放时清理，保证内部类可以延迟加载
             });
 
         } catch (Exception e) {
+            handle.setStatus(RunHandle.Status.FAILED);
             Platform.runLater(() -> onError.accept("预览失败: " + e.getMessage()));
             e.printStackTrace();
         }
+        return handle;
     }
 
-    private void cleanupTempDirectory(Path tempDir) {
+    static void cleanupTempDirectory(Path tempDir) {
         try {
             if (Files.exists(tempDir)) {
                 Files.walk(tempDir)
@@ -656,12 +821,175 @@ public class CodeRunner {
         return null;
     }
 
+    /**
+     * 批量编译多个代码版本（例如 generateMultiple 的结果）并排序
+     * 各版本通常使用相同的类名，因此每个版本在独立目录中编译，在共享的运行线程池中并发执行
+     * 会阻塞等待全部版本编译完成，不要在 RUN_EXECUTOR 的线程中调用
+     */
+    public BatchCompileResult compileBatch(List<String> sources) {
+        long batchStart = System.nanoTime();
+        List<VariantResult> results = new ArrayList<>();
+        if (sources == null || sources.isEmpty()) {
+            return new BatchCompileResult(results, 0);
+        }
+
+        List<Future<VariantResult>> futures = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i++) {
+            final int index = i;
+            futures.add(RUN_EXECUTOR.submit(() -> compileVariant(index, sources.get(index))));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                results.add(VariantResult.failed(i, null, "编译过程出错: " + e.getCause().getMessage(), 0));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.get(i).cancel(true);
+                results.add(VariantResult.failed(i, null, "编译被中断", 0));
+            }
+        }
+
+        long totalMs = (System.nanoTime() - batchStart) / 1_000_000;
+        BatchCompileResult batch = new BatchCompileResult(results, totalMs);
+        System.out.println("批量编译完成: " + batch);
+        return batch;
+    }
+
+    /**
+     * 编译单段代码（不运行），返回诊断和耗时
+     */
+    public VariantResult compileCode(String code) {
+        return compileVariant(0, code);
+    }
+
+    private VariantResult compileVariant(int index, String code) {
+        long start = System.nanoTime();
+        String className = code == null ? null : extractClassName(code);
+        if (className == null) {
+            return VariantResult.failed(index, null, "无法从代码中提取类名", 0);
+        }
+
+        Path tempDir = null;
+        try {
+            tempDir = createTempDirectory();
+            Path javaFile = saveJavaFile(tempDir, className, code);
+
+            CompilationResult compilation = compileJavaFile(javaFile, className, tempDir);
+            long compileMs = (System.nanoTime() - start) / 1_000_000;
+
+            int errorCount = 0;
+            int warningCount = 0;
+            for (CompileDiagnostic diagnostic : compilation.diagnostics) {
+                if (diagnostic.error) {
+                    errorCount++;
+                } else {
+                    warningCount++;
+                }
+            }
+            String messages = compilation.diagnostics.isEmpty()
+                    ? compilation.errorOutput : formatDiagnostics(compilation.diagnostics, false);
+
+            return new VariantResult(index, className, compilation.success, errorCount, warningCount,
+                    messages, compileMs);
+        } catch (IOException e) {
+            return VariantResult.failed(index, className, "保存代码失败: " + e.getMessage(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            if (tempDir != null) {
+                cleanupTempDirectory(tempDir);
+            }
+        }
+    }
+
+    /**
+     * 单个版本的编译结果
+     */
+    public static class VariantResult {
+        public final int index;
+        public final String className;
+        public final boolean success;
+        public final int errorCount;
+        public final int warningCount;
+        public final String diagnostics;
+        public final long compileMs;
+
+        VariantResult(int index, String className, boolean success, int errorCount, int warningCount,
+                      String diagnostics, long compileMs) {
+            this.index = index;
+            this.className = className;
+            this.success = success;
+            this.errorCount = errorCount;
+            this.warningCount = warningCount;
+            this.diagnostics = diagnostics;
+            this.compileMs = compileMs;
+        }
+
+        static VariantResult failed(int index, String className, String message, long compileMs) {
+            return new VariantResult(index, className, false, 1, 0, message, compileMs);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("版本%d [%s] %s 错误:%d 警告:%d %dms",
+                    index + 1, className, success ? "✅" : "❌", errorCount, warningCount, compileMs);
+        }
+    }
+
+    /**
+     * 批量编译结果：按输入顺序保存各版本，并可按质量排序
+     */
+    public static class BatchCompileResult {
+        private final List<VariantResult> results;
+        private final long totalMs;
+
+        BatchCompileResult(List<VariantResult> results, long totalMs) {
+            this.results = results;
+            this.totalMs = totalMs;
+        }
+
+        public List<VariantResult> getResults() {
+            return results;
+        }
+
+        public long getTotalMs() {
+            return totalMs;
+        }
+
+        /**
+         * 编译通过的版本，按警告数、编译耗时排序
+         */
+        public List<VariantResult> getRanked() {
+            List<VariantResult> ranked = new ArrayList<>();
+            for (VariantResult result : results) {
+                if (result.success) {
+                    ranked.add(result);
+                }
+            }
+            ranked.sort(Comparator.comparingInt((VariantResult r) -> r.warningCount)
+                    .thenComparingLong(r -> r.compileMs));
+            return ranked;
+        }
+
+        public VariantResult getBest() {
+            List<VariantResult> ranked = getRanked();
+            return ranked.isEmpty() ? null : ranked.get(0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("共 %d 个版本，编译通过 %d 个，总耗时 %dms",
+                    results.size(), getRanked().size(), totalMs);
+        }
+    }
+
     /**
      * 强制设置JavaFX路径
      */
     public void forceSetJavaFXPath(String path) {
         this.javafxModulePath = path;
         System.out.println("强制设置JavaFX路径为: " + path);
+        ImportIndex.preload(path);
     }
 
     /**
@@ -706,6 +1034,69 @@ public class CodeRunner {
         }
     }
 
+    /**
+     * 编译诊断信息：位置为源码中的字符偏移，可直接映射到编辑器
+     */
+    public static class CompileDiagnostic {
+        public final boolean error;
+        public final long line;
+        public final long column;
+        public final long startPosition;
+        public final long endPosition;
+        public final String message;
+
+        CompileDiagnostic(boolean error, long line, long column, long startPosition, long endPosition, String message) {
+            this.error = error;
+            this.line = line;
+            this.column = column;
+            this.startPosition = startPosition;
+            this.endPosition = endPosition;
+            this.message = message;
+        }
+
+        public boolean hasPosition() {
+            return startPosition != Diagnostic.NOPOS;
+        }
+
+        @Override
+        public String toString() {
+            String location = line > 0 ? "第" + line + "行第" + column + "列" : "全局";
+            return (error ? "❌ " : "⚠️ ") + location + ": " + message;
+        }
+    }
+
+    /**
+     * 快速检查结果
+     */
+    public static class CheckResult {
+        public final boolean success;
+        public final List<CompileDiagnostic> diagnostics;
+        public final long elapsedMs;
+
+        CheckResult(boolean success, List<CompileDiagnostic> diagnostics, long elapsedMs) {
+            this.success = success;
+            this.diagnostics = diagnostics;
+            this.elapsedMs = elapsedMs;
+        }
+
+        static CheckResult failed(String message) {
+            return new CheckResult(false, Collections.singletonList(
+                    new CompileDiagnostic(true, 0, 0, Diagnostic.NOPOS, Diagnostic.NOPOS, message)), 0);
+        }
+
+        public int getErrorCount() {
+            int count = 0;
+            for (CompileDiagnostic diagnostic : diagnostics) {
+                if (diagnostic.error) count++;
+            }
+            return count;
+        }
+
+        public int getWarningCount() {
+            return diagnostics.size() - getErrorCount();
+        }
+    }
+
     // 函数式接口定义
     @FunctionalInterface
     public interface Consumer<T> {
@@ -0,0 +1,485 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * JavaFX运行环境探测：统一负责查找JavaFX SDK、JDK版本和可用的JavaFX模块
+ * 自动查找的结果缓存在 ~/.javafx_ai/environment.properties，下次启动时只比较几个目录的修改时间即可复用
+ * 显式配置的路径（javafx.home、JAVAFX_HOME、运行器中配置的路径）有效时直接使用，不走缓存
+ */
+public class EnvironmentProbe {
+
+    private static final Path DATA_DIR = Paths.get(System.getProperty("user.home"), ".javafx_ai");
+    private static final Path CACHE_FILE = DATA_DIR.resolve("environment.properties");
+    private static final Path MAVEN_OPENJFX = Paths.get(System.getProperty("user.home"), ".m2", "repository", "org", "openjfx");
+
+    // Maven仓库中的JavaFX至少要有这几个模块才能运行生成的界面
+    private static final String[] REQUIRED_MODULES = {"base", "graphics", "controls"};
+
+    private static final EnvironmentProbe INSTANCE = new EnvironmentProbe();
+
+    private Environment cached;
+
+    /**
+     * 探测结果
+     */
+    public static class Environment {
+        public String sdkHome;        // SDK根目录（lib的上一级）
+        public String modulePath;     // 包含JavaFX模块jar的目录，没有找到时为 null
+        public String javafxVersion;
+        public String source;         // 结果来源：配置 / SDK / Maven
+        public List<String> modules = new ArrayList<>();
+        public String jdkVersion = System.getProperty("java.version");
+        public String javaHome = System.getProperty("java.home");
+        public boolean onClasspath;
+        public long probedAt = System.currentTimeMillis();
+        public boolean fromCache;
+
+        // 复用缓存前需要核对修改时间的目录
+        final List<String> stampPaths = new ArrayList<>();
+        final List<Long> stampTimes = new ArrayList<>();
+
+        public boolean hasSdk() {
+            return modulePath != null;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("JavaFX %s（%s）: %s, 模块: %s, JDK %s%s",
+                    javafxVersion != null ? javafxVersion : "?", source, modulePath, modules, jdkVersion,
+                    fromCache ? " [缓存]" : "");
+        }
+    }
+
+    private EnvironmentProbe() {
+    }
+
+    public static EnvironmentProbe getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 探测环境；configuredPath 为调用方配置的JavaFX路径（可以为 null）
+     */
+    public synchronized Environment probe(String configuredPath) {
+        long start = System.currentTimeMillis();
+        Environment env = fromExplicitPaths(configuredPath);
+        if (env == null) {
+            env = cachedDiscovery();
+        }
+        if (env == null) {
+            env = discover();
+            if (env.hasSdk()) {
+                cached = env;
+                saveCache(env);
+            }
+        }
+        env.onClasspath = isJavaFXOnClasspath();
+        System.out.println("🔎 JavaFX环境探测: " + (env.hasSdk() ? env.toString() : "未找到SDK")
+                + ", " + (System.currentTimeMillis() - start) + "ms");
+        return env;
+    }
+
+    /**
+     * 忽略缓存重新查找（设置中的"自动检测"）
+     */
+    public synchronized Environment refresh(String configuredPath) {
+        cached = null;
+        try {
+            Files.deleteIfExists(CACHE_FILE);
+        } catch (IOException e) {
+            System.err.println("删除环境缓存失败: " + e.getMessage());
+        }
+        return probe(configuredPath);
+    }
+
+    // ============== 显式配置 ==============
+
+    private Environment fromExplicitPaths(String configuredPath) {
+        String[] explicit = {System.getProperty("javafx.home"), System.getenv("JAVAFX_HOME"), configuredPath};
+        for (String path : explicit) {
+            if (path == null || path.isBlank()) continue;
+            Path libDir = findLibDir(Paths.get(path));
+            if (libDir != null) {
+                return describeLibDir(libDir, "配置");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * SDK根目录或lib目录本身，返回其中包含JavaFX模块jar的目录，都不是时返回 null
+     */
+    public static Path findLibDir(Path path) {
+        if (path == null) return null;
+        if (containsJavaFXJars(path.resolve("lib"))) return path.resolve("lib");
+        if (containsJavaFXJars(path)) return path;
+        return null;
+    }
+
+    public static boolean containsJavaFXJars(Path dir) {
+        if (!Files.isDirectory(dir)) return false;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "javafx*.jar")) {
+            return stream.iterator().hasNext();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static Environment describeLibDir(Path libDir, String source) {
+        Environment env = new Environment();
+        Path absolute = libDir.toAbsolutePath().normalize();
+        env.modulePath = absolute.toString();
+        env.sdkHome = absolute.getFileName().toString().equals("lib") ? absolute.getParent().toString() : env.modulePath;
+        env.source = source;
+        env.modules = listModules(absolute);
+        env.javafxVersion = readVersion(absolute);
+        stamp(env, absolute);
+        return env;
+    }
+
+    /**
+     * lib目录中的模块名：javafx.base.jar 和 javafx-base-21.0.3-linux.jar 都识别为 javafx.base
+     */
+    private static List<String> listModules(Path libDir) {
+        List<String> modules = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(libDir, "javafx*.jar")) {
+            for (Path jar : stream) {
+                String name = jar.getFileName().toString();
+                name = name.substring(0, name.length() - 4);
+                String module = name.startsWith("javafx-") ? "javafx." + name.split("-")[1] : name;
+                if (!modules.contains(module)) {
+                    modules.add(module);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("读取JavaFX模块失败: " + e.getMessage());
+        }
+        modules.sort(null);
+        return modules;
+    }
+
+    /**
+     * SDK的版本：优先读 lib/javafx.properties，其次从目录名或jar文件名中取
+     */
+    private static String readVersion(Path libDir) {
+        Path properties = libDir.resolve("javafx.properties");
+        if (Files.exists(properties)) {
+            Properties props = new Properties();
+            try (InputStream in = Files.newInputStream(properties)) {
+                props.load(in);
+                String version = props.getProperty("javafx.version");
+                if (version != null) return version;
+            } catch (IOException ignored) {
+                // 读不到时继续从名称中取
+            }
+        }
+        String version = versionFromName(libDir.getParent() != null ? libDir.getParent().getFileName().toString() : "");
+        if (version != null) return version;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(libDir, "javafx-*.jar")) {
+            for (Path jar : stream) {
+                String[] parts = jar.getFileName().toString().split("-");
+                if (parts.length >= 3) return parts[2].replace(".jar", "");
+            }
+        } catch (IOException ignored) {
+            // 没有版本信息
+        }
+        return null;
+    }
+
+    private static String versionFromName(String name) {
+        int i = 0;
+        while (i < name.length() && !Character.isDigit(name.charAt(i))) i++;
+        return i < name.length() ? name.substring(i) : null;
+    }
+
+    // ============== 自动查找 ==============
+
+    /**
+     * 查找本机的JavaFX：先找解压的SDK，再找Maven仓库中的JavaFX模块，都取最高版本
+     */
+    private Environment discover() {
+        Environment best = null;
+        String bestVersion = null;
+        for (Path root : sdkSearchRoots()) {
+            for (Path candidate : sdkCandidates(root)) {
+                Path libDir = findLibDir(candidate);
+                if (libDir == null) continue;
+                String version = readVersion(libDir);
+                if (best == null || compareVersions(version, bestVersion) > 0) {
+                    best = describeLibDir(libDir, "SDK");
+                    bestVersion = version;
+                }
+            }
+        }
+        if (best == null) {
+            best = fromMaven();
+        }
+        if (best == null) {
+            return new Environment();
+        }
+        // 之后在搜索位置下新装的SDK会改变该目录的修改时间，使缓存作废并重新查找
+        for (Path root : sdkSearchRoots()) {
+            stamp(best, root);
+        }
+        return best;
+    }
+
+    /**
+     * 各平台常见的SDK安装位置
+     */
+    private static List<Path> sdkSearchRoots() {
+        String home = System.getProperty("user.home");
+        String os = System.getProperty("os.name", "").toLowerCase();
+        List<Path> roots = new ArrayList<>();
+        if (os.contains("win")) {
+            for (String root : new String[]{"C:\\Program Files\\Java", "C:\\Program Files", "C:\\Java", "C:\\", "D:\\"}) {
+                roots.add(Paths.get(root));
+            }
+        } else if (os.contains("mac")) {
+            roots.add(Paths.get("/Library/Java"));
+            roots.add(Paths.get("/opt/homebrew/opt/openjfx/libexec"));
+            roots.add(Paths.get("/usr/local/opt/openjfx/libexec"));
+        } else {
+            roots.add(Paths.get("/usr/share/openjfx"));
+            roots.add(Paths.get("/usr/lib/jvm"));
+            roots.add(Paths.get("/opt"));
+            roots.add(Paths.get("/usr/local"));
+            roots.add(Paths.get(home, ".local", "share"));
+        }
+        roots.add(Paths.get(home, "Downloads"));
+        roots.add(Paths.get(home));
+        return roots;
+    }
+
+    /**
+     * 搜索位置本身以及其中名称以 javafx 开头的子目录
+     */
+    private static List<Path> sdkCandidates(Path root) {
+        List<Path> candidates = new ArrayList<>();
+        if (!Files.isDirectory(root)) return candidates;
+        candidates.add(root);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, "{javafx,openjfx}*")) {
+            for (Path dir : stream) {
+                if (Files.isDirectory(dir)) candidates.add(dir);
+            }
+        } catch (IOException e) {
+            // 没有权限读取的目录直接跳过
+        }
+        return candidates;
+    }
+
+    /**
+     * Maven仓库中的JavaFX模块分散在各自的目录中，把当前平台的jar链接到 ~/.javafx_ai/javafx-sdk-<版本>/lib 下组成SDK
+     */
+    private Environment fromMaven() {
+        if (!Files.isDirectory(MAVEN_OPENJFX)) return null;
+        String classifier = platformClassifier();
+
+        String version = null;
+        Path controls = MAVEN_OPENJFX.resolve("javafx-controls");
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(controls)) {
+            for (Path dir : stream) {
+                String candidate = dir.getFileName().toString();
+                if (hasRequiredModules(candidate, classifier) && compareVersions(candidate, version) > 0) {
+                    version = candidate;
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        if (version == null) return null;
+
+        Path libDir = DATA_DIR.resolve("javafx-sdk-" + version).resolve("lib");
+        try {
+            Files.createDirectories(libDir);
+            try (DirectoryStream<Path> modules = Files.newDirectoryStream(MAVEN_OPENJFX, "javafx-*")) {
+                for (Path moduleDir : modules) {
+                    String jarName = moduleDir.getFileName() + "-" + version + "-" + classifier + ".jar";
+                    Path jar = moduleDir.resolve(version).resolve(jarName);
+                    Path link = libDir.resolve(jarName);
+                    if (Files.exists(jar) && !Files.exists(link)) {
+                        linkOrCopy(jar, link);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("整理Maven中的JavaFX失败: " + e.getMessage());
+            return null;
+        }
+
+        Environment env = describeLibDir(libDir, "Maven");
+        env.javafxVersion = version;
+        // Maven仓库中出现新版本时各模块目录的修改时间会变化
+        try (DirectoryStream<Path> modules = Files.newDirectoryStream(MAVEN_OPENJFX, "javafx-*")) {
+            for (Path moduleDir : modules) {
+                stamp(env, moduleDir);
+            }
+        } catch (IOException ignored) {
+            // 只是少记录几个校验目录
+        }
+        System.out.println("使用Maven中的JavaFX " + version + ": " + libDir);
+        return env;
+    }
+
+    private static boolean hasRequiredModules(String version, String classifier) {
+        for (String module : REQUIRED_MODULES) {
+            String name = "javafx-" + module;
+            if (!Files.exists(MAVEN_OPENJFX.resolve(name).resolve(version).resolve(name + "-" + version + "-" + classifier + ".jar"))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void linkOrCopy(Path jar, Path link) throws IOException {
+        try {
+            Files.createSymbolicLink(link, jar);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Windows 默认没有创建符号链接的权限
+            Files.copy(jar, link);
+        }
+    }
+
+    /**
+     * Maven中JavaFX jar的平台分类名，如 linux、win、mac-aarch64
+     */
+    private static String platformClassifier() {
+        String os = System.getProperty("os.name", "").toLowerCase();
+        String arch = System.getProperty("os.arch", "").toLowerCase();
+        String platform = os.contains("win") ? "win" : os.contains("mac") ? "mac" : "linux";
+        return arch.contains("aarch64") || arch.contains("arm64") ? platform + "-aarch64" : platform;
+    }
+
+    /**
+     * 按数字逐段比较版本号（21.0.10 > 21.0.3），null 最小
+     */
+    static int compareVersions(String a, String b) {
+        if (a == null || b == null) return a == null ? (b == null ? 0 : -1) : 1;
+        String[] pa = a.split("[.\\-+]");
+        String[] pb = b.split("[.\\-+]");
+        for (int i = 0; i < Math.max(pa.length, pb.length); i++) {
+            String x = i < pa.length ? pa[i] : "0";
+            String y = i < pb.length ? pb[i] : "0";
+            boolean nx = x.chars().allMatch(Character::isDigit) && !x.isEmpty();
+            boolean ny = y.chars().allMatch(Character::isDigit) && !y.isEmpty();
+            int c = nx && ny ? Long.compare(Long.parseLong(x), Long.parseLong(y))
+                    : nx != ny ? (nx ? 1 : -1) : x.compareTo(y); // 21.0.3 比 21.0.3-ea 新
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+    private static boolean isJavaFXOnClasspath() {
+        try {
+            Class.forName("javafx.application.Application", false, EnvironmentProbe.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    // ============== 缓存 ==============
+
+    private static void stamp(Environment env, Path dir) {
+        env.stampPaths.add(dir.toString());
+        env.stampTimes.add(lastModified(dir));
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 内存或磁盘中的上次查找结果；JDK变化或任一校验目录的修改时间变化时作废
+     */
+    private Environment cachedDiscovery() {
+        Environment env = cached != null ? cached : loadCache();
+        if (env == null || !isStillValid(env)) {
+            cached = null;
+            return null;
+        }
+        cached = env;
+        env.fromCache = true;
+        return env;
+    }
+
+    private static boolean isStillValid(Environment env) {
+        if (!System.getProperty("java.version").equals(env.jdkVersion)
+                || !System.getProperty("java.home").equals(env.javaHome)
+                || env.modulePath == null || !Files.isDirectory(Paths.get(env.modulePath))) {
+            return false;
+        }
+        for (int i = 0; i < env.stampPaths.size(); i++) {
+            if (lastModified(Paths.get(env.stampPaths.get(i))) != env.stampTimes.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Environment loadCache() {
+        if (!Files.exists(CACHE_FILE)) return null;
+        try {
+            Properties props = new Properties();
+            props.load(new StringReader(Files.readString(CACHE_FILE)));
+            Environment env = new Environment();
+            env.sdkHome = props.getProperty("sdkHome");
+            env.modulePath = props.getProperty("modulePath");
+            env.javafxVersion = props.getProperty("javafxVersion");
+            env.source = props.getProperty("source");
+            env.jdkVersion = props.getProperty("jdkVersion");
+            env.javaHome = props.getProperty("javaHome");
+            env.probedAt = Long.parseLong(props.getProperty("probedAt", "0"));
+            String modules = props.getProperty("modules", "");
+            env.modules = new ArrayList<>(modules.isEmpty() ? List.of() : List.of(modules.split(",")));
+            int stamps = Integer.parseInt(props.getProperty("stamps", "0"));
+            for (int i = 0; i < stamps; i++) {
+                env.stampPaths.add(props.getProperty("stamp." + i + ".path"));
+                env.stampTimes.add(Long.parseLong(props.getProperty("stamp." + i + ".mtime")));
+            }
+            return env;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("读取环境缓存失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void saveCache(Environment env) {
+        Properties props = new Properties();
+        props.setProperty("sdkHome", env.sdkHome);
+        props.setProperty("modulePath", env.modulePath);
+        if (env.javafxVersion != null) props.setProperty("javafxVersion", env.javafxVersion);
+        props.setProperty("source", env.source);
+        props.setProperty("jdkVersion", env.jdkVersion);
+        props.setProperty("javaHome", env.javaHome);
+        props.setProperty("probedAt", String.valueOf(env.probedAt));
+        props.setProperty("modules", String.join(",", env.modules));
+        props.setProperty("stamps", String.valueOf(env.stampPaths.size()));
+        for (int i = 0; i < env.stampPaths.size(); i++) {
+            props.setProperty("stamp." + i + ".path", env.stampPaths.get(i));
+            props.setProperty("stamp." + i + ".mtime", String.valueOf(env.stampTimes.get(i)));
+        }
+        try {
+            StringWriter writer = new StringWriter();
+            props.store(writer, "JavaFX环境探测缓存");
+            AtomicFileWriter.write(CACHE_FILE, writer.toString());
+        } catch (IOException e) {
+            System.err.println("写入环境缓存失败: " + e.getMessage());
+        }
+    }
+}
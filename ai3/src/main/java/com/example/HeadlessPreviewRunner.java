@@ -0,0 +1,250 @@
+package com.example;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.stage.Stage;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 无界面预览运行器：使用 Monocle 的 Headless 平台启动生成的 Application，
+ * 完成布局后截图为PNG，并记录各阶段耗时，用于在没有显示器的构建机上批量验证
+ *
+ * 需要 Monocle 在类路径上（mvn -P headless），
+ * 用法: HeadlessPreviewRunner <java文件或目录> [输出目录] [JavaFX lib目录]
+ */
+public class HeadlessPreviewRunner {
+
+    private static final long RENDER_TIMEOUT_SECONDS = 60;
+
+    private final CodeRunner codeRunner;
+    private final Path outputDir;
+
+    public HeadlessPreviewRunner(CodeRunner codeRunner, Path outputDir) {
+        this.codeRunner = codeRunner;
+        this.outputDir = outputDir;
+    }
+
+    /**
+     * 启用 Monocle Headless 平台，必须在JavaFX工具包初始化之前调用
+     */
+    public static void configureHeadless() {
+        System.setProperty("glass.platform", "Monocle");
+        System.setProperty("monocle.platform", "Headless");
+        System.setProperty("prism.order", "sw");
+        System.setProperty("prism.text", "t2k");
+        System.setProperty("java.awt.headless", "true");
+    }
+
+    /**
+     * 运行一段代码并截图，阻塞直到完成或超时
+     */
+    public RenderResult render(String code, String name) {
+        RenderResult result = new RenderResult(name);
+        PipelineMetrics.Run run = PipelineMetrics.getInstance().startRun("无界面预览");
+        try {
+            renderInto(code, result, run);
+        } finally {
+            run.finish(result.isSuccess());
+        }
+        for (Map.Entry<PipelineMetrics.Phase, Long> entry : run.getDurations().entrySet()) {
+            result.phaseMs.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * 启动预览并等待截图完成，结果写入 result
+     */
+    private void renderInto(String code, RenderResult result, PipelineMetrics.Run run) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+
+        RunHandle handle;
+        synchronized (codeRunner) {
+            codeRunner.setPipelineRun(run);
+            // 回调在 Application.start 之前触发，排队到其后执行即可拿到完整场景
+            codeRunner.setStageCallback(stage -> Platform.runLater(() -> {
+                try {
+                    capture(stage, result, run);
+                } catch (Exception e) {
+                    result.error = "截图失败: " + e.getMessage();
+                } finally {
+                    done.complete(null);
+                }
+            }));
+            handle = codeRunner.runJavaFXInCurrentVM(code, error -> {
+                result.error = error;
+                done.complete(null);
+            });
+        }
+
+        try {
+            done.get(RENDER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            result.error = "等待渲染超时";
+        } finally {
+            // 截图完成后立即释放舞台和类加载器
+            if (!handle.cancel()) {
+                handle.release();
+            }
+        }
+    }
+
+    /**
+     * 对舞台的场景做布局并截图（在JavaFX线程调用）
+     */
+    private void capture(Stage stage, RenderResult result, PipelineMetrics.Run run) throws IOException {
+        Scene scene = stage.getScene();
+        if (scene == null) {
+            result.error = "Application.start 没有设置场景";
+            return;
+        }
+
+        long layoutStart = System.nanoTime();
+        Parent root = scene.getRoot();
+        root.applyCss();
+        root.layout();
+        run.recordPhase(PipelineMetrics.Phase.LAYOUT, (System.nanoTime() - layoutStart) / 1_000_000);
+        result.nodeCount = countNodes(root);
+
+        long snapshotStart = System.nanoTime();
+        WritableImage image = scene.snapshot(null);
+        run.recordPhase(PipelineMetrics.Phase.SNAPSHOT, (System.nanoTime() - snapshotStart) / 1_000_000);
+
+        result.width = (int) image.getWidth();
+        result.height = (int) image.getHeight();
+        result.pngFile = writePng(image, outputDir.resolve(result.name + ".png"));
+    }
+
+    private static int countNodes(Node node) {
+        int count = 1;
+        if (node instanceof Parent) {
+            for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+                count += countNodes(child);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 不依赖 javafx.swing，直接复制像素写入PNG
+     */
+    private static Path writePng(WritableImage image, Path file) throws IOException {
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        int[] pixels = new int[width * height];
+        image.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+
+        BufferedImage buffered = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        buffered.setRGB(0, 0, width, height, pixels, 0, width);
+
+        Files.createDirectories(file.getParent());
+        ImageIO.write(buffered, "png", file.toFile());
+        return file;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("用法: HeadlessPreviewRunner <java文件或目录> [输出目录] [JavaFX lib目录]");
+            System.exit(2);
+        }
+
+        configureHeadless();
+
+        Path input = Paths.get(args[0]);
+        Path outputDir = Paths.get(args.length > 1 ? args[1] : "headless-preview");
+
+        CodeRunner runner = new CodeRunner();
+        if (args.length > 2) {
+            runner.forceSetJavaFXPath(args[2]);
+        }
+
+        List<Path> sources = new ArrayList<>();
+        if (Files.isDirectory(input)) {
+            try (Stream<Path> files = Files.list(input)) {
+                sources.addAll(files.filter(p -> p.toString().endsWith(".java")).sorted().collect(Collectors.toList()));
+            }
+        } else {
+            sources.add(input);
+        }
+
+        Platform.startup(() -> { });
+        Platform.setImplicitExit(false);
+
+        HeadlessPreviewRunner headless = new HeadlessPreviewRunner(runner, outputDir);
+        int failures = 0;
+        for (Path source : sources) {
+            String name = source.getFileName().toString().replaceFirst("\\.java$", "");
+            RenderResult result = headless.render(Files.readString(source), name);
+            System.out.println(result);
+            if (!result.isSuccess()) {
+                failures++;
+            }
+        }
+
+        System.out.println("=== 无界面预览完成 ===");
+        System.out.println("共 " + sources.size() + " 个, 失败: " + failures + ", 截图目录: " + outputDir.toAbsolutePath());
+
+        Platform.exit();
+        System.exit(failures > 0 ? 1 : 0);
+    }
+
+    // ============== 内部类 ==============
+
+    /**
+     * 单次渲染结果
+     */
+    public static class RenderResult {
+        public final String name;
+        public final Map<PipelineMetrics.Phase, Long> phaseMs = new EnumMap<>(PipelineMetrics.Phase.class);
+        public volatile String error;
+        public int width;
+        public int height;
+        public int nodeCount;
+        public Path pngFile;
+
+        RenderResult(String name) {
+            this.name = name;
+        }
+
+        public boolean isSuccess() {
+            return error == null && pngFile != null;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(isSuccess() ? "✅ " : "❌ ").append(name);
+            if (isSuccess()) {
+                sb.append(String.format(" %dx%d 节点:%d", width, height, nodeCount));
+            }
+            for (Map.Entry<PipelineMetrics.Phase, Long> entry : phaseMs.entrySet()) {
+                sb.append(" ").append(entry.getKey()).append(":").append(entry.getValue()).append("ms");
+            }
+            if (error != null) {
+                sb.append(" 错误: ").append(error.split("\n")[0]);
+            }
+            if (pngFile != null) {
+                sb.append(" -> ").append(pngFile.getFileName());
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.example;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 简单类名到完整类名的索引，用于给生成的代码补全确切的import
+ * 扫描 JavaFX lib 目录中的模块jar和JDK的 java.base 模块，只收录公开的顶层类
+ * 索引构建一次后缓存到磁盘，jar 或 JDK 版本变化时自动重建
+ */
+public class ImportIndex {
+
+    private static final String CACHE_DIR = System.getProperty("user.home") + "/.javafx_ai/import-index";
+    private static final int CACHE_VERSION = 1;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_SYNTHETIC = 0x1000;
+    private static final int ACC_MODULE = 0x8000;
+
+    private static final Map<String, ImportIndex> INDEXES = new ConcurrentHashMap<>();
+    private static volatile ImportIndex current;
+
+    // 简单类名 -> 候选完整类名（按优先顺序）
+    private final Map<String, List<String>> classes;
+    // java.lang 中的类不需要import
+    private final Set<String> implicitTypes;
+    // 索引覆盖的包，只有这些包的通配符import可以展开
+    private final Set<String> packages = new HashSet<>();
+
+    private ImportIndex(Map<String, List<String>> classes, Set<String> implicitTypes) {
+        this.classes = classes;
+        this.implicitTypes = implicitTypes;
+        for (List<String> candidates : classes.values()) {
+            for (String fullName : candidates) {
+                packages.add(fullName.substring(0, fullName.lastIndexOf('.')));
+            }
+        }
+    }
+
+    /**
+     * 最近加载的索引，还没有加载完成时返回 null
+     */
+    public static ImportIndex current() {
+        return current;
+    }
+
+    /**
+     * 在后台加载指定JavaFX目录的索引（已加载过则直接返回）
+     */
+    public static void preload(String javafxModulePath) {
+        if (javafxModulePath == null || !Files.isDirectory(Paths.get(javafxModulePath))) {
+            return;
+        }
+        ImportIndex loaded = INDEXES.get(javafxModulePath);
+        if (loaded != null) {
+            current = loaded;
+            return;
+        }
+        Thread thread = new Thread(() -> forJavaFXPath(javafxModulePath), "import-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 获取指定JavaFX目录的索引：内存中没有时读磁盘缓存，缓存失效时重新扫描
+     */
+    public static ImportIndex forJavaFXPath(String javafxModulePath) {
+        ImportIndex index = INDEXES.computeIfAbsent(javafxModulePath, ImportIndex::load);
+        current = index;
+        return index;
+    }
+
+    /**
+     * 简单类名对应的完整类名；java.lang 中的类和未知的类返回 null
+     * 有多个候选的类名（如 Path、Duration）无法只凭类名确定，同样返回 null，不自动补全
+     */
+    public String resolve(String simpleName) {
+        if (implicitTypes.contains(simpleName)) {
+            return null;
+        }
+        List<String> candidates = classes.get(simpleName);
+        return candidates == null || candidates.size() != 1 ? null : candidates.get(0);
+    }
+
+    /**
+     * 该类名是否在指定包中（用于把通配符import展开为确切的import）
+     */
+    public boolean isInPackage(String simpleName, String packageName) {
+        List<String> candidates = classes.get(simpleName);
+        return candidates != null && candidates.contains(packageName + "." + simpleName);
+    }
+
+    /**
+     * 索引是否覆盖该包（覆盖时可以确定包中有哪些类）
+     */
+    public boolean knowsPackage(String packageName) {
+        return packages.contains(packageName);
+    }
+
+    public boolean isImplicit(String simpleName) {
+        return implicitTypes.contains(simpleName);
+    }
+
+    public int size() {
+        return classes.size();
+    }
+
+    // ============== 构建与缓存 ==============
+
+    private static ImportIndex load(String javafxModulePath) {
+        long start = System.currentTimeMillis();
+        List<Path> jars = listJars(javafxModulePath);
+        String fingerprint = fingerprint(jars);
+        Path cacheFile = Paths.get(CACHE_DIR, Integer.toHexString(javafxModulePath.hashCode()) + ".idx");
+
+        ImportIndex cached = readCache(cacheFile, fingerprint);
+        if (cached != null) {
+            System.out.println("📇 已从缓存加载import索引: " + cached.size() + " 个类名, "
+                    + (System.currentTimeMillis() - start) + "ms");
+            return cached;
+        }
+
+        Map<String, List<String>> classes = new HashMap<>();
+        Set<String> implicitTypes = new HashSet<>();
+        for (Path jar : jars) {
+            scanJar(jar, classes);
+        }
+        scanJdk(classes, implicitTypes);
+
+        ImportIndex index = new ImportIndex(classes, implicitTypes);
+        try {
+            writeCache(cacheFile, fingerprint, index);
+        } catch (IOException e) {
+            System.err.println("写入import索引缓存失败: " + e.getMessage());
+        }
+        System.out.println("📇 已构建import索引: " + index.size() + " 个类名, "
+                + (System.currentTimeMillis() - start) + "ms");
+        return index;
+    }
+
+    private static List<Path> listJars(String javafxModulePath) {
+        List<Path> jars = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(javafxModulePath), "*.jar")) {
+            for (Path jar : stream) {
+                jars.add(jar);
+            }
+        } catch (IOException e) {
+            System.err.println("读取JavaFX目录失败: " + e.getMessage());
+        }
+        jars.sort(null);
+        return jars;
+    }
+
+    /**
+     * 缓存指纹：索引格式版本、JDK版本以及各jar的文件名、大小和修改时间
+     */
+    private static String fingerprint(List<Path> jars) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(CACHE_VERSION).append('|').append(System.getProperty("java.version"));
+        for (Path jar : jars) {
+            try {
+                sb.append('|').append(jar.getFileName()).append(':').append(Files.size(jar))
+                        .append(':').append(Files.getLastModifiedTime(jar).toMillis());
+            } catch (IOException e) {
+                sb.append('|').append(jar.getFileName());
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void scanJar(Path jar, Map<String, List<String>> classes) {
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                // 只收录 javafx.* 包；com.sun.* 等包没有导出
+                if (!name.startsWith("javafx/") || !isTopLevelClass(name)) {
+                    continue;
+                }
+                try (InputStream in = zip.getInputStream(entry)) {
+                    if (isPublicClass(in)) {
+                        add(classes, name);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("扫描jar失败: " + jar + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * 扫描 java.base 模块中 java.* 包的公开类
+     */
+    private static void scanJdk(Map<String, List<String>> classes, Set<String> implicitTypes) {
+        try {
+            FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+            Path base = jrt.getPath("/modules/java.base");
+            try (Stream<Path> paths = Files.walk(base)) {
+                for (Path path : (Iterable<Path>) paths::iterator) {
+                    String name = base.relativize(path).toString();
+                    if (!name.startsWith("java/") || !isTopLevelClass(name)) {
+                        continue;
+                    }
+                    try (InputStream in = Files.newInputStream(path)) {
+                        if (!isPublicClass(in)) {
+                            continue;
+                        }
+                    }
+                    String simpleName = name.substring(name.lastIndexOf('/') + 1, name.length() - 6);
+                    if (name.startsWith("java/lang/") && name.indexOf('/', 10) < 0) {
+                        implicitTypes.add(simpleName);
+                    } else {
+                        add(classes, name);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("扫描JDK模块失败: " + e.getMessage());
+        }
+    }
+
+    private static boolean isTopLevelClass(String entryName) {
+        return entryName.endsWith(".class") && entryName.indexOf('$') < 0
+                && !entryName.endsWith("module-info.class") && !entryName.endsWith("package-info.class");
+    }
+
+    private static void add(Map<String, List<String>> classes, String entryName) {
+        String fullName = entryName.substring(0, entryName.length() - 6).replace('/', '.');
+        String simpleName = fullName.substring(fullName.lastIndexOf('.') + 1);
+        List<String> candidates = classes.computeIfAbsent(simpleName, k -> new ArrayList<>(1));
+        if (!candidates.contains(fullName)) {
+            candidates.add(fullName);
+        }
+    }
+
+    /**
+     * 读取class文件头中的访问标志（跳过常量池）
+     */
+    private static boolean isPublicClass(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != 0xCAFEBABE) {
+            return false;
+        }
+        data.readUnsignedShort(); // minor
+        data.readUnsignedShort(); // major
+        int count = data.readUnsignedShort();
+        for (int i = 1; i < count; i++) {
+            int tag = data.readUnsignedByte();
+            switch (tag) {
+                case 1: // Utf8
+                    data.skipNBytes(data.readUnsignedShort());
+                    break;
+                case 3: case 4: // Integer, Float
+                case 9: case 10: case 11: case 12: // Fieldref, Methodref, InterfaceMethodref, NameAndType
+                case 17: case 18: // Dynamic, InvokeDynamic
+                    data.skipNBytes(4);
+                    break;
+                case 5: case 6: // Long, Double 占两个槽位
+                    data.skipNBytes(8);
+                    i++;
+                    break;
+                case 7: case 8: case 16: case 19: case 20: // Class, String, MethodType, Module, Package
+                    data.skipNBytes(2);
+                    break;
+                case 15: // MethodHandle
+                    data.skipNBytes(3);
+                    break;
+                default:
+                    return false;
+            }
+        }
+        int access = data.readUnsignedShort();
+        return (access & ACC_PUBLIC) != 0 && (access & (ACC_SYNTHETIC | ACC_MODULE)) == 0;
+    }
+
+    /**
+     * 缓存格式：首行为指纹，之后每行 简单类名\t候选1,候选2；java.lang 类名以 * 开头
+     */
+    private static void writeCache(Path cacheFile, String fingerprint, ImportIndex index) throws IOException {
+        Files.createDirectories(cacheFile.getParent());
+        StringBuilder sb = new StringBuilder();
+        sb.append(fingerprint).append('\n');
+        for (String implicit : index.implicitTypes) {
+            sb.append('*').append(implicit).append('\n');
+        }
+        for (Map.Entry<String, List<String>> entry : index.classes.entrySet()) {
+            sb.append(entry.getKey()).append('\t').append(String.join(",", entry.getValue())).append('\n');
+        }
+        AtomicFileWriter.write(cacheFile, sb.toString());
+    }
+
+    private static ImportIndex readCache(Path cacheFile, String fingerprint) {
+        if (!Files.exists(cacheFile)) {
+            return null;
+        }
+        try {
+            List<String> lines = Files.readAllLines(cacheFile, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).equals(fingerprint)) {
+                return null;
+            }
+            Map<String, List<String>> classes = new HashMap<>(lines.size() * 2);
+            Set<String> implicitTypes = new HashSet<>();
+            for (int i = 1; i < lines.size(); i++) {
+                String line = lines.get(i);
+                if (line.startsWith("*")) {
+                    implicitTypes.add(line.substring(1));
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    classes.put(line.substring(0, tab), List.of(line.substring(tab + 1).split(",")));
+                }
+            }
+            return new ImportIndex(classes, implicitTypes);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 本地意图路由：用关键词打分识别天气、新闻、时间、打开应用四类工具请求
+ * 识别有把握（得分够高、明显领先其他意图、参数齐全）时直接生成工具调用JSON，不再请求模型；其余消息仍交给模型判断
+ */
+public class IntentRouter {
+
+    // 最高得分达到这个值才认为有把握
+    private static final double MIN_SCORE = 1.0;
+    // 最高得分至少领先第二名这么多
+    private static final double MIN_MARGIN = 0.5;
+    // 超过这个长度的消息通常不是简单的工具请求
+    private static final int MAX_MESSAGE_LENGTH = 30;
+
+    // 出现这些词时更像是在讨论话题本身，而不是要调用工具
+    private static final String[] DISCUSSION_WORDS = {
+            "为什么", "原理", "代码", "程序", "写一", "翻译", "英文", "接口", "api", "怎么做", "如何实现", "是什么意思"
+    };
+
+    private static final Keyword[] WEATHER_KEYWORDS = {
+            new Keyword("天气", 1.0), new Keyword("气温", 1.0), new Keyword("温度", 0.6),
+            new Keyword("下雨", 0.6), new Keyword("下雪", 0.6), new Keyword("冷不冷", 0.6), new Keyword("热不热", 0.6),
+            new Keyword("weather", 1.0)
+    };
+    private static final Keyword[] NEWS_KEYWORDS = {
+            new Keyword("新闻", 1.0), new Keyword("头条", 1.0), new Keyword("资讯", 0.8), new Keyword("热点", 0.6),
+            new Keyword("news", 1.0)
+    };
+    private static final Keyword[] TIME_KEYWORDS = {
+            new Keyword("几点", 1.0), new Keyword("现在时间", 1.0), new Keyword("当前时间", 1.0),
+            new Keyword("几号", 1.0), new Keyword("星期几", 1.0), new Keyword("日期", 0.6), new Keyword("时间", 0.5),
+            new Keyword("what time", 1.0)
+    };
+    // 这些词里虽然有"时间"，但问的不是当前时间
+    private static final String[] TIME_EXCLUDES = {"多长时间", "时间复杂度", "时区", "多久", "时间管理"};
+
+    private static final Pattern OPEN_VERB = Pattern.compile("^(?:请|帮我|麻烦)?(?:打开|启动|运行|开一下)|^open\\s");
+
+    // 本地能识别的城市：直辖市、省会和常见的大城市；其他城市交给模型
+    private static final String[] KNOWN_CITIES = {
+            "北京", "上海", "天津", "重庆", "香港", "澳门", "台北",
+            "石家庄", "太原", "呼和浩特", "沈阳", "长春", "哈尔滨", "南京", "杭州", "合肥", "福州", "南昌", "济南",
+            "郑州", "武汉", "长沙", "广州", "南宁", "海口", "成都", "贵阳", "昆明", "拉萨", "西安", "兰州", "西宁",
+            "银川", "乌鲁木齐",
+            "深圳", "苏州", "无锡", "常州", "宁波", "温州", "绍兴", "嘉兴", "金华", "台州", "厦门", "泉州", "青岛",
+            "烟台", "潍坊", "大连", "东莞", "佛山", "珠海", "中山", "惠州", "汕头", "洛阳", "徐州", "南通", "扬州",
+            "唐山", "保定", "邯郸", "桂林", "三亚", "宜昌", "襄阳", "岳阳", "株洲", "绵阳", "遵义", "大理", "丽江"
+    };
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private static class Keyword {
+        final String text;
+        final double weight;
+
+        Keyword(String text, double weight) {
+            this.text = text;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * 路由结果：工具名、参数和得分
+     */
+    public static class Route {
+        public final String tool;
+        public final Map<String, String> arguments = new LinkedHashMap<>();
+        public final double score;
+
+        Route(String tool, double score) {
+            this.tool = tool;
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return tool + arguments + String.format(" (得分 %.1f)", score);
+        }
+    }
+
+    /**
+     * 识别消息的意图；没有把握时返回 null，由模型处理
+     */
+    public Route route(String message) {
+        if (message == null) return null;
+        String text = message.trim().toLowerCase(Locale.ROOT);
+        if (text.isEmpty() || text.length() > MAX_MESSAGE_LENGTH) return null;
+        for (String word : DISCUSSION_WORDS) {
+            if (text.contains(word)) return null;
+        }
+
+        double weather = score(text, WEATHER_KEYWORDS);
+        double news = score(text, NEWS_KEYWORDS);
+        double time = scoreTime(text);
+        double openApp = OPEN_VERB.matcher(text).find() && appName(text) != null ? 1.5 : 0;
+
+        String best = "weather";
+        double bestScore = weather;
+        double second = 0;
+        String[] tools = {"news", "time", "open_app"};
+        double[] scores = {news, time, openApp};
+        for (int i = 0; i < tools.length; i++) {
+            if (scores[i] > bestScore) {
+                second = bestScore;
+                best = tools[i];
+                bestScore = scores[i];
+            } else {
+                second = Math.max(second, scores[i]);
+            }
+        }
+        if (bestScore < MIN_SCORE || bestScore - second < MIN_MARGIN) {
+            return null;
+        }
+
+        Route route = new Route(best, bestScore);
+        switch (best) {
+            case "weather":
+                String city = extractCity(text);
+                if (city == null) return null;
+                route.arguments.put("city", city);
+                break;
+            case "news":
+                route.arguments.put("category", newsCategory(text));
+                break;
+            case "open_app":
+                route.arguments.put("app", appName(text));
+                break;
+            default:
+                break;
+        }
+        return route;
+    }
+
+    /**
+     * 生成与模型输出格式相同的工具调用JSON
+     */
+    public String toJson(Route route) {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("tool", route.tool);
+        route.arguments.forEach(node::put);
+        return node.toString();
+    }
+
+    private static double score(String text, Keyword[] keywords) {
+        double score = 0;
+        for (Keyword keyword : keywords) {
+            if (text.contains(keyword.text)) {
+                score += keyword.weight;
+            }
+        }
+        return score;
+    }
+
+    private static double scoreTime(String text) {
+        for (String exclude : TIME_EXCLUDES) {
+            if (text.contains(exclude)) return 0;
+        }
+        return score(text, TIME_KEYWORDS);
+    }
+
+    /**
+     * 消息中提到的已知城市；没有或提到多个城市时返回 null，交给模型处理
+     */
+    private static String extractCity(String text) {
+        String found = null;
+        for (String city : KNOWN_CITIES) {
+            if (text.contains(city)) {
+                if (found != null) return null;
+                found = city;
+            }
+        }
+        return found;
+    }
+
+    private static String newsCategory(String text) {
+        if (text.contains("科技")) return "technology";
+        if (text.contains("体育")) return "sports";
+        if (text.contains("财经") || text.contains("经济")) return "business";
+        if (text.contains("娱乐")) return "entertainment";
+        if (text.contains("健康")) return "health";
+        if (text.contains("科学")) return "science";
+        return "general";
+    }
+
+    private static String appName(String text) {
+        if (text.contains("网易云") || text.contains("cloudmusic") || text.contains("netease")) return "netease_music";
+        if (text.contains("浏览器") || text.contains("browser") || text.contains("chrome")) return "browser";
+        if (text.contains("记事本") || text.contains("notepad")) return "notepad";
+        return null;
+    }
+}
@@ -0,0 +1,414 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Java源码的轻量结构解析：package、import、顶层类及其成员（字段、方法、构造函数、内部类）的位置
+ * 扫描时跳过字符串、字符字面量、文本块和注释，成员位置可直接用于按成员编辑源码
+ */
+public class JavaStructure {
+
+    private static final Pattern PACKAGE_PATTERN = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+    private static final Pattern IMPORT_PATTERN = Pattern.compile("^\\s*import\\s+(static\\s+)?([\\w.*]+)\\s*;", Pattern.MULTILINE);
+    private static final Pattern TYPE_PATTERN = Pattern.compile("\\b(class|interface|enum|record)\\s+(\\w+)");
+
+    /**
+     * 成员类型
+     */
+    public enum MemberKind {
+        FIELD, METHOD, CONSTRUCTOR, TYPE, INITIALIZER
+    }
+
+    /**
+     * 类成员：位置为源码中的字符偏移，end 不包含
+     */
+    public static class Member {
+        public MemberKind kind;
+        public String name;
+        public String header;     // 声明部分（到 { 或 ; 为止），空白已压缩
+        public String parameters; // 方法参数类型列表，逗号分隔
+        public int start;
+        public int end;
+        public int bodyStart = -1; // { 之后的位置
+        public int bodyEnd = -1;   // 匹配的 } 的位置
+
+        /**
+         * 成员标识：方法按名称和参数类型区分重载，其他成员按名称
+         */
+        public String key() {
+            if (kind == MemberKind.METHOD || kind == MemberKind.CONSTRUCTOR) {
+                return name + "(" + parameters + ")";
+            }
+            return kind == MemberKind.INITIALIZER ? "<init>@" + start : name;
+        }
+
+        public String text(String source) {
+            return source.substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + key();
+        }
+    }
+
+    public final String source;
+    public String packageName;
+    public final List<String> imports = new ArrayList<>();
+    public int importsEnd;           // 最后一个import（或package）语句之后的位置
+    public String className;
+    public String classHeader;
+    public int classBodyStart = -1;  // 类体 { 之后的位置
+    public int classBodyEnd = -1;    // 类体结束 } 的位置
+    public final List<Member> members = new ArrayList<>();
+
+    private JavaStructure(String source) {
+        this.source = source;
+    }
+
+    public static JavaStructure parse(String source) {
+        JavaStructure structure = new JavaStructure(source);
+        structure.parseHeader();
+        structure.parseClass();
+        return structure;
+    }
+
+    public boolean isValid() {
+        return classBodyStart >= 0 && classBodyEnd >= classBodyStart;
+    }
+
+    public Member findMember(String key) {
+        for (Member member : members) {
+            if (member.key().equals(key)) {
+                return member;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按名称查找方法；有重载时 parameters 为空则返回第一个
+     */
+    public Member findMethod(String name, String parameters) {
+        for (Member member : members) {
+            if ((member.kind == MemberKind.METHOD || member.kind == MemberKind.CONSTRUCTOR)
+                    && member.name.equals(name)
+                    && (parameters == null || member.parameters.equals(normalizeParameters(parameters)))) {
+                return member;
+            }
+        }
+        return null;
+    }
+
+    public List<Member> getMembers(MemberKind kind) {
+        List<Member> result = new ArrayList<>();
+        for (Member member : members) {
+            if (member.kind == kind) {
+                result.add(member);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 成员使用的缩进（取第一个成员所在行的缩进，默认4个空格）
+     */
+    public String memberIndent() {
+        if (members.isEmpty()) {
+            return "    ";
+        }
+        int lineStart = source.lastIndexOf('\n', members.get(0).start) + 1;
+        String indent = source.substring(lineStart, members.get(0).start);
+        return !indent.isEmpty() && indent.isBlank() ? indent : "    ";
+    }
+
+    public int lineOf(int offset) {
+        int line = 1;
+        for (int i = 0; i < offset && i < source.length(); i++) {
+            if (source.charAt(i) == '\n') line++;
+        }
+        return line;
+    }
+
+    // ============== 解析 ==============
+
+    private void parseHeader() {
+        Matcher packageMatcher = PACKAGE_PATTERN.matcher(source);
+        if (packageMatcher.find()) {
+            packageName = packageMatcher.group(1);
+            importsEnd = packageMatcher.end();
+        }
+
+        Matcher importMatcher = IMPORT_PATTERN.matcher(source);
+        while (importMatcher.find()) {
+            imports.add((importMatcher.group(1) != null ? "static " : "") + importMatcher.group(2));
+            importsEnd = importMatcher.end();
+        }
+    }
+
+    private void parseClass() {
+        int i = importsEnd;
+        int n = source.length();
+        StringBuilder header = new StringBuilder();
+        while (i < n) {
+            int skipped = skipNonCode(i);
+            if (skipped != i) {
+                i = skipped;
+                header.append(' ');
+                continue;
+            }
+            char c = source.charAt(i);
+            if (c == '{') {
+                Matcher matcher = TYPE_PATTERN.matcher(header);
+                if (matcher.find()) {
+                    className = matcher.group(2);
+                    classHeader = compact(header.toString());
+                    classBodyStart = i + 1;
+                    classBodyEnd = findBlockEnd(i);
+                    break;
+                }
+                header.setLength(0);
+            } else if (c == ';') {
+                header.setLength(0);
+            } else {
+                header.append(c);
+            }
+            i++;
+        }
+
+        if (isValid()) {
+            parseMembers();
+        }
+    }
+
+    private void parseMembers() {
+        int i = classBodyStart;
+        int declStart = -1;
+        StringBuilder header = new StringBuilder();
+        int parenDepth = 0;
+
+        while (i < classBodyEnd) {
+            int skipped = skipNonCode(i);
+            if (skipped != i) {
+                if (declStart >= 0) header.append(' ');
+                i = skipped;
+                continue;
+            }
+            char c = source.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (declStart >= 0) header.append(' ');
+                i++;
+                continue;
+            }
+            if (declStart < 0) {
+                declStart = i;
+            }
+
+            if (c == '(') {
+                parenDepth++;
+            } else if (c == ')') {
+                parenDepth--;
+            }
+
+            if (c == '{' && parenDepth == 0 && !isFieldInitializer(header)) {
+                int blockEnd = findBlockEnd(i);
+                Member member = createMember(header.toString(), declStart, blockEnd + 1);
+                member.bodyStart = i + 1;
+                member.bodyEnd = blockEnd;
+                members.add(member);
+                i = blockEnd + 1;
+                declStart = -1;
+                header.setLength(0);
+                continue;
+            }
+            if (c == '{') {
+                // 字段初始化中的数组、lambda或匿名类，整体归入字段声明
+                int blockEnd = findBlockEnd(i);
+                header.append(source, i, blockEnd + 1);
+                i = blockEnd + 1;
+                continue;
+            }
+            if (c == ';' && parenDepth == 0) {
+                if (header.toString().trim().isEmpty()) {
+                    declStart = -1;
+                    i++;
+                    continue;
+                }
+                members.add(createMember(header.toString(), declStart, i + 1));
+                declStart = -1;
+                header.setLength(0);
+                i++;
+                continue;
+            }
+            header.append(c);
+            i++;
+        }
+    }
+
+    private boolean isFieldInitializer(StringBuilder header) {
+        return stripAnnotations(header.toString()).contains("=");
+    }
+
+    private Member createMember(String rawHeader, int start, int end) {
+        Member member = new Member();
+        member.header = compact(stripAnnotations(rawHeader));
+        member.start = start;
+        member.end = end;
+
+        String h = member.header;
+        Matcher typeMatcher = TYPE_PATTERN.matcher(h);
+        int paren = h.indexOf('(');
+        int assign = h.indexOf('=');
+
+        if (h.isEmpty() || h.equals("static")) {
+            member.kind = MemberKind.INITIALIZER;
+            member.name = "<init>";
+        } else if (typeMatcher.find() && (paren < 0 || typeMatcher.start() < paren)) {
+            member.kind = MemberKind.TYPE;
+            member.name = typeMatcher.group(2);
+        } else if (paren >= 0 && (assign < 0 || paren < assign)) {
+            String beforeParen = compact(h.substring(0, paren));
+            member.name = beforeParen.substring(beforeParen.lastIndexOf(' ') + 1);
+            member.kind = member.name.equals(className) ? MemberKind.CONSTRUCTOR : MemberKind.METHOD;
+            int close = matchingParen(h, paren);
+            member.parameters = normalizeParameters(h.substring(paren + 1, close > paren ? close : h.length()));
+        } else {
+            member.kind = MemberKind.FIELD;
+            String declaration = assign >= 0 ? h.substring(0, assign) : h;
+            // 多变量声明只取第一个变量名
+            int comma = declaration.indexOf(',');
+            if (comma >= 0) {
+                declaration = declaration.substring(0, comma);
+            }
+            // 去掉数组方括号后取最后一个词
+            declaration = compact(declaration.replace('[', ' ').replace(']', ' '));
+            member.name = declaration.substring(declaration.lastIndexOf(' ') + 1);
+        }
+        return member;
+    }
+
+    private static int matchingParen(String text, int open) {
+        int depth = 0;
+        for (int i = open; i < text.length(); i++) {
+            if (text.charAt(i) == '(') depth++;
+            else if (text.charAt(i) == ')' && --depth == 0) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 参数列表只保留类型：去掉参数名、final 和注解，泛型中的逗号不拆分
+     */
+    static String normalizeParameters(String parameters) {
+        List<String> types = new ArrayList<>();
+        int depth = 0;
+        StringBuilder current = new StringBuilder();
+        for (char c : parameters.toCharArray()) {
+            if (c == '<') depth++;
+            if (c == '>') depth--;
+            if (c == ',' && depth == 0) {
+                addParameterType(types, current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        addParameterType(types, current.toString());
+        return String.join(",", types);
+    }
+
+    private static void addParameterType(List<String> types, String parameter) {
+        String p = compact(stripAnnotations(parameter)).replace("final ", "").trim();
+        if (p.isEmpty()) return;
+        int lastSpace = p.lastIndexOf(' ');
+        String type = lastSpace > 0 ? p.substring(0, lastSpace) : p;
+        types.add(type.replace(" ", ""));
+    }
+
+    private static String stripAnnotations(String text) {
+        if (text.indexOf('@') < 0) {
+            return text;
+        }
+        return RegexPatterns.ANNOTATION.matcher(text).replaceAll(" ");
+    }
+
+    private static String compact(String text) {
+        return RegexPatterns.collapseWhitespace(text);
+    }
+
+    /**
+     * 跳过注释、字符串和字符字面量；当前位置不是这些内容时原样返回
+     */
+    private int skipNonCode(int i) {
+        int n = source.length();
+        char c = source.charAt(i);
+        if (c == '/' && i + 1 < n) {
+            char next = source.charAt(i + 1);
+            if (next == '/') {
+                int end = source.indexOf('\n', i);
+                return end < 0 ? n : end + 1;
+            }
+            if (next == '*') {
+                int end = source.indexOf("*/", i + 2);
+                return end < 0 ? n : end + 2;
+            }
+        }
+        if (c == '"') {
+            if (source.startsWith("\"\"\"", i)) {
+                int end = source.indexOf("\"\"\"", i + 3);
+                return end < 0 ? n : end + 3;
+            }
+            return skipQuoted(i, '"');
+        }
+        if (c == '\'') {
+            return skipQuoted(i, '\'');
+        }
+        return i;
+    }
+
+    private int skipQuoted(int i, char quote) {
+        int n = source.length();
+        int j = i + 1;
+        while (j < n) {
+            char c = source.charAt(j);
+            if (c == '\\') {
+                j += 2;
+                continue;
+            }
+            if (c == quote || c == '\n') {
+                return j + 1;
+            }
+            j++;
+        }
+        return n;
+    }
+
+    /**
+     * 找到与 open 位置的 { 匹配的 }
+     */
+    private int findBlockEnd(int open) {
+        int depth = 0;
+        int i = open;
+        int n = source.length();
+        while (i < n) {
+            int skipped = skipNonCode(i);
+            if (skipped != i) {
+                i = skipped;
+                continue;
+            }
+            char c = source.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                if (--depth == 0) {
+                    return i;
+                }
+            }
+            i++;
+        }
+        return n - 1;
+    }
+}
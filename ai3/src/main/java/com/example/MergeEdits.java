@@ -0,0 +1,404 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * AI辅助合并的编辑操作协议
+ * 只把目标文件的类骨架（方法签名，正文省略）和生成的代码发给AI，AI返回JSON编辑操作，在本地按成员应用，
+ * 避免整文件往返：提示词和回复都只和改动量相关，而不是和目标文件大小相关
+ */
+public class MergeEdits {
+
+    /**
+     * 编辑操作格式说明（作为系统提示词）
+     */
+    static final String SYSTEM_PROMPT =
+            "你是一个Java代码合并助手。你只输出JSON编辑操作，不输出完整代码，也不做任何解释。\n" +
+                    "输出格式：{\"edits\": [操作, ...]}，可用的操作：\n" +
+                    "{\"op\":\"copy_member\",\"name\":\"成员名\",\"params\":\"参数类型，可省略\"} 把生成代码中的方法或字段原样复制到目标类（同名同参数则覆盖）\n" +
+                    "{\"op\":\"add_member\",\"code\":\"完整的方法或字段声明\"} 向目标类添加新成员（同名同参数则覆盖）\n" +
+                    "{\"op\":\"replace_method\",\"name\":\"方法名\",\"params\":\"参数类型，可省略\",\"code\":\"完整的新方法\"} 替换目标类中已有的方法\n" +
+                    "{\"op\":\"insert_into_method\",\"name\":\"方法名\",\"position\":\"start或end\",\"code\":\"语句\"} 在目标方法体开头或结尾插入语句\n" +
+                    "{\"op\":\"delete_member\",\"name\":\"成员名\",\"params\":\"参数类型，可省略\"} 删除目标类中的成员\n" +
+                    "{\"op\":\"add_import\",\"value\":\"完整类名\"} 添加import（生成代码中的import会自动合并，一般不需要）\n" +
+                    "规则：\n" +
+                    "1. 目标类中未列出正文的方法保持不变，不要复述它们\n" +
+                    "2. 能用 copy_member 的地方不要重复写代码\n" +
+                    "3. 不要使用markdown代码块标记";
+
+    // 发送方法正文时的最大行数，超过则只发送签名
+    private static final int MAX_BODY_LINES = 80;
+    // 骨架中字段声明的最大长度
+    private static final int MAX_FIELD_LENGTH = 120;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 单个编辑操作
+     */
+    public static class Edit {
+        public String op;
+        public String name;
+        public String params;
+        public String code;
+        public String position;
+        public String value;
+
+        @Override
+        public String toString() {
+            return op + (name != null ? " " + name : "") + (value != null ? " " + value : "");
+        }
+    }
+
+    /**
+     * 应用结果
+     */
+    public static class ApplyResult {
+        public String code;
+        public int applied;
+        public List<String> log = new ArrayList<>();
+    }
+
+    /**
+     * 构建合并提示词：目标文件只发送骨架，两边都有的方法（通常是start）附带正文
+     */
+    public static String buildPrompt(String targetContent, String generatedCode) {
+        JavaStructure target = JavaStructure.parse(targetContent);
+        JavaStructure generated = JavaStructure.parse(generatedCode);
+
+        Set<String> sharedMethods = new HashSet<>();
+        for (JavaStructure.Member member : generated.getMembers(JavaStructure.MemberKind.METHOD)) {
+            if (target.findMethod(member.name, null) != null) {
+                sharedMethods.add(member.name);
+            }
+        }
+
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("请把生成的JavaFX UI代码合并到目标类中。\n");
+        prompt.append("1. 保持目标类的包名、类名和已有逻辑\n");
+        prompt.append("2. 两边都有start方法时，把生成的界面合并到目标的start方法中\n");
+        prompt.append("3. 两边都有main方法时，保留目标类的main方法\n\n");
+
+        prompt.append("## 目标类骨架（共 ").append(target.lineOf(targetContent.length()))
+                .append(" 行，{ ... } 表示省略的方法体）\n");
+        prompt.append(skeleton(target, sharedMethods)).append("\n\n");
+
+        prompt.append("## 生成的代码\n").append(generatedCode.trim()).append("\n\n");
+        prompt.append("只输出 {\"edits\": [...]} JSON。");
+        return prompt.toString();
+    }
+
+    /**
+     * 类骨架：package、import、字段声明和方法签名；bodyNames 中的方法保留正文
+     */
+    static String skeleton(JavaStructure structure, Set<String> bodyNames) {
+        String source = structure.source;
+        StringBuilder sb = new StringBuilder();
+        if (structure.packageName != null) {
+            sb.append("package ").append(structure.packageName).append(";\n");
+        }
+        for (String imp : structure.imports) {
+            sb.append("import ").append(imp).append(";\n");
+        }
+        sb.append(structure.classHeader).append(" {\n");
+
+        for (JavaStructure.Member member : structure.members) {
+            switch (member.kind) {
+                case FIELD:
+                    String field = RegexPatterns.collapseWhitespace(member.text(source));
+                    if (field.length() > MAX_FIELD_LENGTH) {
+                        // 初始化中带匿名类或lambda的长字段只保留声明
+                        int assign = field.indexOf('=');
+                        field = (assign > 0 ? field.substring(0, assign).trim() + " = ..." : member.header) + ";";
+                    }
+                    sb.append("    ").append(field).append("\n");
+                    break;
+                case METHOD:
+                case CONSTRUCTOR:
+                    int bodyLines = structure.lineOf(member.bodyEnd) - structure.lineOf(member.bodyStart) + 1;
+                    if (bodyNames.contains(member.name) && bodyLines <= MAX_BODY_LINES) {
+                        sb.append("    ").append(member.text(source).trim()).append("\n");
+                    } else {
+                        sb.append("    ").append(member.header).append(" { ... }  // ")
+                                .append(bodyLines).append(" 行\n");
+                    }
+                    break;
+                case TYPE:
+                    sb.append("    ").append(member.header).append(" { ... }\n");
+                    break;
+                default:
+                    break;
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+
+    /**
+     * 解析AI回复中的编辑操作，兼容 {"edits":[...]} 和直接返回数组两种形式
+     */
+    public static List<Edit> parse(String response) throws IOException {
+        if (response == null) {
+            throw new IOException("AI回复为空");
+        }
+        String text = RegexPatterns.stripFences(response);
+        int objectStart = text.indexOf('{');
+        int arrayStart = text.indexOf('[');
+        int start = objectStart < 0 ? arrayStart : (arrayStart < 0 ? objectStart : Math.min(objectStart, arrayStart));
+        if (start < 0) {
+            throw new IOException("AI回复中没有编辑操作");
+        }
+
+        JsonNode root = MAPPER.readTree(text.substring(start));
+        JsonNode editsNode = root.isArray() ? root : root.get("edits");
+        if (editsNode == null || !editsNode.isArray()) {
+            throw new IOException("AI回复缺少 edits 数组");
+        }
+
+        List<Edit> edits = new ArrayList<>();
+        for (JsonNode node : editsNode) {
+            Edit edit = new Edit();
+            edit.op = text(node, "op");
+            edit.name = text(node, "name");
+            edit.params = text(node, "params");
+            edit.code = text(node, "code");
+            edit.position = text(node, "position");
+            edit.value = text(node, "value");
+            if (edit.op == null) {
+                throw new IOException("编辑操作缺少 op: " + node);
+            }
+            edits.add(edit);
+        }
+        return edits;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    /**
+     * 在本地依次应用编辑操作；任何一个操作无法定位都抛出异常，由调用方降级
+     */
+    public static ApplyResult apply(String targetContent, String generatedCode, List<Edit> edits) {
+        JavaStructure generated = JavaStructure.parse(generatedCode);
+        String code = targetContent;
+        if (!JavaStructure.parse(code).isValid()) {
+            throw new IllegalArgumentException("无法解析目标类结构");
+        }
+
+        ApplyResult result = new ApplyResult();
+
+        // 生成代码的import先合并，copy_member 复制的代码通常依赖它们
+        for (String imp : generated.imports) {
+            code = addImport(code, imp);
+        }
+
+        for (Edit edit : edits) {
+            JavaStructure target = JavaStructure.parse(code);
+            switch (edit.op) {
+                case "add_import":
+                    code = addImport(code, require(edit.value, edit, "value"));
+                    break;
+                case "copy_member": {
+                    JavaStructure.Member source = findMember(generated, require(edit.name, edit, "name"), edit.params);
+                    if (source == null) {
+                        throw new IllegalArgumentException("生成代码中没有成员: " + edit.name);
+                    }
+                    code = putMember(target, source.text(generatedCode));
+                    break;
+                }
+                case "add_member":
+                    code = putMember(target, require(edit.code, edit, "code"));
+                    break;
+                case "replace_method": {
+                    JavaStructure.Member member = requireMember(target, edit);
+                    code = replaceRange(code, member.start, member.end,
+                            reindent(require(edit.code, edit, "code"), indentAt(code, member.start)).trim());
+                    break;
+                }
+                case "insert_into_method": {
+                    JavaStructure.Member member = requireMember(target, edit);
+                    if (member.bodyStart < 0) {
+                        throw new IllegalArgumentException("成员没有方法体: " + edit.name);
+                    }
+                    String indent = indentAt(code, member.start);
+                    String statements = reindent(require(edit.code, edit, "code"), indent + "    ");
+                    if ("start".equalsIgnoreCase(edit.position)) {
+                        code = replaceRange(code, member.bodyStart, member.bodyStart, "\n" + statements);
+                    } else {
+                        int insertAt = code.lastIndexOf('\n', member.bodyEnd - 1);
+                        insertAt = insertAt < member.bodyStart ? member.bodyEnd : insertAt + 1;
+                        code = replaceRange(code, insertAt, insertAt, statements + "\n");
+                    }
+                    break;
+                }
+                case "delete_member": {
+                    JavaStructure.Member member = requireMember(target, edit);
+                    int lineStart = code.lastIndexOf('\n', member.start - 1) + 1;
+                    int lineEnd = code.indexOf('\n', member.end);
+                    code = replaceRange(code, lineStart, lineEnd < 0 ? member.end : lineEnd + 1, "");
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("未知的编辑操作: " + edit.op);
+            }
+            result.applied++;
+            result.log.add(edit.toString());
+        }
+
+        JavaStructure merged = JavaStructure.parse(code);
+        if (!merged.isValid()) {
+            throw new IllegalArgumentException("应用编辑操作后类结构不完整");
+        }
+        result.code = code;
+        return result;
+    }
+
+    private static String require(String value, Edit edit, String field) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("编辑操作 " + edit.op + " 缺少 " + field);
+        }
+        return value;
+    }
+
+    private static JavaStructure.Member requireMember(JavaStructure target, Edit edit) {
+        JavaStructure.Member member = findMember(target, require(edit.name, edit, "name"), edit.params);
+        if (member == null) {
+            throw new IllegalArgumentException("目标类中没有成员: " + edit.name);
+        }
+        return member;
+    }
+
+    private static JavaStructure.Member findMember(JavaStructure structure, String name, String params) {
+        JavaStructure.Member method = structure.findMethod(name, params == null || params.isBlank() ? null : params);
+        return method != null ? method : structure.findMember(name);
+    }
+
+    /**
+     * 添加或覆盖成员：字段放在最后一个字段之后，其他成员放在类末尾
+     */
+    private static String putMember(JavaStructure target, String memberCode) {
+        String code = target.source;
+        JavaStructure.Member parsed = parseMember(memberCode);
+        String indent = target.memberIndent();
+        String text = reindent(memberCode, indent);
+
+        JavaStructure.Member existing = parsed != null ? target.findMember(parsed.key()) : null;
+        if (existing != null) {
+            return replaceRange(code, existing.start, existing.end, text.trim());
+        }
+
+        if (parsed != null && parsed.kind == JavaStructure.MemberKind.FIELD) {
+            List<JavaStructure.Member> fields = target.getMembers(JavaStructure.MemberKind.FIELD);
+            int insertAt = target.classBodyStart;
+            if (!fields.isEmpty()) {
+                // 放在最后一个字段所在行的行尾，跳过行尾注释
+                int lineEnd = code.indexOf('\n', fields.get(fields.size() - 1).end);
+                insertAt = lineEnd < 0 || lineEnd > target.classBodyEnd ? fields.get(fields.size() - 1).end : lineEnd;
+            }
+            return replaceRange(code, insertAt, insertAt, "\n" + text);
+        }
+
+        int insertAt = code.lastIndexOf('\n', target.classBodyEnd - 1);
+        insertAt = insertAt < target.classBodyStart ? target.classBodyEnd : insertAt + 1;
+        return replaceRange(code, insertAt, insertAt, "\n" + text + "\n");
+    }
+
+    /**
+     * 把单个成员包进临时类中解析，得到它的类型和标识
+     */
+    private static JavaStructure.Member parseMember(String memberCode) {
+        JavaStructure wrapper = JavaStructure.parse("class MergeEditsProbe {\n" + memberCode + "\n}");
+        return wrapper.members.isEmpty() ? null : wrapper.members.get(0);
+    }
+
+    private static String addImport(String code, String imp) {
+        String normalized = imp.trim();
+        if (normalized.startsWith("import") && normalized.length() > 6 && Character.isWhitespace(normalized.charAt(6))) {
+            normalized = normalized.substring(6).trim();
+        }
+        if (normalized.endsWith(";")) {
+            normalized = normalized.substring(0, normalized.length() - 1).trim();
+        }
+        JavaStructure structure = JavaStructure.parse(code);
+        if (structure.imports.contains(normalized)) {
+            return code;
+        }
+        // 同名类已经导入时不再添加，避免冲突
+        String simpleName = normalized.substring(normalized.lastIndexOf('.') + 1);
+        if (!simpleName.equals("*")) {
+            for (String existing : structure.imports) {
+                if (existing.endsWith("." + simpleName)) {
+                    return code;
+                }
+            }
+        }
+        String line = "import " + normalized + ";";
+        if (structure.importsEnd == 0) {
+            return line + "\n" + code;
+        }
+        return replaceRange(code, structure.importsEnd, structure.importsEnd, "\n" + line);
+    }
+
+    private static String replaceRange(String code, int start, int end, String replacement) {
+        return code.substring(0, start) + replacement + code.substring(end);
+    }
+
+    private static String indentAt(String code, int offset) {
+        int lineStart = code.lastIndexOf('\n', offset - 1) + 1;
+        String indent = code.substring(lineStart, offset);
+        return indent.isBlank() ? indent : "";
+    }
+
+    /**
+     * 去掉代码块的公共缩进后统一加上新的缩进
+     */
+    static String reindent(String block, String indent) {
+        String[] lines = block.replace("\r\n", "\n").strip().split("\n", -1);
+        int common = Integer.MAX_VALUE;
+        // 第一行通常已被 strip 去掉了缩进，不参与计算
+        for (int i = 1; i < lines.length; i++) {
+            if (lines[i].isBlank()) continue;
+            int leading = lines[i].length() - lines[i].stripLeading().length();
+            common = Math.min(common, leading);
+        }
+        if (common == Integer.MAX_VALUE) common = 0;
+
+        // 续行比声明行多一级缩进时，保持这一级
+        boolean firstLineOpensBlock = lines[0].trim().endsWith("{");
+        if (firstLineOpensBlock && lines.length > 1 && common > 0) {
+            int closing = lastNonBlankIndent(lines);
+            common = Math.min(common, closing);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            if (line.isBlank()) {
+                sb.append("\n");
+                continue;
+            }
+            String body = i == 0 ? line.trim() : line.substring(Math.min(common, line.length() - line.stripLeading().length()));
+            sb.append(indent).append(body);
+            if (i < lines.length - 1) sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    private static int lastNonBlankIndent(String[] lines) {
+        for (int i = lines.length - 1; i > 0; i--) {
+            if (!lines[i].isBlank()) {
+                return lines[i].length() - lines[i].stripLeading().length();
+            }
+        }
+        return 0;
+    }
+}
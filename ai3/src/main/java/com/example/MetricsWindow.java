@@ -0,0 +1,155 @@
+package com.example;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.layout.*;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 流水线耗时面板：显示最近N次运行和各阶段直方图汇总
+ */
+public class MetricsWindow {
+
+    private static final int RECENT_RUN_LIMIT = 20;
+
+    private Stage stage;
+    private TextArea summaryArea;
+    private ListView<String> runList;
+    private Label statusLabel;
+
+    public void show() {
+        stage = new Stage();
+        stage.setTitle("流水线耗时统计");
+
+        BorderPane mainLayout = new BorderPane();
+        mainLayout.setPadding(new Insets(10));
+
+        mainLayout.setTop(createTopPanel());
+        mainLayout.setCenter(createCenterPanel());
+        mainLayout.setBottom(createBottomPanel());
+
+        refresh();
+
+        Scene scene = new Scene(mainLayout, 900, 600);
+        stage.setScene(scene);
+        stage.show();
+    }
+
+    private VBox createTopPanel() {
+        VBox topPanel = new VBox(10);
+        topPanel.setPadding(new Insets(10));
+        topPanel.setStyle("-fx-background-color: #34495e;");
+
+        Label titleLabel = new Label("📈 生成 → 编译 → 预览 耗时统计");
+        titleLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold; -fx-text-fill: white;");
+
+        Label infoLabel = new Label("各阶段：AI生成、代码清理、编译、类加载、Application.start、预览嵌入、布局、截图");
+        infoLabel.setStyle("-fx-text-fill: #bdc3c7;");
+
+        topPanel.getChildren().addAll(titleLabel, infoLabel);
+        return topPanel;
+    }
+
+    private VBox createCenterPanel() {
+        VBox centerPanel = new VBox(10);
+        centerPanel.setPadding(new Insets(10));
+
+        Label summaryLabel = new Label("📊 阶段汇总:");
+        summaryLabel.setStyle("-fx-font-weight: bold;");
+
+        summaryArea = new TextArea();
+        summaryArea.setEditable(false);
+        summaryArea.setPrefHeight(180);
+        summaryArea.setStyle("-fx-font-family: 'Consolas', 'Monospaced'; -fx-font-size: 12px;");
+
+        Label runsLabel = new Label("🕒 最近 " + RECENT_RUN_LIMIT + " 次运行:");
+        runsLabel.setStyle("-fx-font-weight: bold;");
+
+        runList = new ListView<>();
+        runList.setStyle("-fx-font-family: 'Consolas', 'Monospaced'; -fx-font-size: 12px;");
+        VBox.setVgrow(runList, Priority.ALWAYS);
+
+        centerPanel.getChildren().addAll(summaryLabel, summaryArea, runsLabel, runList);
+        return centerPanel;
+    }
+
+    private VBox createBottomPanel() {
+        VBox bottomPanel = new VBox(10);
+        bottomPanel.setPadding(new Insets(10));
+
+        HBox controlBox = new HBox(15);
+        controlBox.setAlignment(Pos.CENTER);
+
+        Button refreshButton = new Button("🔄 刷新");
+        refreshButton.setStyle("-fx-background-color: #3498db; -fx-text-fill: white;");
+        refreshButton.setOnAction(e -> refresh());
+
+        Button exportButton = new Button("💾 导出 JSON/Prometheus");
+        exportButton.setStyle("-fx-background-color: #2ecc71; -fx-text-fill: white;");
+        exportButton.setOnAction(e -> export());
+
+        Button resetButton = new Button("🗑️ 重置");
+        resetButton.setStyle("-fx-background-color: #e74c3c; -fx-text-fill: white;");
+        resetButton.setOnAction(e -> {
+            PipelineMetrics.getInstance().reset();
+            refresh();
+        });
+
+        Button leakCheckButton = new Button("🧹 类加载器检测");
+        leakCheckButton.setStyle("-fx-background-color: #9b59b6; -fx-text-fill: white;");
+        leakCheckButton.setOnAction(e -> checkLeaks());
+
+        Button closeButton = new Button("❌ 关闭");
+        closeButton.setStyle("-fx-background-color: #7f8c8d; -fx-text-fill: white;");
+        closeButton.setOnAction(e -> stage.close());
+
+        controlBox.getChildren().addAll(refreshButton, exportButton, resetButton, leakCheckButton, closeButton);
+
+        statusLabel = new Label("");
+        statusLabel.setStyle("-fx-text-fill: #7f8c8d; -fx-font-size: 12px;");
+
+        bottomPanel.getChildren().addAll(controlBox, statusLabel);
+        return bottomPanel;
+    }
+
+    private void refresh() {
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        summaryArea.setText(metrics.getSummaryText() + "\n" + TokenAccounting.getInstance().getSummaryText());
+
+        List<PipelineMetrics.Run> runs = metrics.getRecentRuns(RECENT_RUN_LIMIT);
+        runList.getItems().clear();
+        for (PipelineMetrics.Run run : runs) {
+            runList.getItems().add(run.toString());
+        }
+        if (runs.isEmpty()) {
+            runList.getItems().add("暂无运行记录");
+        }
+    }
+
+    /**
+     * 在后台触发GC并检查已关闭预览的类加载器是否被卸载
+     */
+    private void checkLeaks() {
+        statusLabel.setText("正在检测类加载器...");
+        new Thread(() -> {
+            PreviewLeakDetector.Report report = PreviewLeakDetector.getInstance().check(3);
+            Platform.runLater(() -> statusLabel.setText((report.hasLeaks() ? "⚠️ " : "✅ ") + report));
+        }).start();
+    }
+
+    private void export() {
+        try {
+            Path dir = PipelineMetrics.getInstance().exportToDisk();
+            statusLabel.setText("✅ 已导出到: " + dir);
+        } catch (IOException e) {
+            statusLabel.setText("❌ 导出失败: " + e.getMessage());
+        }
+    }
+}
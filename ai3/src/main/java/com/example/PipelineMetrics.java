@@ -0,0 +1,410 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * 生成→编译→预览流水线的耗时统计
+ * 每次运行记录各阶段耗时（span），并按阶段汇总为直方图
+ */
+public class PipelineMetrics {
+
+    // 保留最近的运行记录数
+    private static final int MAX_RECENT_RUNS = 50;
+
+    // 直方图桶上界（毫秒），最后隐含 +Inf
+    private static final long[] BUCKET_BOUNDS_MS = {
+            5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000
+    };
+
+    private static final String EXPORT_DIR = System.getProperty("user.home") + "/.javafx_ai/metrics";
+
+    // 必须在桶上界之后初始化，构造函数会用到 BUCKET_BOUNDS_MS
+    private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+
+    /**
+     * 流水线阶段
+     */
+    public enum Phase {
+        AI_GENERATE("ai_generate", "AI生成"),
+        CLEAN_CODE("clean_code", "代码清理"),
+        AI_REPAIR("ai_repair", "AI修复"),
+        COMPILE("compile", "编译"),
+        CLASS_LOAD("class_load", "类加载"),
+        APP_START("app_start", "Application.start"),
+        STAGE_CALLBACK("stage_callback", "预览嵌入"),
+        LAYOUT("layout", "布局"),
+        SNAPSHOT("snapshot", "截图");
+
+        private final String metricName;
+        private final String description;
+
+        Phase(String metricName, String description) {
+            this.metricName = metricName;
+            this.description = description;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    private final Map<Phase, Histogram> histograms = new EnumMap<>(Phase.class);
+    private final Deque<Run> recentRuns = new ArrayDeque<>();
+    // AI请求在调度器中的排队等待时间，按请求类别
+    private final Map<AIRequestScheduler.Priority, Histogram> queueWaits = new EnumMap<>(AIRequestScheduler.Priority.class);
+
+    private PipelineMetrics() {
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new Histogram());
+        }
+        for (AIRequestScheduler.Priority priority : AIRequestScheduler.Priority.values()) {
+            queueWaits.put(priority, new Histogram());
+        }
+    }
+
+    public static PipelineMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 开始一次新的流水线运行
+     */
+    public Run startRun(String label) {
+        Run run = new Run(label);
+        synchronized (this) {
+            recentRuns.addFirst(run);
+            while (recentRuns.size() > MAX_RECENT_RUNS) {
+                recentRuns.removeLast();
+            }
+        }
+        return run;
+    }
+
+    /**
+     * 最近的运行记录（最新的在前）
+     */
+    public synchronized List<Run> getRecentRuns(int limit) {
+        List<Run> result = new ArrayList<>();
+        for (Run run : recentRuns) {
+            if (result.size() >= limit) break;
+            result.add(run);
+        }
+        return result;
+    }
+
+    public synchronized void reset() {
+        recentRuns.clear();
+        for (Histogram histogram : histograms.values()) {
+            histogram.clear();
+        }
+        for (Histogram histogram : queueWaits.values()) {
+            histogram.clear();
+        }
+    }
+
+    private synchronized void record(Phase phase, long durationMs) {
+        histograms.get(phase).observe(durationMs);
+    }
+
+    /**
+     * 记录一次AI请求的排队等待时间
+     */
+    public synchronized void recordQueueWait(AIRequestScheduler.Priority priority, long waitedMs) {
+        queueWaits.get(priority).observe(waitedMs);
+    }
+
+    /**
+     * 各阶段汇总文本（用于面板显示）
+     */
+    public synchronized String getSummaryText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-18s %8s %10s %10s %10s%n", "阶段", "次数", "平均(ms)", "P95(ms)", "最大(ms)"));
+        for (Phase phase : Phase.values()) {
+            Histogram h = histograms.get(phase);
+            sb.append(String.format("%-18s %8d %10.1f %10s %10d%n",
+                    phase.toString(), h.count, h.mean(), formatBound(h.percentileBound(0.95)), h.max));
+        }
+        sb.append(String.format("%n%-18s %8s %10s %10s %10s%n", "AI请求排队", "次数", "平均(ms)", "P95(ms)", "最大(ms)"));
+        for (AIRequestScheduler.Priority priority : AIRequestScheduler.Priority.values()) {
+            Histogram h = queueWaits.get(priority);
+            sb.append(String.format("%-18s %8d %10.1f %10s %10d%n",
+                    priority.toString(), h.count, h.mean(), formatBound(h.percentileBound(0.95)), h.max));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 导出为JSON
+     */
+    public synchronized String toJson() {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode root = mapper.createObjectNode();
+        root.put("exportedAt", Instant.now().toString());
+
+        ObjectNode phases = root.putObject("phases");
+        for (Phase phase : Phase.values()) {
+            Histogram h = histograms.get(phase);
+            ObjectNode node = phases.putObject(phase.getMetricName());
+            node.put("count", h.count);
+            node.put("sumMs", h.sum);
+            node.put("maxMs", h.max);
+            ObjectNode buckets = node.putObject("buckets");
+            long cumulative = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+                cumulative += h.buckets[i];
+                buckets.put(String.valueOf(BUCKET_BOUNDS_MS[i]), cumulative);
+            }
+            buckets.put("+Inf", h.count);
+        }
+
+        ObjectNode waits = root.putObject("queueWaits");
+        for (AIRequestScheduler.Priority priority : AIRequestScheduler.Priority.values()) {
+            Histogram h = queueWaits.get(priority);
+            ObjectNode node = waits.putObject(priority.getMetricName());
+            node.put("count", h.count);
+            node.put("sumMs", h.sum);
+            node.put("maxMs", h.max);
+        }
+
+        ArrayNode runs = root.putArray("recentRuns");
+        for (Run run : recentRuns) {
+            ObjectNode node = runs.addObject();
+            node.put("label", run.label);
+            node.put("startedAt", run.startedAt.toString());
+            node.put("finished", run.finished);
+            node.put("success", run.success);
+            node.put("totalMs", run.getTotalMs());
+            ObjectNode spans = node.putObject("spansMs");
+            for (Map.Entry<Phase, Long> entry : run.getDurations().entrySet()) {
+                spans.put(entry.getKey().getMetricName(), entry.getValue());
+            }
+        }
+
+        try {
+            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(root);
+        } catch (IOException e) {
+            return "{}";
+        }
+    }
+
+    /**
+     * 导出为Prometheus文本格式
+     */
+    public synchronized String toPrometheusText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# HELP javafx_ai_pipeline_phase_ms Duration of each pipeline phase in milliseconds\n");
+        sb.append("# TYPE javafx_ai_pipeline_phase_ms histogram\n");
+        for (Phase phase : Phase.values()) {
+            Histogram h = histograms.get(phase);
+            String name = phase.getMetricName();
+            long cumulative = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+                cumulative += h.buckets[i];
+                sb.append("javafx_ai_pipeline_phase_ms_bucket{phase=\"").append(name)
+                        .append("\",le=\"").append(BUCKET_BOUNDS_MS[i]).append("\"} ").append(cumulative).append("\n");
+            }
+            sb.append("javafx_ai_pipeline_phase_ms_bucket{phase=\"").append(name)
+                    .append("\",le=\"+Inf\"} ").append(h.count).append("\n");
+            sb.append("javafx_ai_pipeline_phase_ms_sum{phase=\"").append(name).append("\"} ").append(h.sum).append("\n");
+            sb.append("javafx_ai_pipeline_phase_ms_count{phase=\"").append(name).append("\"} ").append(h.count).append("\n");
+        }
+        sb.append("# HELP javafx_ai_request_queue_wait_ms Time AI requests waited in the scheduler queue in milliseconds\n");
+        sb.append("# TYPE javafx_ai_request_queue_wait_ms histogram\n");
+        for (AIRequestScheduler.Priority priority : AIRequestScheduler.Priority.values()) {
+            Histogram h = queueWaits.get(priority);
+            String name = priority.getMetricName();
+            long cumulative = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+                cumulative += h.buckets[i];
+                sb.append("javafx_ai_request_queue_wait_ms_bucket{class=\"").append(name)
+                        .append("\",le=\"").append(BUCKET_BOUNDS_MS[i]).append("\"} ").append(cumulative).append("\n");
+            }
+            sb.append("javafx_ai_request_queue_wait_ms_bucket{class=\"").append(name)
+                    .append("\",le=\"+Inf\"} ").append(h.count).append("\n");
+            sb.append("javafx_ai_request_queue_wait_ms_sum{class=\"").append(name).append("\"} ").append(h.sum).append("\n");
+            sb.append("javafx_ai_request_queue_wait_ms_count{class=\"").append(name).append("\"} ").append(h.count).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 将JSON和Prometheus文本写入本地导出目录
+     * @return 导出目录
+     */
+    public Path exportToDisk() throws IOException {
+        Path dir = Paths.get(EXPORT_DIR);
+        Files.createDirectories(dir);
+
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        Files.writeString(dir.resolve("pipeline_" + timestamp + ".json"), toJson());
+        Files.writeString(dir.resolve("pipeline_" + timestamp + ".prom"), toPrometheusText());
+
+        System.out.println("流水线指标已导出: " + dir);
+        return dir;
+    }
+
+    private static String formatBound(long bound) {
+        return bound < 0 ? "+Inf" : "≤" + bound;
+    }
+
+    // ============== 内部类 ==============
+
+    /**
+     * 固定桶直方图
+     */
+    private static class Histogram {
+        final long[] buckets = new long[BUCKET_BOUNDS_MS.length + 1];
+        long count;
+        long sum;
+        long max;
+
+        void observe(long valueMs) {
+            int i = 0;
+            while (i < BUCKET_BOUNDS_MS.length && valueMs > BUCKET_BOUNDS_MS[i]) {
+                i++;
+            }
+            buckets[i]++;
+            count++;
+            sum += valueMs;
+            max = Math.max(max, valueMs);
+        }
+
+        double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * 返回包含给定分位数的桶上界，落在 +Inf 桶时返回 -1
+         */
+        long percentileBound(double quantile) {
+            if (count == 0) return 0;
+            long target = (long) Math.ceil(count * quantile);
+            long cumulative = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+                cumulative += buckets[i];
+                if (cumulative >= target) {
+                    return BUCKET_BOUNDS_MS[i];
+                }
+            }
+            return -1;
+        }
+
+        void clear() {
+            Arrays.fill(buckets, 0);
+            count = 0;
+            sum = 0;
+            max = 0;
+        }
+    }
+
+    /**
+     * 一次流水线运行
+     */
+    public class Run {
+        private final String label;
+        private final Instant startedAt = Instant.now();
+        private final long startNanos = System.nanoTime();
+        private final Map<Phase, Long> durations = new EnumMap<>(Phase.class);
+        private volatile boolean finished;
+        private volatile boolean success;
+        private volatile long totalMs = -1;
+
+        private Run(String label) {
+            this.label = label;
+        }
+
+        /**
+         * 开始一个阶段计时，关闭时记录
+         */
+        public Span span(Phase phase) {
+            return new Span(this, phase);
+        }
+
+        /**
+         * 直接记录一个阶段耗时
+         */
+        public void recordPhase(Phase phase, long durationMs) {
+            synchronized (durations) {
+                durations.merge(phase, durationMs, Long::sum);
+            }
+            record(phase, durationMs);
+        }
+
+        public void finish(boolean success) {
+            if (finished) return;
+            this.success = success;
+            this.totalMs = (System.nanoTime() - startNanos) / 1_000_000;
+            this.finished = true;
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public Map<Phase, Long> getDurations() {
+            synchronized (durations) {
+                return new EnumMap<>(durations);
+            }
+        }
+
+        public long getTotalMs() {
+            return finished ? totalMs : (System.nanoTime() - startNanos) / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(startedAt.atZone(java.time.ZoneId.systemDefault())
+                    .format(DateTimeFormatter.ofPattern("HH:mm:ss")));
+            sb.append(" [").append(label).append("] ");
+            sb.append(finished ? (success ? "✅" : "❌") : "⏳");
+            sb.append(" 总计 ").append(getTotalMs()).append("ms");
+            for (Map.Entry<Phase, Long> entry : getDurations().entrySet()) {
+                sb.append(" | ").append(entry.getKey()).append(" ").append(entry.getValue()).append("ms");
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 阶段计时，配合 try-with-resources 使用
+     */
+    public static class Span implements AutoCloseable {
+        private final Run run;
+        private final Phase phase;
+        private final long startNanos = System.nanoTime();
+        private boolean closed;
+
+        private Span(Run run, Phase phase) {
+            this.run = run;
+            this.phase = phase;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            run.recordPhase(phase, (System.nanoTime() - startNanos) / 1_000_000);
+        }
+    }
+}
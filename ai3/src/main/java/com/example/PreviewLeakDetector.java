@@ -0,0 +1,127 @@
+package com.example;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 预览类加载器泄漏检测
+ * 通过弱引用跟踪每个预览的类加载器，释放后若多次GC仍可达则视为疑似泄漏
+ */
+public class PreviewLeakDetector {
+
+    private static final PreviewLeakDetector INSTANCE = new PreviewLeakDetector();
+
+    private final List<TrackedLoader> tracked = new ArrayList<>();
+
+    private PreviewLeakDetector() {
+    }
+
+    public static PreviewLeakDetector getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 开始跟踪一个预览类加载器
+     */
+    public synchronized void track(ClassLoader loader, String label) {
+        tracked.add(new TrackedLoader(loader, label));
+    }
+
+    /**
+     * 标记类加载器已释放（会话关闭后调用）
+     */
+    public synchronized void markReleased(ClassLoader loader) {
+        for (TrackedLoader entry : tracked) {
+            if (entry.reference.get() == loader) {
+                entry.releasedAt = System.currentTimeMillis();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 执行检测：多次触发GC后统计已释放但仍可达的类加载器
+     * @param gcRounds GC轮数
+     */
+    public Report check(int gcRounds) {
+        for (int i = 0; i < gcRounds; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        Report report = new Report();
+        synchronized (this) {
+            Iterator<TrackedLoader> iterator = tracked.iterator();
+            while (iterator.hasNext()) {
+                TrackedLoader entry = iterator.next();
+                if (entry.reference.get() == null) {
+                    report.unloaded++;
+                    iterator.remove();
+                } else if (entry.releasedAt > 0) {
+                    report.suspectedLeaks.add(entry.label);
+                } else {
+                    report.active++;
+                }
+            }
+        }
+        report.metaspaceUsedBytes = getMetaspaceUsed();
+        report.loadedClassCount = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+        report.unloadedClassCount = ManagementFactory.getClassLoadingMXBean().getUnloadedClassCount();
+        return report;
+    }
+
+    private static long getMetaspaceUsed() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ("Metaspace".equals(pool.getName())) {
+                return pool.getUsage().getUsed();
+            }
+        }
+        return -1;
+    }
+
+    // ============== 内部类 ==============
+
+    private static class TrackedLoader {
+        final WeakReference<ClassLoader> reference;
+        final String label;
+        volatile long releasedAt;
+
+        TrackedLoader(ClassLoader loader, String label) {
+            this.reference = new WeakReference<>(loader);
+            this.label = label;
+        }
+    }
+
+    /**
+     * 检测结果
+     */
+    public static class Report {
+        public int unloaded;
+        public int active;
+        public List<String> suspectedLeaks = new ArrayList<>();
+        public long metaspaceUsedBytes;
+        public int loadedClassCount;
+        public long unloadedClassCount;
+
+        public boolean hasLeaks() {
+            return !suspectedLeaks.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("已卸载: %d, 使用中: %d, 疑似泄漏: %d%s, Metaspace: %.1f MB, 已加载类: %d, 累计卸载类: %d",
+                    unloaded, active, suspectedLeaks.size(),
+                    suspectedLeaks.isEmpty() ? "" : " " + suspectedLeaks,
+                    metaspaceUsedBytes / 1024.0 / 1024.0, loadedClassCount, unloadedClassCount);
+        }
+    }
+}
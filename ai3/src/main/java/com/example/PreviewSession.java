@@ -0,0 +1,108 @@
+package com.example;
+
+import javafx.scene.Node;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+
+/**
+ * 一次嵌入式预览的生命周期
+ * 持有运行句柄和嵌入到主界面的节点，关闭时断开场景图并释放类加载器
+ */
+public class PreviewSession {
+
+    private RunHandle handle;
+
+    private Stage stage;
+    private Node root;
+    private BorderPane container;
+    private boolean closed;
+
+    public PreviewSession() {
+    }
+
+    public PreviewSession(RunHandle handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * 绑定运行句柄（运行在后台启动时，句柄晚于会话创建）
+     */
+    public synchronized void bind(RunHandle handle) {
+        this.handle = handle;
+        if (closed) {
+            releaseHandle();
+        }
+    }
+
+    /**
+     * 关联预览舞台以及承载其根节点的容器（在JavaFX线程调用）
+     * 预览根节点放在容器中央，容器的其他部分不受会话影响
+     */
+    public void attach(Stage stage, Node root, BorderPane container) {
+        synchronized (this) {
+            if (closed) {
+                // 会话已关闭后才回调，直接释放
+                if (stage != null) {
+                    stage.setScene(null);
+                }
+                releaseHandle();
+                return;
+            }
+        }
+        this.stage = stage;
+        this.root = root;
+        this.container = container;
+    }
+
+    public synchronized RunHandle getHandle() {
+        return handle;
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    public BorderPane getContainer() {
+        return container;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 关闭会话：从容器中移除预览根节点、清空舞台场景，并释放类加载器和临时目录
+     * （在JavaFX线程调用）
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+
+        // 容器可能已被新的预览复用，只移除属于本会话的根节点
+        if (container != null && root != null && container.getCenter() == root) {
+            container.setCenter(null);
+        }
+
+        if (stage != null) {
+            stage.setScene(null);
+        }
+
+        releaseHandle();
+
+        stage = null;
+        root = null;
+        container = null;
+    }
+
+    private synchronized void releaseHandle() {
+        if (handle != null && !handle.cancel()) {
+            handle.release();
+        }
+    }
+}
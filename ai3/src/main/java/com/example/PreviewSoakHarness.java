@@ -0,0 +1,117 @@
+package com.example;
+
+import javafx.application.Platform;
+import javafx.scene.layout.BorderPane;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 预览浸泡测试：反复在当前JVM中运行并关闭预览，最后检查类加载器是否都能被卸载
+ *
+ * 用法: PreviewSoakHarness [次数] [JavaFX lib目录]
+ */
+public class PreviewSoakHarness {
+
+    private static final String SAMPLE_CODE =
+            "import javafx.application.Application;\n" +
+            "import javafx.scene.Scene;\n" +
+            "import javafx.scene.control.*;\n" +
+            "import javafx.scene.layout.*;\n" +
+            "import javafx.stage.Stage;\n\n" +
+            "public class SoakPreview extends Application {\n" +
+            "    @Override\n" +
+            "    public void start(Stage stage) {\n" +
+            "        VBox root = new VBox(10);\n" +
+            "        for (int i = 0; i < 50; i++) {\n" +
+            "            Button button = new Button(\"按钮 \" + i);\n" +
+            "            button.setOnAction(new javafx.event.EventHandler<javafx.event.ActionEvent>() {\n" +
+            "                @Override\n" +
+            "                public void handle(javafx.event.ActionEvent e) { button.setText(\"clicked\"); }\n" +
+            "            });\n" +
+            "            root.getChildren().add(button);\n" +
+            "        }\n" +
+            "        stage.setScene(new Scene(root, 300, 400));\n" +
+            "        stage.show();\n" +
+            "    }\n" +
+            "}\n";
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+
+        CodeRunner runner = new CodeRunner();
+        if (args.length > 1) {
+            runner.forceSetJavaFXPath(args[1]);
+        }
+
+        Platform.startup(() -> { });
+        Platform.setImplicitExit(false);
+
+        PreviewLeakDetector detector = PreviewLeakDetector.getInstance();
+        System.out.println("初始状态: " + detector.check(3));
+
+        int failures = 0;
+        for (int i = 1; i <= iterations; i++) {
+            if (!runOnce(runner)) {
+                failures++;
+            }
+            if (i % 10 == 0) {
+                System.out.println("第 " + i + " 轮: " + detector.check(2));
+            }
+        }
+
+        PreviewLeakDetector.Report report = detector.check(5);
+        System.out.println("=== 浸泡测试完成 ===");
+        System.out.println("运行次数: " + iterations + ", 失败: " + failures);
+        System.out.println(report);
+
+        Platform.exit();
+        System.exit(report.hasLeaks() || failures > 0 ? 1 : 0);
+    }
+
+    /**
+     * 运行一次预览并立即关闭会话
+     */
+    private static boolean runOnce(CodeRunner runner) throws InterruptedException {
+        CountDownLatch attached = new CountDownLatch(1);
+        AtomicReference<String> error = new AtomicReference<>();
+        AtomicReference<PreviewSession> sessionRef = new AtomicReference<>();
+
+        runner.setStageCallback(stage -> Platform.runLater(() -> {
+            BorderPane container = new BorderPane();
+            if (stage.getScene() != null) {
+                container.setCenter(stage.getScene().getRoot());
+            }
+            stage.hide();
+            PreviewSession session = sessionRef.get();
+            if (session != null) {
+                session.attach(stage, container.getCenter(), container);
+            }
+            attached.countDown();
+        }));
+
+        RunHandle handle = runner.runJavaFXInCurrentVM(SAMPLE_CODE, message -> {
+            error.set(message);
+            attached.countDown();
+        });
+        sessionRef.set(new PreviewSession(handle));
+
+        if (!attached.await(30, TimeUnit.SECONDS)) {
+            error.set("等待预览超时");
+        }
+
+        CountDownLatch closed = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            sessionRef.get().close();
+            closed.countDown();
+        });
+        closed.await(10, TimeUnit.SECONDS);
+
+        if (error.get() != null) {
+            System.err.println("预览失败: " + error.get());
+            return false;
+        }
+        return true;
+    }
+}
@@ -10,19 +10,29 @@ import javafx.stage.Stage;
 
 public class PreviewWindow {
 
+    // 输出区域最多保留的字符数
+    private static final int MAX_OUTPUT_CHARS = 32 * 1024;
+
     private Stage stage;
     private TextArea codeArea;
+    private TextArea processOutputArea;
     private Label statusLabel;
     private ProgressIndicator progressIndicator;
     private Button runButton;
     private Button stopButton;
     private CodeRunner codeRunner;
+    private RunHandle currentRun;
+
+    // 待追加到输出区域的内容，合并后一次性刷新到界面
+    private final StringBuilder pendingOutput = new StringBuilder();
+    private boolean outputFlushScheduled;
 
     public void show(String code) {
         stage = new Stage();
         stage.setTitle("JavaFX代码运行效果预览");
 
         codeRunner = new CodeRunner();
+        codeRunner.setOutputListener(this::appendProcessOutput);
 
         // 创建主布局
         BorderPane mainLayout = new BorderPane();
@@ -39,6 +49,11 @@ public class PreviewWindow {
 
         Scene scene = new Scene(mainLayout, 800, 600);
         stage.setScene(scene);
+        stage.setOnCloseRequest(e -> {
+            if (currentRun != null) {
+                cancelInBackground(currentRun);
+            }
+        });
         stage.show();
     }
 
@@ -70,7 +85,16 @@ public class PreviewWindow {
         codeArea.setPrefHeight(300);
         codeArea.setStyle("-fx-font-family: 'Consolas'; -fx-font-size: 12px;");
 
-        centerPanel.getChildren().addAll(codeLabel, codeArea);
+        Label outputLabel = new Label("🖥️ 运行输出:");
+        outputLabel.setStyle("-fx-font-weight: bold;");
+
+        processOutputArea = new TextArea();
+        processOutputArea.setEditable(false);
+        processOutputArea.setWrapText(true);
+        processOutputArea.setPrefHeight(120);
+        processOutputArea.setStyle("-fx-font-family: 'Consolas'; -fx-font-size: 11px;");
+
+        centerPanel.getChildren().addAll(codeLabel, codeArea, outputLabel, processOutputArea);
         return centerPanel;
     }
 
@@ -110,7 +134,10 @@ public class PreviewWindow {
 
         Button closeButton = new Button("❌ 关闭");
         closeButton.setStyle("-fx-background-color: #7f8c8d; -fx-text-fill: white;");
-        closeButton.setOnAction(e -> stage.close());
+        closeButton.setOnAction(e -> {
+            stopRunning();
+            stage.close();
+        });
 
         controlBox.getChildren().addAll(runButton, stopButton, refreshButton, closeButton);
 
@@ -144,30 +171,64 @@ public class PreviewWindow {
         progressIndicator.setVisible(true);
         statusLabel.setText("🚀 正在编译运行代码...");
         statusLabel.setStyle("-fx-text-fill: #3498db;");
+        processOutputArea.clear();
 
         // 异步运行代码
-        new Thread(() -> {
-            codeRunner.runJavaFXCode(code,
-                    () -> Platform.runLater(() -> {
-                        progressIndicator.setVisible(false);
-                        statusLabel.setText("✅ 代码运行成功！");
-                        statusLabel.setStyle("-fx-text-fill: #2ecc71;");
-                        runButton.setDisable(false);
-                        stopButton.setDisable(true);
-                    }),
-                    error -> Platform.runLater(() -> {
-                        progressIndicator.setVisible(false);
-                        statusLabel.setText("❌ " + error);
-                        statusLabel.setStyle("-fx-text-fill: #e74c3c;");
-                        runButton.setDisable(false);
-                        stopButton.setDisable(true);
-                    })
-            );
-        }).start();
+        currentRun = codeRunner.runJavaFXCode(code,
+                () -> Platform.runLater(() -> {
+                    progressIndicator.setVisible(false);
+                    statusLabel.setText("✅ 代码运行成功！");
+                    statusLabel.setStyle("-fx-text-fill: #2ecc71;");
+                    runButton.setDisable(false);
+                    stopButton.setDisable(true);
+                }),
+                error -> Platform.runLater(() -> {
+                    progressIndicator.setVisible(false);
+                    statusLabel.setText("❌ " + error);
+                    statusLabel.setStyle("-fx-text-fill: #e74c3c;");
+                    runButton.setDisable(false);
+                    stopButton.setDisable(true);
+                })
+        );
+    }
+
+    /**
+     * 接收子进程输出（后台线程），合并后在JavaFX线程中追加
+     */
+    private void appendProcessOutput(String line) {
+        synchronized (pendingOutput) {
+            pendingOutput.append(line).append("\n");
+            if (outputFlushScheduled) {
+                return;
+            }
+            outputFlushScheduled = true;
+        }
+        Platform.runLater(this::flushProcessOutput);
+    }
+
+    private void flushProcessOutput() {
+        String text;
+        synchronized (pendingOutput) {
+            text = pendingOutput.toString();
+            pendingOutput.setLength(0);
+            outputFlushScheduled = false;
+        }
+        processOutputArea.appendText(text);
+
+        // 只保留尾部内容，避免输出过多导致界面卡顿
+        int length = processOutputArea.getLength();
+        if (length > MAX_OUTPUT_CHARS) {
+            processOutputArea.deleteText(0, length - MAX_OUTPUT_CHARS);
+        }
+        processOutputArea.setScrollTop(Double.MAX_VALUE);
     }
 
     private void stopRunning() {
-        // 这里可以实现停止运行逻辑
+        // 结束子进程树
+        if (currentRun != null) {
+            cancelInBackground(currentRun);
+            currentRun = null;
+        }
         statusLabel.setText("⏹ 运行已停止");
         statusLabel.setStyle("-fx-text-fill: #f39c12;");
         runButton.setDisable(false);
@@ -175,6 +236,15 @@ public class PreviewWindow {
         progressIndicator.setVisible(false);
     }
 
+    /**
+     * 结束进程树最多等待数秒，放到后台线程执行，避免界面卡住
+     */
+    private void cancelInBackground(RunHandle run) {
+        Thread thread = new Thread(run::cancel, "preview-stop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     private void refreshCode() {
         // 刷新代码显示（可以重新生成或重置）
         statusLabel.setText("代码已刷新");
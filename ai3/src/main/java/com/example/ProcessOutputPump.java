@@ -0,0 +1,107 @@
+package com.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 子进程输出泵：在后台线程读取输出流，保留有限的尾部内容，并可实时转发每一行
+ * 读取与超时控制互不影响，调用方可以随时 waitFor / 强制结束进程
+ */
+public class ProcessOutputPump {
+
+    // 默认最多保留的行数和字符数
+    public static final int DEFAULT_MAX_LINES = 500;
+    public static final int DEFAULT_MAX_CHARS = 64 * 1024;
+
+    private final InputStream inputStream;
+    private final CodeRunner.Consumer<String> lineListener;
+    private final int maxLines;
+    private final int maxChars;
+
+    private final Deque<String> lines = new ArrayDeque<>();
+    private int bufferedChars;
+    private long droppedLines;
+    private Thread thread;
+
+    public ProcessOutputPump(InputStream inputStream, CodeRunner.Consumer<String> lineListener) {
+        this(inputStream, lineListener, DEFAULT_MAX_LINES, DEFAULT_MAX_CHARS);
+    }
+
+    public ProcessOutputPump(InputStream inputStream, CodeRunner.Consumer<String> lineListener,
+                             int maxLines, int maxChars) {
+        this.inputStream = inputStream;
+        this.lineListener = lineListener;
+        this.maxLines = maxLines;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * 启动后台读取线程
+     */
+    public ProcessOutputPump start() {
+        thread = new Thread(this::pump, "process-output-pump");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    private void pump() {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                append(line);
+                if (lineListener != null) {
+                    try {
+                        lineListener.accept(line);
+                    } catch (Exception e) {
+                        // 监听器异常不影响继续读取
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // 进程被结束时流会被关闭，属于正常情况
+        }
+    }
+
+    private synchronized void append(String line) {
+        lines.addLast(line);
+        bufferedChars += line.length() + 1;
+        while (lines.size() > maxLines || (bufferedChars > maxChars && lines.size() > 1)) {
+            String removed = lines.removeFirst();
+            bufferedChars -= removed.length() + 1;
+            droppedLines++;
+        }
+    }
+
+    /**
+     * 等待读取线程结束（进程退出后流会很快到达EOF）
+     */
+    public void awaitCompletion(long timeoutMillis) {
+        if (thread == null) return;
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 当前缓冲的输出内容
+     */
+    public synchronized String getOutput() {
+        StringBuilder sb = new StringBuilder();
+        if (droppedLines > 0) {
+            sb.append("...（已省略前 ").append(droppedLines).append(" 行输出）\n");
+        }
+        for (String line : lines) {
+            sb.append(line).append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,379 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 提示词套件批量评测：并发调用AI生成代码，依次清理、校验、编译，并输出每条提示的耗时、token和成功率报告
+ *
+ * 用法: PromptSuiteRunner <套件.jsonl | examples> [并发数] [报告目录] [JavaFX lib目录]
+ * 套件每行一个JSON: {"id": "...", "prompt": "...", "className": "...", "uiType": "..."}
+ * uiType 使用 App.UI_TYPES 中的键（如 login、table），也用作token统计的类别
+ * 也可以用 {"example": "login"} 引用内置示例
+ */
+public class PromptSuiteRunner {
+
+    private static final String[] BUILT_IN_EXAMPLES = {"login", "table", "dashboard"};
+    private static final int DEFAULT_CONCURRENCY = 3;
+
+    private final AliyunAIClient aiClient;
+    private final CodeRunner codeRunner;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // 最近一次 run 的总耗时和并发数，写入 summary.json
+    private long lastSuiteMs;
+    private int lastConcurrency;
+
+    public PromptSuiteRunner(AliyunAIClient aiClient, CodeRunner codeRunner) {
+        this.aiClient = aiClient;
+        this.codeRunner = codeRunner;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("用法: PromptSuiteRunner <套件.jsonl | examples> [并发数] [报告目录] [JavaFX lib目录]");
+            System.exit(2);
+        }
+
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CONCURRENCY;
+        Path reportRoot = Paths.get(args.length > 2 ? args[2] : "prompt-suite-report");
+
+        CodeRunner runner = new CodeRunner();
+        if (args.length > 3) {
+            runner.forceSetJavaFXPath(args[3]);
+        }
+
+        PromptSuiteRunner suiteRunner = new PromptSuiteRunner(ServiceRegistry.aiClient(), runner);
+        List<SuitePrompt> prompts = "examples".equals(args[0])
+                ? suiteRunner.builtInPrompts()
+                : suiteRunner.loadSuite(Paths.get(args[0]));
+
+        System.out.println("📋 共 " + prompts.size() + " 条提示，并发数: " + concurrency);
+        List<PromptResult> results = suiteRunner.run(prompts, concurrency);
+
+        Path reportDir = suiteRunner.writeReport(results, reportRoot);
+        System.out.println("📄 报告已写入: " + reportDir.toAbsolutePath());
+
+        long failures = results.stream().filter(r -> !r.isSuccess()).count();
+        System.exit(failures > 0 ? 1 : 0);
+    }
+
+    /**
+     * 读取JSONL套件，空行和 # 开头的行会被忽略
+     */
+    public List<SuitePrompt> loadSuite(Path suiteFile) throws IOException {
+        List<SuitePrompt> prompts = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(suiteFile)) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            JsonNode node = objectMapper.readTree(line);
+            if (node.has("example")) {
+                prompts.add(fromExample(node.get("example").asText()));
+                continue;
+            }
+
+            String id = node.path("id").asText("prompt-" + lineNumber);
+            String prompt = node.path("prompt").asText("");
+            if (prompt.isEmpty()) {
+                throw new IOException("第 " + lineNumber + " 行缺少 prompt 字段");
+            }
+            prompts.add(new SuitePrompt(id, prompt,
+                    node.path("className").asText("GeneratedUI"),
+                    node.path("uiType").asText("")));
+        }
+        return prompts;
+    }
+
+    public List<SuitePrompt> builtInPrompts() {
+        List<SuitePrompt> prompts = new ArrayList<>();
+        for (String example : BUILT_IN_EXAMPLES) {
+            prompts.add(fromExample(example));
+        }
+        return prompts;
+    }
+
+    private SuitePrompt fromExample(String exampleType) {
+        String[] example = App.getExample(exampleType);
+        if (example[0].isEmpty()) {
+            throw new IllegalArgumentException("未知的内置示例: " + exampleType);
+        }
+        // 内置示例名与界面类型键一致
+        return new SuitePrompt("example-" + exampleType, example[0], example[1], exampleType);
+    }
+
+    /**
+     * 以有限并发执行整个套件，结果按套件顺序返回
+     */
+    public List<PromptResult> run(List<SuitePrompt> prompts, int concurrency) {
+        // 编译前先确定JavaFX路径（未指定时按环境探测），并预热编译器
+        codeRunner.warmUp();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, concurrency), r -> {
+            Thread thread = new Thread(r, "prompt-suite");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long suiteStart = System.nanoTime();
+        List<PromptResult> results = new ArrayList<>();
+        try {
+            List<Future<PromptResult>> futures = new ArrayList<>();
+            for (SuitePrompt prompt : prompts) {
+                futures.add(pool.submit(() -> evaluate(prompt)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                PromptResult result;
+                try {
+                    result = futures.get(i).get();
+                } catch (Exception e) {
+                    result = new PromptResult(prompts.get(i).id);
+                    result.failedStage = "internal";
+                    result.error = e.getMessage();
+                }
+                results.add(result);
+                System.out.println(result);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long suiteMs = (System.nanoTime() - suiteStart) / 1_000_000;
+        lastSuiteMs = suiteMs;
+        lastConcurrency = concurrency;
+        System.out.println(new Summary(results, suiteMs, concurrency));
+        return results;
+    }
+
+    /**
+     * 单条提示：生成 → 清理 → 校验 → 编译
+     */
+    private PromptResult evaluate(SuitePrompt prompt) {
+        PromptResult result = new PromptResult(prompt.id);
+        PipelineMetrics.Run run = PipelineMetrics.getInstance().startRun("套件:" + prompt.id);
+        long start = System.nanoTime();
+        try {
+            String fullPrompt = App.buildFullPrompt(prompt.prompt, prompt.uiType, prompt.className, true, true);
+
+            AliyunAIClient.CodeGeneration generation;
+            long generateStart = System.nanoTime();
+            try (PipelineMetrics.Span ignored = run.span(PipelineMetrics.Phase.AI_GENERATE)) {
+                generation = aiClient.generateCodeWithUsage(fullPrompt, prompt.uiType);
+            } catch (IOException e) {
+                result.failedStage = "generate";
+                result.error = e.getMessage();
+                return result;
+            }
+            result.generateMs = (System.nanoTime() - generateStart) / 1_000_000;
+            result.inputTokens = generation.getInputTokens();
+            result.outputTokens = generation.getOutputTokens();
+
+            // 客户端返回的代码已经规范化，只记录规范化耗时
+            run.recordPhase(PipelineMetrics.Phase.CLEAN_CODE, generation.getNormalizeMs());
+            String code = generation.getCode();
+            result.codeLines = (int) code.lines().count();
+
+            String validationError = codeRunner.validateCode(code);
+            if (validationError != null && !validationError.startsWith("警告")) {
+                result.failedStage = "validate";
+                result.error = validationError;
+                return result;
+            }
+
+            CodeRunner.VariantResult compilation = codeRunner.compileCode(code);
+            run.recordPhase(PipelineMetrics.Phase.COMPILE, compilation.compileMs);
+            result.compileMs = compilation.compileMs;
+            result.errorCount = compilation.errorCount;
+            result.warningCount = compilation.warningCount;
+            if (!compilation.success) {
+                result.failedStage = "compile";
+                result.error = compilation.diagnostics;
+            }
+            return result;
+        } finally {
+            result.totalMs = (System.nanoTime() - start) / 1_000_000;
+            run.finish(result.isSuccess());
+        }
+    }
+
+    /**
+     * 写出报告：results.jsonl 每行一条提示，summary.json 为汇总
+     */
+    public Path writeReport(List<PromptResult> results, Path reportRoot) throws IOException {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        Path reportDir = reportRoot.resolve(timestamp);
+        Files.createDirectories(reportDir);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(reportDir.resolve("results.jsonl"))) {
+            for (PromptResult result : results) {
+                writer.write(objectMapper.writeValueAsString(result.toJson(objectMapper)));
+                writer.newLine();
+            }
+        }
+
+        Summary summary = new Summary(results, lastSuiteMs, lastConcurrency);
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("total", summary.total);
+        root.put("succeeded", summary.succeeded);
+        root.put("successRate", summary.successRate());
+        root.put("suiteMs", summary.suiteMs);
+        root.put("concurrency", summary.concurrency);
+        root.put("throughputPerMinute", summary.throughput());
+        root.put("inputTokens", summary.inputTokens);
+        root.put("outputTokens", summary.outputTokens);
+        root.put("p50LatencyMs", summary.percentile(0.5));
+        root.put("p95LatencyMs", summary.percentile(0.95));
+        ArrayNode failed = root.putArray("failed");
+        for (PromptResult result : results) {
+            if (!result.isSuccess()) {
+                failed.add(result.id + " (" + result.failedStage + ")");
+            }
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportDir.resolve("summary.json").toFile(), root);
+        return reportDir;
+    }
+
+    // ============== 内部类 ==============
+
+    /**
+     * 套件中的一条提示
+     */
+    public static class SuitePrompt {
+        public final String id;
+        public final String prompt;
+        public final String className;
+        public final String uiType;
+
+        public SuitePrompt(String id, String prompt, String className, String uiType) {
+            this.id = id;
+            this.prompt = prompt;
+            this.className = className;
+            this.uiType = uiType;
+        }
+    }
+
+    /**
+     * 单条提示的评测结果
+     */
+    public static class PromptResult {
+        public final String id;
+        public String failedStage; // generate / validate / compile，成功时为空
+        public String error;
+        public long generateMs;
+        public long compileMs;
+        public long totalMs;
+        public int inputTokens;
+        public int outputTokens;
+        public int codeLines;
+        public int errorCount;
+        public int warningCount;
+
+        PromptResult(String id) {
+            this.id = id;
+        }
+
+        public boolean isSuccess() {
+            return failedStage == null;
+        }
+
+        ObjectNode toJson(ObjectMapper mapper) {
+            ObjectNode node = mapper.createObjectNode();
+            node.put("id", id);
+            node.put("success", isSuccess());
+            node.put("failedStage", failedStage);
+            node.put("error", error);
+            node.put("generateMs", generateMs);
+            node.put("compileMs", compileMs);
+            node.put("totalMs", totalMs);
+            node.put("inputTokens", inputTokens);
+            node.put("outputTokens", outputTokens);
+            node.put("codeLines", codeLines);
+            node.put("errorCount", errorCount);
+            node.put("warningCount", warningCount);
+            return node;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s 生成:%dms 编译:%dms 总计:%dms token:%d+%d%s",
+                    isSuccess() ? "✅" : "❌", id, generateMs, compileMs, totalMs, inputTokens, outputTokens,
+                    isSuccess() ? "" : " [" + failedStage + "] " + (error == null ? "" : error.split("\n")[0]));
+        }
+    }
+
+    /**
+     * 套件汇总
+     */
+    private static class Summary {
+        final int total;
+        final int succeeded;
+        final long inputTokens;
+        final long outputTokens;
+        final long suiteMs;
+        final int concurrency;
+        final List<Long> latencies = new ArrayList<>();
+
+        Summary(List<PromptResult> results, long suiteMs, int concurrency) {
+            int ok = 0;
+            long in = 0;
+            long out = 0;
+            for (PromptResult result : results) {
+                if (result.isSuccess()) ok++;
+                in += result.inputTokens;
+                out += result.outputTokens;
+                latencies.add(result.totalMs);
+            }
+            Collections.sort(latencies);
+            this.total = results.size();
+            this.succeeded = ok;
+            this.inputTokens = in;
+            this.outputTokens = out;
+            this.suiteMs = suiteMs;
+            this.concurrency = concurrency;
+        }
+
+        double successRate() {
+            return total == 0 ? 0 : (double) succeeded / total;
+        }
+
+        long percentile(double p) {
+            if (latencies.isEmpty()) return 0;
+            int index = (int) Math.ceil(p * latencies.size()) - 1;
+            return latencies.get(Math.max(0, Math.min(index, latencies.size() - 1)));
+        }
+
+        /**
+         * 吞吐量（条/分钟）
+         */
+        double throughput() {
+            return suiteMs > 0 ? total * 60000.0 / suiteMs : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("=== 套件完成 ===%n成功: %d/%d (%.0f%%), 总耗时: %dms, 并发: %d, 吞吐: %.1f 条/分钟%n" +
+                            "延迟 P50: %dms, P95: %dms, token 输入: %d, 输出: %d",
+                    succeeded, total, successRate() * 100, suiteMs, concurrency, throughput(),
+                    percentile(0.5), percentile(0.95), inputTokens, outputTokens);
+        }
+    }
+}
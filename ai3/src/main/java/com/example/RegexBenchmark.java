@@ -0,0 +1,117 @@
+package com.example;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 正则优化前后的耗时对比：旧写法（每次编译/链式 replaceAll）与 RegexPatterns 中的预编译写法
+ * 项目没有引入JMH，这里用预热加多轮计时的方式粗略对比，结果以每次操作的纳秒数输出
+ *
+ * 用法: RegexBenchmark [每轮次数]
+ */
+public class RegexBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURE_ROUNDS = 5;
+
+    // 防止JIT把结果当作无用代码消除
+    private static long sink;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        String response = buildResponse();
+        String code = RegexPatterns.stripFences(response);
+        System.out.println("样本响应: " + response.length() + " 字符");
+
+        compare("去除代码块标记", iterations,
+                () -> response.replaceAll("(?i)```java\\s*", "")
+                        .replaceAll("(?i)```\\s*", "")
+                        .replaceAll("(?i)```[a-z]*", "")
+                        .trim().length(),
+                () -> RegexPatterns.stripFences(response).length());
+
+        compare("提取类名", iterations,
+                () -> {
+                    Matcher matcher = Pattern.compile("public\\s+class\\s+(\\w+)").matcher(code);
+                    return matcher.find() ? matcher.group(1).length() : 0;
+                },
+                () -> RegexPatterns.findClassName(code).length());
+
+        compare("查找类结束位置", iterations,
+                () -> {
+                    Matcher matcher = Pattern.compile("class\\s+" + Pattern.quote("BenchmarkApp") + "\\s+.*\\{").matcher(code);
+                    return matcher.find() ? matcher.end() : -1;
+                },
+                () -> {
+                    Matcher matcher = RegexPatterns.CLASS_NAME.matcher(code);
+                    while (matcher.find()) {
+                        if (matcher.group(1).equals("BenchmarkApp")) {
+                            return code.indexOf('{', matcher.end());
+                        }
+                    }
+                    return -1;
+                });
+
+        compare("查找方法", iterations,
+                () -> {
+                    Matcher matcher = Pattern.compile("\\b" + Pattern.quote("createForm9") + "\\s*\\([^)]*\\)\\s*\\{").matcher(code);
+                    return matcher.find() ? matcher.start() : -1;
+                },
+                () -> RegexPatterns.findMethodHeader(code, "createForm9"));
+
+        System.out.println("(sink=" + sink + ")");
+    }
+
+    private interface Operation {
+        int run();
+    }
+
+    private static void compare(String name, int iterations, Operation before, Operation after) {
+        double beforeNs = measure(iterations, before);
+        double afterNs = measure(iterations, after);
+        System.out.printf("%-10s 优化前 %10.0f ns/op   优化后 %10.0f ns/op   %.1fx%n",
+                name, beforeNs, afterNs, beforeNs / afterNs);
+    }
+
+    private static double measure(int iterations, Operation operation) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (int i = 0; i < iterations; i++) {
+                sink += operation.run();
+            }
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < MEASURE_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += operation.run();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / iterations;
+    }
+
+    /**
+     * 构造一个约4KB、带代码块标记的典型AI响应
+     */
+    private static String buildResponse() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("下面是生成的代码：\n```java\n");
+        sb.append("import javafx.application.Application;\nimport javafx.scene.Scene;\n");
+        sb.append("import javafx.scene.control.*;\nimport javafx.scene.layout.*;\nimport javafx.stage.Stage;\n\n");
+        sb.append("public class BenchmarkApp extends Application {\n");
+        for (int i = 0; i < 10; i++) {
+            sb.append("    private VBox createForm").append(i).append("(String title, int columns) {\n");
+            sb.append("        VBox box = new VBox(10);\n");
+            sb.append("        Label label = new Label(title);\n");
+            sb.append("        TextField field = new TextField();\n");
+            sb.append("        Button button = new Button(\"提交\");\n");
+            sb.append("        button.setOnAction(e -> label.setText(field.getText()));\n");
+            sb.append("        box.getChildren().addAll(label, field, button);\n");
+            sb.append("        return box;\n    }\n\n");
+        }
+        sb.append("    @Override\n    public void start(Stage stage) {\n");
+        sb.append("        stage.setScene(new Scene(createForm0(\"表单\", 2), 400, 300));\n");
+        sb.append("        stage.show();\n    }\n}\n```\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,118 @@
+package com.example;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 共享的预编译正则表达式
+ * 各处不再在每次调用时编译或使用 String.replaceAll；量词尽量使用占有型（++、*+），匹配失败时不回溯
+ */
+public final class RegexPatterns {
+
+    public static final Pattern PACKAGE = Pattern.compile("package\\s++([\\w.]++)\\s*+;");
+    public static final Pattern IMPORT = Pattern.compile("import\\s++([\\w.*]++)\\s*+;");
+    // 以字面量开头的表达式可以用快速子串查找定位候选位置，开头不加 \\b
+    public static final Pattern CLASS_NAME = Pattern.compile("class\\s++(\\w++)");
+    public static final Pattern PUBLIC_CLASS_NAME = Pattern.compile("public\\s++class\\s++(\\w++)");
+
+    // 方法声明：访问修饰符、static、返回类型、方法名、参数，到 { 为止
+    public static final Pattern METHOD_DECLARATION = Pattern.compile(
+            "(public|private|protected|\\s)?\\s++" +
+                    "(static\\s++)?" +
+                    "(\\w++\\s++)?" +
+                    "(\\w++)\\s*+\\(" +
+                    "([^)]*+)\\)\\s*+\\{");
+
+    // 方法名之后的参数列表和 {，配合 indexOf 按名称查找方法
+    public static final Pattern PARAMETERS_AND_BODY = Pattern.compile("\\s*+\\([^)]*+\\)\\s*+\\{");
+
+    // 大写字母开头的标识符（可能的类名）
+    public static final Pattern TYPE_NAME = Pattern.compile("\\b[A-Z]\\w*+");
+
+    // 注解（可带包名和参数），用于从成员声明中去掉注解
+    public static final Pattern ANNOTATION = Pattern.compile("@\\w++(?:\\.\\w++)*+(?:\\s*+\\([^)]*+\\))?+");
+
+    public static final Pattern UI_COMPONENT_CREATION = Pattern.compile(
+            "new\\s++(Label|Button|TextField|TextArea|VBox|HBox|GridPane|BorderPane|TableView)\\b");
+
+    private RegexPatterns() {
+    }
+
+    /**
+     * 查找第一个类声明的类名，优先 public class
+     */
+    public static String findClassName(String code) {
+        Matcher matcher = PUBLIC_CLASS_NAME.matcher(code);
+        if (matcher.find()) {
+            return matcher.group(1);
+        }
+        matcher = CLASS_NAME.matcher(code);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    /**
+     * 按名称查找方法声明（名称后跟参数列表和 {）的起始位置，找不到返回 -1
+     * 先用 indexOf 定位名称，再在该位置上匹配预编译的参数表达式，不为每个方法名编译正则
+     */
+    public static int findMethodHeader(String text, String methodName) {
+        Matcher matcher = PARAMETERS_AND_BODY.matcher(text);
+        int from = 0;
+        int index;
+        while ((index = text.indexOf(methodName, from)) >= 0) {
+            int end = index + methodName.length();
+            boolean wordStart = index == 0 || !Character.isJavaIdentifierPart(text.charAt(index - 1));
+            if (wordStart && matcher.region(end, text.length()).lookingAt()) {
+                return index;
+            }
+            from = index + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * 一次扫描去掉markdown代码块标记：``` 连同紧跟的语言名和之后的空白一起删除
+     */
+    public static String stripFences(String text) {
+        int fence = text.indexOf("```");
+        if (fence < 0) {
+            return text.trim();
+        }
+
+        int n = text.length();
+        StringBuilder sb = new StringBuilder(n);
+        int i = 0;
+        while (fence >= 0) {
+            sb.append(text, i, fence);
+            i = fence;
+            while (i < n && text.charAt(i) == '`') i++;
+            while (i < n && isAsciiLetter(text.charAt(i))) i++;
+            while (i < n && Character.isWhitespace(text.charAt(i))) i++;
+            fence = text.indexOf("```", i);
+        }
+        sb.append(text, i, n);
+        return sb.toString().trim();
+    }
+
+    /**
+     * 一次扫描把连续空白压缩为一个空格并去掉首尾空白，代替 replaceAll("\\s+", " ").trim()
+     */
+    public static String collapseWhitespace(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+            } else {
+                if (space) sb.append(' ');
+                sb.append(c);
+                space = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
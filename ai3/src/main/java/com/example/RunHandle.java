@@ -0,0 +1,180 @@
+package com.example;
+
+import javafx.application.Platform;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * 一次代码运行的句柄：可查询状态、等待完成或取消
+ * 取消时会结束子进程树，或关闭当前JVM中预览使用的舞台和类加载器
+ */
+public class RunHandle {
+
+    /**
+     * 运行状态
+     */
+    public enum Status {
+        PENDING("等待中"),
+        COMPILING("编译中"),
+        RUNNING("运行中"),
+        SUCCEEDED("运行成功"),
+        FAILED("运行失败"),
+        CANCELLED("已取消");
+
+        private final String description;
+
+        Status(String description) {
+            this.description = description;
+        }
+
+        public boolean isTerminal() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    private final CompletableFuture<Status> completion = new CompletableFuture<>();
+    private volatile Status status = Status.PENDING;
+
+    private volatile Future<?> task;
+    private volatile Process process;
+    private volatile URLClassLoader classLoader;
+    private volatile Stage stage;
+    private volatile Path tempDir;
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isDone() {
+        return status.isTerminal();
+    }
+
+    public boolean isCancelled() {
+        return status == Status.CANCELLED;
+    }
+
+    /**
+     * 运行结束时完成，结果为最终状态
+     */
+    public CompletableFuture<Status> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * 取消运行
+     * @return 如果运行已经结束则返回false
+     */
+    public boolean cancel() {
+        synchronized (this) {
+            if (status.isTerminal()) {
+                return false;
+            }
+            status = Status.CANCELLED;
+        }
+
+        Future<?> runningTask = task;
+        if (runningTask != null) {
+            runningTask.cancel(true);
+        }
+
+        Process runningProcess = process;
+        if (runningProcess != null && runningProcess.isAlive()) {
+            CodeRunner.destroyProcessTree(runningProcess);
+        }
+
+        release();
+
+        completion.complete(Status.CANCELLED);
+        System.out.println("运行已取消");
+        return true;
+    }
+
+    /**
+     * 释放当前JVM预览占用的资源：关闭舞台、关闭类加载器并删除临时目录
+     * 与运行状态无关，失败的运行同样需要释放
+     */
+    public void release() {
+        Stage previewStage = stage;
+        stage = null;
+        if (previewStage != null) {
+            if (Platform.isFxApplicationThread()) {
+                previewStage.close();
+            } else {
+                Platform.runLater(previewStage::close);
+            }
+        }
+
+        URLClassLoader loader = classLoader;
+        classLoader = null;
+        if (loader != null) {
+            try {
+                loader.close();
+            } catch (IOException e) {
+                System.err.println("关闭类加载器失败: " + e.getMessage());
+            }
+            PreviewLeakDetector.getInstance().markReleased(loader);
+        }
+
+        Path dir = tempDir;
+        tempDir = null;
+        if (dir != null) {
+            CodeRunner.cleanupTempDirectory(dir);
+        }
+    }
+
+    // ============== 供 CodeRunner 使用 ==============
+
+    void setStatus(Status newStatus) {
+        synchronized (this) {
+            if (status.isTerminal()) {
+                return;
+            }
+            status = newStatus;
+        }
+        if (newStatus.isTerminal()) {
+            completion.complete(newStatus);
+        }
+    }
+
+    void attachTask(Future<?> task) {
+        this.task = task;
+        if (isCancelled()) {
+            task.cancel(true);
+        }
+    }
+
+    void attachProcess(Process process) {
+        this.process = process;
+        if (isCancelled()) {
+            CodeRunner.destroyProcessTree(process);
+        }
+    }
+
+    /**
+     * 关联类加载器及其类文件目录，目录在释放时才删除，保证内部类可以延迟加载
+     */
+    void attachClassLoader(URLClassLoader classLoader, Path tempDir) {
+        this.classLoader = classLoader;
+        this.tempDir = tempDir;
+        if (isCancelled()) {
+            release();
+        }
+    }
+
+    void attachStage(Stage stage) {
+        this.stage = stage;
+        if (isCancelled()) {
+            release();
+        }
+    }
+}
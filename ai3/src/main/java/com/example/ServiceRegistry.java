@@ -0,0 +1,55 @@
+package com.example;
+
+import com.alibaba.dashscope.aigc.generation.Generation;
+import com.alibaba.dashscope.protocol.Protocol;
+
+import java.io.IOException;
+
+/**
+ * 各窗口共享的服务：一个AI客户端和它使用的一个 Generation 传输对象
+ * 主界面、聊天窗口、代码合并器都从这里取客户端，连接池和缓存只有一份，并发上限对所有窗口一起生效
+ */
+public final class ServiceRegistry {
+
+    private static final String DASHSCOPE_BASE_URL = "https://dashscope.aliyuncs.com/api/v1";
+
+    private static volatile Generation generation;
+    private static volatile AliyunAIClient aiClient;
+
+    private ServiceRegistry() {
+    }
+
+    /**
+     * 共享的AI客户端，第一次调用时创建
+     */
+    public static AliyunAIClient aiClient() throws IOException {
+        AliyunAIClient client = aiClient;
+        if (client == null) {
+            synchronized (ServiceRegistry.class) {
+                client = aiClient;
+                if (client == null) {
+                    client = new AliyunAIClient();
+                    aiClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * 共享的 DashScope 传输对象，所有 AliyunAIClient 实例共用
+     */
+    static Generation generation() {
+        Generation shared = generation;
+        if (shared == null) {
+            synchronized (ServiceRegistry.class) {
+                shared = generation;
+                if (shared == null) {
+                    shared = new Generation(Protocol.HTTP.getValue(), DASHSCOPE_BASE_URL);
+                    generation = shared;
+                }
+            }
+        }
+        return shared;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 启动时间线：记录启动过程中各步骤在哪个线程、从何时到何时执行（相对JVM启动时间）
+ * 后台并行的初始化任务全部完成后输出报告，便于看出窗口显示前还有哪些步骤在阻塞
+ */
+public class StartupTimeline {
+
+    private static final StartupTimeline INSTANCE = new StartupTimeline();
+
+    private final long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * 时间线上的一个步骤；end 为 -1 表示瞬时事件
+     */
+    public static class Entry {
+        public final String name;
+        public final String thread;
+        public final long start;
+        public long end = -1;
+
+        Entry(String name, String thread, long start) {
+            this.name = name;
+            this.thread = thread;
+            this.start = start;
+        }
+    }
+
+    /**
+     * 一个步骤的计时，关闭时记录结束时间
+     */
+    public class Span implements AutoCloseable {
+        private final Entry entry;
+
+        private Span(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void close() {
+            synchronized (StartupTimeline.this) {
+                entry.end = now();
+            }
+        }
+    }
+
+    private StartupTimeline() {
+    }
+
+    public static StartupTimeline getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 开始一个步骤，配合 try-with-resources 使用
+     */
+    public synchronized Span span(String name) {
+        Entry entry = new Entry(name, Thread.currentThread().getName(), now());
+        entries.add(entry);
+        return new Span(entry);
+    }
+
+    /**
+     * 记录一个瞬时事件（如窗口显示）
+     */
+    public synchronized void mark(String name) {
+        entries.add(new Entry(name, Thread.currentThread().getName(), now()));
+    }
+
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    /**
+     * 按开始时间排列的文本报告
+     */
+    public synchronized String getReport() {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort((a, b) -> Long.compare(a.start, b.start));
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== 启动时间线（相对JVM启动，毫秒） ===\n");
+        for (Entry entry : sorted) {
+            if (entry.end < 0) {
+                sb.append(String.format("  %6d          ●        %-16s %s%n", entry.start, entry.thread, entry.name));
+            } else {
+                sb.append(String.format("  %6d → %6d %6dms  %-16s %s%n",
+                        entry.start, entry.end, entry.end - entry.start, entry.thread, entry.name));
+            }
+        }
+        sb.append("========================");
+        return sb.toString();
+    }
+
+    private long now() {
+        return System.currentTimeMillis() - jvmStart;
+    }
+}
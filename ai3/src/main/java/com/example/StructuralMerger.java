@@ -0,0 +1,317 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于成员树的三方合并：按 import、字段、方法、构造函数、内部类逐个成员合并
+ * 祖先版本取自备份历史，没有祖先时两边不同的成员一律记为冲突
+ * 祖先是目标文件合并前的备份，生成代码未必由它修改而来：只有生成代码保留了祖先的大部分成员时，
+ * 才把"目标文件没改、生成代码改了"的成员当作修改直接替换，否则记为冲突
+ * 生成的代码视为增量：生成代码中没有的成员不会被删除
+ */
+public class StructuralMerger {
+
+    /**
+     * 冲突：两边都修改了同一个成员
+     */
+    public static class Conflict {
+        public String member;
+        public String reason;
+        public String ours;
+        public String theirs;
+
+        public Conflict(String member, String reason, String ours, String theirs) {
+            this.member = member;
+            this.reason = reason;
+            this.ours = ours;
+            this.theirs = theirs;
+        }
+
+        @Override
+        public String toString() {
+            return member + ": " + reason;
+        }
+    }
+
+    /**
+     * 合并结果：有冲突时 code 中冲突成员保留目标文件的版本
+     */
+    public static class Result {
+        public String code;
+        public boolean hasAncestor;
+        public boolean derivedFromAncestor;
+        public List<Conflict> conflicts = new ArrayList<>();
+        public List<String> added = new ArrayList<>();
+        public List<String> replaced = new ArrayList<>();
+        public List<String> addedImports = new ArrayList<>();
+
+        public boolean hasConflicts() {
+            return !conflicts.isEmpty();
+        }
+
+        public String getSummary() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("新增成员 ").append(added.size())
+                    .append("，更新成员 ").append(replaced.size())
+                    .append("，新增import ").append(addedImports.size())
+                    .append("，冲突 ").append(conflicts.size());
+            if (!hasAncestor) {
+                sb.append("（无祖先版本）");
+            } else if (!derivedFromAncestor) {
+                sb.append("（生成代码不是基于祖先版本修改的）");
+            }
+            for (Conflict conflict : conflicts) {
+                sb.append("\n  ⚠️ ").append(conflict);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 待写入的文本片段：替换 [start, end)，end == start 时为插入
+     */
+    private static class Splice {
+        final int start;
+        final int end;
+        final String text;
+        final int order;
+
+        Splice(int start, int end, String text, int order) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+            this.order = order;
+        }
+    }
+
+    /**
+     * 三方合并
+     * @param base 祖先版本，可以为 null
+     * @param ours 目标文件当前内容
+     * @param theirs 生成的代码
+     */
+    public Result merge(String base, String ours, String theirs) {
+        JavaStructure oursStructure = JavaStructure.parse(ours);
+        JavaStructure theirsStructure = JavaStructure.parse(theirs);
+        if (!oursStructure.isValid() || !theirsStructure.isValid()) {
+            throw new IllegalArgumentException("无法解析类结构");
+        }
+        JavaStructure baseStructure = base != null ? JavaStructure.parse(base) : null;
+        if (baseStructure != null && !baseStructure.isValid()) {
+            baseStructure = null;
+        }
+
+        Result result = new Result();
+        result.hasAncestor = baseStructure != null;
+
+        Map<String, JavaStructure.Member> oursMembers = index(oursStructure, oursStructure.className);
+        Map<String, JavaStructure.Member> baseMembers = baseStructure != null
+                ? index(baseStructure, oursStructure.className) : new HashMap<>();
+        result.derivedFromAncestor = baseStructure != null
+                && derivedFrom(baseMembers, baseStructure, theirsStructure, oursStructure.className);
+
+        List<Splice> splices = new ArrayList<>();
+        String indent = oursStructure.memberIndent();
+        StringBuilder newFields = new StringBuilder();
+        StringBuilder newMembers = new StringBuilder();
+
+        for (JavaStructure.Member theirsMember : theirsStructure.members) {
+            String key = key(theirsMember, oursStructure.className);
+            String theirsText = memberText(theirsMember, theirsStructure, oursStructure.className);
+            JavaStructure.Member oursMember = oursMembers.get(key);
+            JavaStructure.Member baseMember = baseMembers.get(key);
+            String baseText = baseMember != null ? baseMember.text(baseStructure.source) : null;
+
+            if (oursMember == null) {
+                if (baseText != null) {
+                    // 目标文件中已删除的成员：生成代码没变就保持删除，否则冲突
+                    if (!same(baseText, theirsText)) {
+                        result.conflicts.add(new Conflict(key, "目标文件已删除，生成代码中有修改", null, theirsText));
+                    }
+                    continue;
+                }
+                StringBuilder target = theirsMember.kind == JavaStructure.MemberKind.FIELD ? newFields : newMembers;
+                target.append('\n').append(MergeEdits.reindent(theirsText, indent));
+                if (theirsMember.kind != JavaStructure.MemberKind.FIELD) {
+                    target.append('\n');
+                }
+                result.added.add(key);
+                continue;
+            }
+
+            String oursText = oursMember.text(ours);
+            if (same(oursText, theirsText)) {
+                continue;
+            }
+            if (isOursOnly(theirsMember)) {
+                // main方法等入口始终保留目标文件的版本
+                continue;
+            }
+            if (baseText != null && same(baseText, oursText) && result.derivedFromAncestor) {
+                // 只有生成代码修改了该成员
+                splices.add(new Splice(oursMember.start, oursMember.end,
+                        MergeEdits.reindent(theirsText, indent).trim(), splices.size()));
+                result.replaced.add(key);
+            } else if (baseText != null && same(baseText, theirsText)) {
+                // 只有目标文件修改了该成员，保留
+                continue;
+            } else {
+                String reason;
+                if (baseText == null) {
+                    reason = "两边内容不同且没有祖先版本";
+                } else if (same(baseText, oursText)) {
+                    reason = "生成代码不是基于祖先版本修改的，无法确认是否应覆盖";
+                } else {
+                    reason = "两边都修改了该成员";
+                }
+                result.conflicts.add(new Conflict(key, reason, oursText, theirsText));
+            }
+        }
+
+        // import 取并集，同名类已导入时跳过
+        StringBuilder newImports = new StringBuilder();
+        Map<String, String> simpleNames = new HashMap<>();
+        for (String imp : oursStructure.imports) {
+            simpleNames.put(simpleName(imp), imp);
+        }
+        for (String imp : theirsStructure.imports) {
+            String simple = simpleName(imp);
+            if (oursStructure.imports.contains(imp) || (!simple.equals("*") && simpleNames.containsKey(simple))) {
+                continue;
+            }
+            simpleNames.put(simple, imp);
+            newImports.append("\nimport ").append(imp).append(';');
+            result.addedImports.add(imp);
+        }
+
+        if (newImports.length() > 0) {
+            int at = oursStructure.importsEnd;
+            splices.add(new Splice(at, at, at == 0 ? newImports.substring(1) + "\n" : newImports.toString(), splices.size()));
+        }
+        if (newFields.length() > 0) {
+            List<JavaStructure.Member> fields = oursStructure.getMembers(JavaStructure.MemberKind.FIELD);
+            int at = oursStructure.classBodyStart;
+            if (!fields.isEmpty()) {
+                int lastEnd = fields.get(fields.size() - 1).end;
+                int lineEnd = ours.indexOf('\n', lastEnd);
+                at = lineEnd < 0 || lineEnd > oursStructure.classBodyEnd ? lastEnd : lineEnd;
+            }
+            splices.add(new Splice(at, at, newFields.toString(), splices.size()));
+        }
+        if (newMembers.length() > 0) {
+            int at = ours.lastIndexOf('\n', oursStructure.classBodyEnd - 1);
+            at = at < oursStructure.classBodyStart ? oursStructure.classBodyEnd : at + 1;
+            splices.add(new Splice(at, at, newMembers.toString(), splices.size()));
+        }
+
+        result.code = apply(ours, splices);
+        return result;
+    }
+
+    /**
+     * 按位置一次性拼接所有片段，整体为线性时间
+     */
+    private static String apply(String source, List<Splice> splices) {
+        splices.sort(Comparator.comparingInt((Splice s) -> s.start).thenComparingInt(s -> s.order));
+        StringBuilder sb = new StringBuilder(source.length() + 256);
+        int position = 0;
+        for (Splice splice : splices) {
+            sb.append(source, position, splice.start).append(splice.text);
+            position = Math.max(position, splice.end);
+        }
+        sb.append(source, position, source.length());
+        return sb.toString();
+    }
+
+    /**
+     * 生成代码是否由祖先版本修改而来：祖先中至少一半的成员在生成代码中原样保留
+     * 完全重新生成的代码（例如另一个界面）几乎不会保留祖先的成员
+     */
+    private static boolean derivedFrom(Map<String, JavaStructure.Member> baseMembers, JavaStructure baseStructure,
+                                       JavaStructure theirsStructure, String className) {
+        if (baseMembers.isEmpty()) {
+            return false;
+        }
+        Map<String, JavaStructure.Member> theirsMembers = index(theirsStructure, className);
+        int kept = 0;
+        for (Map.Entry<String, JavaStructure.Member> entry : baseMembers.entrySet()) {
+            JavaStructure.Member theirsMember = theirsMembers.get(entry.getKey());
+            if (theirsMember != null && same(entry.getValue().text(baseStructure.source),
+                    memberText(theirsMember, theirsStructure, className))) {
+                kept++;
+            }
+        }
+        return kept > 0 && kept * 2 >= baseMembers.size();
+    }
+
+    private static Map<String, JavaStructure.Member> index(JavaStructure structure, String className) {
+        Map<String, JavaStructure.Member> members = new LinkedHashMap<>();
+        for (JavaStructure.Member member : structure.members) {
+            members.putIfAbsent(key(member, className), member);
+        }
+        return members;
+    }
+
+    /**
+     * 成员标识；构造函数统一使用目标类名，使生成类的构造函数能和目标类对应
+     */
+    private static String key(JavaStructure.Member member, String className) {
+        if (member.kind == JavaStructure.MemberKind.CONSTRUCTOR) {
+            return className + "(" + member.parameters + ")";
+        }
+        return member.key();
+    }
+
+    /**
+     * 成员文本；生成类的构造函数改名为目标类名
+     */
+    private static String memberText(JavaStructure.Member member, JavaStructure structure, String className) {
+        String text = member.text(structure.source);
+        if (member.kind == JavaStructure.MemberKind.CONSTRUCTOR && !member.name.equals(className)) {
+            int at = findNameBeforeParen(text, member.name);
+            if (at >= 0) {
+                text = text.substring(0, at) + className + text.substring(at + member.name.length());
+            }
+        }
+        return text;
+    }
+
+    /**
+     * 查找后面紧跟（可隔空白）左括号的完整标识符 name，找不到返回 -1
+     */
+    private static int findNameBeforeParen(String text, String name) {
+        int from = 0;
+        int index;
+        while ((index = text.indexOf(name, from)) >= 0) {
+            int end = index + name.length();
+            boolean wordStart = index == 0 || !Character.isJavaIdentifierPart(text.charAt(index - 1));
+            while (end < text.length() && Character.isWhitespace(text.charAt(end))) end++;
+            if (wordStart && end < text.length() && text.charAt(end) == '(') {
+                return index;
+            }
+            from = index + 1;
+        }
+        return -1;
+    }
+
+    private static boolean isOursOnly(JavaStructure.Member member) {
+        return member.kind == JavaStructure.MemberKind.METHOD
+                && member.name.equals("main") && member.parameters.equals("String[]");
+    }
+
+    /**
+     * 忽略空白差异比较两个成员
+     */
+    private static boolean same(String a, String b) {
+        return RegexPatterns.collapseWhitespace(a).equals(RegexPatterns.collapseWhitespace(b));
+    }
+
+    private static String simpleName(String imp) {
+        return imp.substring(imp.lastIndexOf('.') + 1);
+    }
+}
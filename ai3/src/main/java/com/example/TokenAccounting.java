@@ -0,0 +1,344 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI调用的token统计：按请求类别（如 generate:login、chat:weather）和模型记录每次调用的用量与结果
+ * 统计用于给下一次同类请求设置合适的 maxTokens；能可靠判断结果好坏的请求（代码生成）在输出一直很短且成功率不降时改用更快的模型
+ * 统计保存在 ~/.javafx_ai/token-stats.json，跨启动累积；变化后延迟合并写盘
+ */
+public class TokenAccounting {
+
+    // 样本数达到这个数量后才根据统计调整
+    private static final int MIN_SAMPLES = 5;
+    // 每个类别和模型保留的最近输出token数
+    private static final int RECENT_SAMPLES = 50;
+    // 输出token的P95不超过这个值时视为小请求，可以用快速模型
+    private static final int SMALL_REQUEST_TOKENS = 800;
+    // 快速模型的成功率最多比默认模型低这么多
+    private static final double MAX_SUCCESS_RATE_DROP = 0.05;
+    private static final int MIN_MAX_TOKENS = 256;
+    private static final double HEADROOM = 1.25;
+    // 统计变化后延迟这么久再写盘，合并短时间内的多次调用
+    private static final long SAVE_DELAY_MS = 2000;
+
+    private static final Path STATS_FILE = Paths.get(System.getProperty("user.home"), ".javafx_ai", "token-stats.json");
+
+    private static final TokenAccounting INSTANCE = new TokenAccounting(STATS_FILE);
+
+    private final Path statsFile;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Object saveLock = new Object();
+    private final ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "token-stats-save");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean saveScheduled;
+    // 类别 -> 模型 -> 统计
+    private final Map<String, Map<String, Stats>> categories = new TreeMap<>();
+
+    /**
+     * 某个类别在某个模型上的统计
+     */
+    public static class Stats {
+        public long calls;
+        public long successes;
+        public long truncated;
+        public long inputTokens;
+        public long outputTokens;
+        final Deque<Integer> recentOutputs = new ArrayDeque<>();
+        final Deque<Boolean> recentTruncated = new ArrayDeque<>();
+
+        double successRate() {
+            return calls == 0 ? 0 : (double) successes / calls;
+        }
+
+        void observe(int input, int output, boolean wasTruncated, boolean success) {
+            calls++;
+            if (success) successes++;
+            if (wasTruncated) truncated++;
+            inputTokens += input;
+            outputTokens += output;
+            recentOutputs.addLast(output);
+            recentTruncated.addLast(wasTruncated);
+            while (recentOutputs.size() > RECENT_SAMPLES) recentOutputs.removeFirst();
+            while (recentTruncated.size() > RECENT_SAMPLES) recentTruncated.removeFirst();
+        }
+    }
+
+    /**
+     * 一次请求使用的模型和 maxTokens
+     */
+    public static class Plan {
+        public final String model;
+        public final int maxTokens;
+        public final String defaultModel;
+        public final int defaultMaxTokens;
+
+        Plan(String model, int maxTokens, String defaultModel, int defaultMaxTokens) {
+            this.model = model;
+            this.maxTokens = maxTokens;
+            this.defaultModel = defaultModel;
+            this.defaultMaxTokens = defaultMaxTokens;
+        }
+
+        /**
+         * 是否比默认配置更省（换了模型或降低了上限），这样的计划失败时应按默认配置重试
+         */
+        public boolean isReduced() {
+            return !model.equals(defaultModel) || maxTokens < defaultMaxTokens;
+        }
+
+        public Plan fallback() {
+            return new Plan(defaultModel, defaultMaxTokens, defaultModel, defaultMaxTokens);
+        }
+
+        @Override
+        public String toString() {
+            return model + ", maxTokens=" + maxTokens;
+        }
+    }
+
+    TokenAccounting(Path statsFile) {
+        this.statsFile = statsFile;
+        load();
+        // 退出时写入尚未保存的统计
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "token-stats-flush"));
+    }
+
+    public static TokenAccounting getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 记录一次调用；truncated 表示因达到 maxTokens 而截断，success 表示结果可用
+     */
+    public synchronized void record(String category, String model, int inputTokens, int outputTokens,
+                                    boolean truncated, boolean success) {
+        categories.computeIfAbsent(category, k -> new TreeMap<>())
+                .computeIfAbsent(model, k -> new Stats())
+                .observe(inputTokens, outputTokens, truncated, success);
+        if (!saveScheduled) {
+            saveScheduled = true;
+            saver.schedule(this::save, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 立即写入尚未保存的统计
+     */
+    public void flush() {
+        synchronized (this) {
+            if (!saveScheduled) return;
+        }
+        save();
+    }
+
+    /**
+     * 为请求选择 maxTokens，不换模型
+     * 用于成功与否无法可靠判断的请求（如对话只能判断回复能否解析，看不出工具调用的质量），换成快速模型后质量下降也发现不了
+     */
+    public Plan plan(String category, String defaultModel, int defaultMaxTokens) {
+        return plan(category, defaultModel, defaultMaxTokens, null);
+    }
+
+    /**
+     * 为请求选择模型和 maxTokens；fastModel 不为 null 时，输出一直很短且快速模型成功率不降的类别改用 fastModel
+     * 细分类别（如 generate:login）样本不足时参考上级类别（generate）的统计
+     */
+    public synchronized Plan plan(String category, String defaultModel, int defaultMaxTokens, String fastModel) {
+        Plan defaults = new Plan(defaultModel, defaultMaxTokens, defaultModel, defaultMaxTokens);
+        String key = category;
+        List<Stats> samples = collect(key);
+        if (count(samples) < MIN_SAMPLES && key.indexOf(':') > 0) {
+            key = key.substring(0, key.indexOf(':'));
+            samples = collect(key);
+        }
+        if (count(samples) < MIN_SAMPLES) {
+            return defaults;
+        }
+
+        // 最近有截断说明上限不够，直接用默认上限
+        int maxTokens = defaultMaxTokens;
+        if (!recentlyTruncated(samples)) {
+            int p95 = outputPercentile(samples, 0.95);
+            maxTokens = Math.max(MIN_MAX_TOKENS, roundUp((int) (p95 * HEADROOM) + 64, 64));
+            maxTokens = Math.min(maxTokens, defaultMaxTokens);
+            if (fastModel != null && p95 <= SMALL_REQUEST_TOKENS && fastModelKeepsSuccessRate(key, defaultModel, fastModel)) {
+                return new Plan(fastModel, maxTokens, defaultModel, defaultMaxTokens);
+            }
+        }
+        return new Plan(defaultModel, maxTokens, defaultModel, defaultMaxTokens);
+    }
+
+    /**
+     * 快速模型样本不足时允许试用（失败会按默认配置重试），样本足够后要求成功率不明显低于默认模型
+     */
+    private boolean fastModelKeepsSuccessRate(String key, String defaultModel, String fastModel) {
+        if (fastModel.equals(defaultModel)) return false;
+        Stats fast = merged(key, fastModel);
+        if (fast.calls < MIN_SAMPLES) return true;
+        Stats normal = merged(key, defaultModel);
+        double baseline = normal.calls == 0 ? 1.0 : normal.successRate();
+        return fast.successRate() >= baseline - MAX_SUCCESS_RATE_DROP;
+    }
+
+    private List<Stats> collect(String key) {
+        List<Stats> result = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Stats>> entry : categories.entrySet()) {
+            if (entry.getKey().equals(key) || entry.getKey().startsWith(key + ":")) {
+                result.addAll(entry.getValue().values());
+            }
+        }
+        return result;
+    }
+
+    private Stats merged(String key, String model) {
+        Stats merged = new Stats();
+        for (Map.Entry<String, Map<String, Stats>> entry : categories.entrySet()) {
+            if (entry.getKey().equals(key) || entry.getKey().startsWith(key + ":")) {
+                Stats stats = entry.getValue().get(model);
+                if (stats != null) {
+                    merged.calls += stats.calls;
+                    merged.successes += stats.successes;
+                }
+            }
+        }
+        return merged;
+    }
+
+    private static long count(List<Stats> samples) {
+        long n = 0;
+        for (Stats stats : samples) n += stats.recentOutputs.size();
+        return n;
+    }
+
+    private static boolean recentlyTruncated(List<Stats> samples) {
+        for (Stats stats : samples) {
+            Iterator<Boolean> it = stats.recentTruncated.descendingIterator();
+            for (int i = 0; i < 10 && it.hasNext(); i++) {
+                if (it.next()) return true;
+            }
+        }
+        return false;
+    }
+
+    private static int outputPercentile(List<Stats> samples, double quantile) {
+        List<Integer> outputs = new ArrayList<>();
+        for (Stats stats : samples) outputs.addAll(stats.recentOutputs);
+        outputs.sort(null);
+        int index = (int) Math.ceil(outputs.size() * quantile) - 1;
+        return outputs.get(Math.max(0, Math.min(index, outputs.size() - 1)));
+    }
+
+    private static int roundUp(int value, int step) {
+        return (value + step - 1) / step * step;
+    }
+
+    /**
+     * 各类别的汇总文本（用于耗时统计面板）
+     */
+    public synchronized String getSummaryText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-24s %-12s %6s %8s %8s %8s %8s%n",
+                "请求类别", "模型", "次数", "成功率", "截断", "平均输入", "平均输出"));
+        for (Map.Entry<String, Map<String, Stats>> category : categories.entrySet()) {
+            for (Map.Entry<String, Stats> model : category.getValue().entrySet()) {
+                Stats s = model.getValue();
+                sb.append(String.format("%-24s %-12s %6d %7.0f%% %8d %8d %8d%n",
+                        category.getKey(), model.getKey(), s.calls, s.successRate() * 100, s.truncated,
+                        s.calls == 0 ? 0 : s.inputTokens / s.calls, s.calls == 0 ? 0 : s.outputTokens / s.calls));
+            }
+        }
+        return sb.toString();
+    }
+
+    // ============== 持久化 ==============
+
+    private void load() {
+        if (!Files.exists(statsFile)) return;
+        try {
+            JsonNode root = mapper.readTree(statsFile.toFile());
+            root.path("categories").fields().forEachRemaining(category -> {
+                Map<String, Stats> models = new TreeMap<>();
+                category.getValue().fields().forEachRemaining(model -> {
+                    JsonNode node = model.getValue();
+                    Stats stats = new Stats();
+                    stats.calls = node.path("calls").asLong();
+                    stats.successes = node.path("successes").asLong();
+                    stats.truncated = node.path("truncated").asLong();
+                    stats.inputTokens = node.path("inputTokens").asLong();
+                    stats.outputTokens = node.path("outputTokens").asLong();
+                    node.path("recentOutputs").forEach(n -> stats.recentOutputs.addLast(n.asInt()));
+                    node.path("recentTruncated").forEach(n -> stats.recentTruncated.addLast(n.asBoolean()));
+                    models.put(model.getKey(), stats);
+                });
+                categories.put(category.getKey(), models);
+            });
+        } catch (IOException e) {
+            System.err.println("读取token统计失败: " + e.getMessage());
+        }
+    }
+
+    private void save() {
+        // 整个保存过程串行，避免较旧的快照覆盖较新的
+        synchronized (saveLock) {
+            String json;
+            synchronized (this) {
+                saveScheduled = false;
+                json = toJson();
+            }
+            if (json == null) return;
+            try {
+                AtomicFileWriter.write(statsFile, json);
+            } catch (IOException e) {
+                System.err.println("保存token统计失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private synchronized String toJson() {
+        ObjectNode root = mapper.createObjectNode();
+        ObjectNode categoriesNode = root.putObject("categories");
+        for (Map.Entry<String, Map<String, Stats>> category : categories.entrySet()) {
+            ObjectNode modelsNode = categoriesNode.putObject(category.getKey());
+            for (Map.Entry<String, Stats> model : category.getValue().entrySet()) {
+                Stats s = model.getValue();
+                ObjectNode node = modelsNode.putObject(model.getKey());
+                node.put("calls", s.calls);
+                node.put("successes", s.successes);
+                node.put("truncated", s.truncated);
+                node.put("inputTokens", s.inputTokens);
+                node.put("outputTokens", s.outputTokens);
+                ArrayNode outputs = node.putArray("recentOutputs");
+                s.recentOutputs.forEach(outputs::add);
+                ArrayNode truncated = node.putArray("recentTruncated");
+                s.recentTruncated.forEach(truncated::add);
+            }
+        }
+        try {
+            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(root);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}